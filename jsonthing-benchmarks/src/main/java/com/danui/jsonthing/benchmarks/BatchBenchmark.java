@@ -0,0 +1,138 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonProjection;
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingBatch;
+import com.danui.jsonthing.JsonThingStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BatchBenchmark
+ *
+ * Summing the badge numbers, counting the active records and averaging the
+ * accuracy of the LARGE corpus's records, repeated twenty times. The boxed
+ * variants read each record's fields with get(key); the columnar variants
+ * convert the records with JsonThingBatch first and then scan the primitive
+ * columns, and columnarScan scans columns converted up front, which is what
+ * each scan after the first costs. The NDJSON variants start from the
+ * encoded records.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final int COPIES = 20;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private List<JsonThing> records;
+    private byte[] ndjson;
+    private JsonThingBatch batch;
+    private JsonThingBatch.Columns columns;
+    private int badge;
+    private int active;
+    private int accuracy;
+
+    @Setup
+    public void setup() throws IOException {
+        JsonThing corpus = Corpus.LARGE.thing().get("records");
+        records = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < COPIES; i++) {
+            for (JsonThing record : corpus.asListOfThings()) {
+                records.add(record);
+                record.writeTo(out);
+                out.write('\n');
+            }
+        }
+        ndjson = out.toByteArray();
+        JsonProjection projection = JsonProjection.builder()
+            .field("name", JsonProjection.Type.STRING, "name")
+            .field("badge", JsonProjection.Type.LONG, "badge_number")
+            .field("active", JsonProjection.Type.BOOLEAN, "active")
+            .field("accuracy", JsonProjection.Type.DOUBLE, "accuracy")
+            .build();
+        batch = JsonThingBatch.of(projection).parallelism(parallelism);
+        columns = batch.convert(records);
+        badge = projection.indexOf("badge");
+        active = projection.indexOf("active");
+        accuracy = projection.indexOf("accuracy");
+    }
+
+    @Benchmark
+    public double boxed() {
+        long badges = 0;
+        long actives = 0;
+        double accuracies = 0;
+        for (JsonThing record : records) {
+            badges += record.get("badge_number").longValue();
+            if (record.get("active").booleanValue()) {
+                actives += 1;
+            }
+            accuracies += record.get("accuracy").doubleValue();
+        }
+        return badges + actives + accuracies / records.size();
+    }
+
+    @Benchmark
+    public double columnar() throws IOException {
+        return sum(batch.convert(records));
+    }
+
+    @Benchmark
+    public double columnarScan() {
+        return sum(columns);
+    }
+
+    @Benchmark
+    public double boxedNdjson() throws IOException {
+        long badges = 0;
+        long actives = 0;
+        double accuracies = 0;
+        int n = 0;
+        try (JsonThingStream in =
+                 JsonThingStream.of(new ByteArrayInputStream(ndjson)))
+        {
+            for (JsonThing record : in) {
+                badges += record.get("badge_number").longValue();
+                if (record.get("active").booleanValue()) {
+                    actives += 1;
+                }
+                accuracies += record.get("accuracy").doubleValue();
+                n += 1;
+            }
+        }
+        return badges + actives + accuracies / n;
+    }
+
+    @Benchmark
+    public double columnarNdjson() throws IOException {
+        return sum(batch.read(ndjson));
+    }
+
+    private double sum(JsonThingBatch.Columns columns) {
+        long badges = 0;
+        for (long x : columns.longs(badge)) {
+            badges += x;
+        }
+        double accuracies = 0;
+        for (double x : columns.doubles(accuracy)) {
+            accuracies += x;
+        }
+        return badges + columns.booleans(active).cardinality()
+            + accuracies / columns.size();
+    }
+}
@@ -0,0 +1,66 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * BuildBenchmark
+ *
+ * Building the README record with the fluent newMap().put(...) interface,
+ * and writing the same record with JsonThingWriter, which builds no tree.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildBenchmark {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+
+    @Benchmark
+    public JsonThing buildRecord() {
+        return JsonThing.newMap()
+            .put("name", "Alice")
+            .put("badge_number", 107)
+            .put("active", false)
+            .put("district_ids", JsonThing.newList()
+                .add(310)
+                .add(309)
+                .add(308))
+            .put("accuracy", 83.128);
+    }
+
+    @Benchmark
+    public int buildRecordThenWrite() throws IOException {
+        out.reset();
+        buildRecord().writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeRecord() throws IOException {
+        out.reset();
+        JsonThingWriter.to(out)
+            .newMap()
+                .put("name", "Alice")
+                .put("badge_number", 107)
+                .put("active", false)
+                .newList("district_ids")
+                    .add(310)
+                    .add(309)
+                    .add(308)
+                .end()
+                .put("accuracy", 83.128)
+            .end()
+            .close();
+        return out.size();
+    }
+}
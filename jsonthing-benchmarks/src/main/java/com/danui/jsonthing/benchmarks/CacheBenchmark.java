@@ -0,0 +1,48 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingCache;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CacheBenchmark
+ *
+ * Parsing the same document over and over, directly and through a
+ * JsonThingCache, where every call after the first is a hit and costs a
+ * hash and a compare of the input.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "WIDE"})
+    public Corpus corpus;
+
+    private byte[] bytes;
+    private JsonThingCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = corpus.bytes();
+        cache = new JsonThingCache(64 << 20);
+        cache.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing parse() throws IOException {
+        return JsonThing.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing parseCached() throws IOException {
+        return cache.parse(bytes);
+    }
+}
@@ -0,0 +1,74 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CachedBenchmark
+ *
+ * Encoding a document after changing the one long at the corpus path, as a
+ * plain thing and as a cached one, which re-encodes only the maps and lists
+ * on the path. The untouched benchmark encodes the cached document without
+ * changing anything.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CachedBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private JsonThing plain;
+    private JsonThing plainParent;
+    private JsonThing cached;
+    private JsonThing cachedParent;
+    private Object leaf;
+    private long value;
+
+    @Setup
+    public void setup() throws IOException {
+        Object[] path = corpus.path();
+        Object[] parentPath = Arrays.copyOf(path, path.length - 1);
+        leaf = path[path.length - 1];
+        plain = JsonThing.parse(corpus.bytes());
+        plainParent = JsonThing.wrap(plain.getObject(parentPath));
+        cached = plain.cached();
+        cachedParent = JsonThing.wrap(cached.getObject(parentPath));
+        cached.toJson();
+    }
+
+    @Benchmark
+    public String plainChanged() throws IOException {
+        change(plainParent);
+        return plain.toJson();
+    }
+
+    @Benchmark
+    public String cachedChanged() throws IOException {
+        change(cachedParent);
+        return cached.toJson();
+    }
+
+    @Benchmark
+    public String cachedUntouched() throws IOException {
+        return cached.toJson();
+    }
+
+    private void change(JsonThing parent) {
+        value += 1;
+        if (leaf instanceof String) {
+            parent.put((String)leaf, value);
+        } else {
+            parent.asList().set((Integer)leaf, value);
+        }
+    }
+}
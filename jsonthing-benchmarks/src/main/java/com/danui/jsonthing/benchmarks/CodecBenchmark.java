@@ -0,0 +1,75 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingCodec;
+import com.danui.jsonthing.JsonThingMetrics;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CodecBenchmark
+ *
+ * Parsing and encoding each corpus with the default codec and with each
+ * throughput knob of JsonThingCodec turned the other way. DATABIND parses through
+ * Jackson databind rather than the token parser. METRICS records
+ * every call to a JsonThingMetrics.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    @Param({"DEFAULT", "NO_INTERN", "NO_RECYCLE", "NO_COMPACT", "DATABIND", "METRICS"})
+    public String config;
+
+    private JsonThingCodec codec;
+    private byte[] bytes;
+    private JsonThing thing;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (config) {
+        case "NO_INTERN":
+            codec = JsonThingCodec.builder().internFieldNames(false).build();
+            break;
+        case "NO_RECYCLE":
+            codec = JsonThingCodec.builder().recycleBuffers(false).build();
+            break;
+        case "NO_COMPACT":
+            codec = JsonThingCodec.builder().compactNumberLists(false).build();
+            break;
+        case "METRICS":
+            codec = JsonThingCodec.builder()
+                .listener(new JsonThingMetrics())
+                .build();
+            break;
+        case "DATABIND":
+            codec = JsonThingCodec.builder().databind(true).build();
+            break;
+        default:
+            codec = JsonThingCodec.DEFAULT;
+            break;
+        }
+        bytes = corpus.bytes();
+        thing = codec.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing parse() throws IOException {
+        return codec.parse(bytes);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return codec.toBytes(thing);
+    }
+}
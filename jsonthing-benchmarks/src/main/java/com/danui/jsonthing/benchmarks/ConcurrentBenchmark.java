@@ -0,0 +1,68 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ConcurrentBenchmark
+ *
+ * Four threads updating counters in one shared status map, and encoding it,
+ * with a concurrent map against a plain map guarded by a lock.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConcurrentBenchmark {
+
+    private static final int KEYS = 64;
+
+    private JsonThing concurrent;
+    private JsonThing locked;
+
+    @Setup
+    public void setup() {
+        concurrent = JsonThing.newConcurrentMap();
+        locked = JsonThing.newMap();
+        for (int i = 0; i < KEYS; i++) {
+            concurrent.put("counter_" + i, 0);
+            locked.put("counter_" + i, 0);
+        }
+    }
+
+    private static String key() {
+        return "counter_" + ThreadLocalRandom.current().nextInt(KEYS);
+    }
+
+    @Benchmark
+    public long incrementConcurrent() {
+        return concurrent.increment(key());
+    }
+
+    @Benchmark
+    public long incrementLocked() {
+        synchronized (locked) {
+            return locked.increment(key());
+        }
+    }
+
+    @Benchmark
+    public String toJsonConcurrent() throws IOException {
+        return concurrent.toJson();
+    }
+
+    @Benchmark
+    public String toJsonLocked() throws IOException {
+        synchronized (locked) {
+            return locked.toJson();
+        }
+    }
+}
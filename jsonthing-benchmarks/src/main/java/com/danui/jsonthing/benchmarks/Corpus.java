@@ -0,0 +1,176 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Corpus
+ *
+ * Synthetic documents for the benchmarks. Every document is generated from a
+ * fixed seed so runs are comparable.
+ *
+ * - SMALL, MEDIUM and LARGE are {"count": n, "records": [...]} documents of
+ *   10, 1000 and 50000 records shaped like the README example.
+ * - WIDE is a single map with 10000 members of mixed types.
+ * - DEEP is a chain of 200 nested maps.
+ *
+ * Each corpus also names one path into its document, used by the navigation
+ * benchmarks.
+ *
+ * @author Jin
+ */
+public enum Corpus {
+
+    SMALL {
+        @Override
+        public JsonThing thing() {
+            return records(10);
+        }
+    },
+    MEDIUM {
+        @Override
+        public JsonThing thing() {
+            return records(1000);
+        }
+    },
+    LARGE {
+        @Override
+        public JsonThing thing() {
+            return records(50000);
+        }
+    },
+    WIDE {
+        @Override
+        public JsonThing thing() {
+            return wide(10000);
+        }
+    },
+    DEEP {
+        @Override
+        public JsonThing thing() {
+            return deep(200);
+        }
+    };
+
+    private static final long SEED = 20240107L;
+
+    private static final String[] NAMES = {
+        "Alice", "Bob", "Liz", "Mallory", "Trent", "Peggy", "Victor", "Wendy"
+    };
+
+    /**
+     * Builds a fresh copy of the document.
+     */
+    public abstract JsonThing thing();
+
+    public String json() {
+        try {
+            return thing().toJson();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] bytes() {
+        return json().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A path to a long deep inside the document, as accepted by
+     * JsonThing.getLong(Object...).
+     */
+    public Object[] path() {
+        switch (this) {
+        case WIDE:
+            return new Object[] {"field_5000", "badge_number"};
+        case DEEP: {
+            Object[] path = new Object[101];
+            for (int i = 0; i < 100; i++) {
+                path[i] = "child";
+            }
+            path[100] = "level";
+            return path;
+        }
+        default: {
+            int n = (this == SMALL) ? 10 : (this == MEDIUM) ? 1000 : 50000;
+            return new Object[] {"records", n / 2, "district_ids", 0};
+        }
+        }
+    }
+
+    /**
+     * The same path as path(), as a JSON pointer.
+     */
+    public String pointer() {
+        StringBuilder sb = new StringBuilder();
+        for (Object key : path()) {
+            sb.append('/').append(key);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A record shaped like the README example.
+     */
+    static JsonThing record(Random r) {
+        JsonThing ids = JsonThing.newList();
+        for (int i = 0, n = 1 + r.nextInt(6); i < n; i++) {
+            ids.add(100 + r.nextInt(900));
+        }
+        return JsonThing.newMap()
+            .put("name", NAMES[r.nextInt(NAMES.length)])
+            .put("badge_number", r.nextInt(100000))
+            .put("active", r.nextBoolean())
+            .put("district_ids", ids)
+            .put("accuracy", Math.round(r.nextDouble() * 100000) / 1000.0);
+    }
+
+    static JsonThing records(int n) {
+        Random r = new Random(SEED);
+        JsonThing list = JsonThing.newList();
+        for (int i = 0; i < n; i++) {
+            list.add(record(r));
+        }
+        return JsonThing.newMap()
+            .put("count", n)
+            .put("records", list);
+    }
+
+    static JsonThing wide(int n) {
+        Random r = new Random(SEED);
+        JsonThing map = JsonThing.newMap();
+        for (int i = 0; i < n; i++) {
+            String key = "field_" + i;
+            switch (i % 4) {
+            case 0:
+                map.put(key, record(r));
+                break;
+            case 1:
+                map.put(key, NAMES[r.nextInt(NAMES.length)]);
+                break;
+            case 2:
+                map.put(key, r.nextLong());
+                break;
+            default:
+                map.put(key, r.nextDouble());
+                break;
+            }
+        }
+        return map;
+    }
+
+    static JsonThing deep(int depth) {
+        Random r = new Random(SEED);
+        JsonThing node = record(r).put("level", depth);
+        for (int i = depth - 1; i >= 0; i--) {
+            node = JsonThing.newMap()
+                .put("level", i)
+                .put("tags", JsonThing.newList().add("t" + i).add(i))
+                .put("child", node);
+        }
+        return node;
+    }
+}
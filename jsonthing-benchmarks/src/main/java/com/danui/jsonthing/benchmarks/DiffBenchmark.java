@@ -0,0 +1,91 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * DiffBenchmark
+ *
+ * Sending a document after changing the one long at the corpus path: in
+ * full with toJson(), or as a JSON Patch. The plain diff compares two
+ * separately parsed copies, so walks the whole document; the frozen diff
+ * compares two versions of a frozen document that share everything but
+ * the changed path. Frozen maps are diffed trie node by trie node, so
+ * WIDE, one map of many members, costs about as little as DEEP. Lists are
+ * still scanned element by element, so LARGE, whose path goes through a
+ * long list, costs time in proportion to the list's length.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiffBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private JsonThing plainFrom;
+    private JsonThing plainTo;
+    private JsonThing frozenFrom;
+    private JsonThing frozenTo;
+
+    @Setup
+    public void setup() throws IOException {
+        Object[] path = corpus.path();
+        byte[] bytes = corpus.bytes();
+        plainFrom = JsonThing.parse(bytes);
+        plainTo = JsonThing.parse(bytes);
+        JsonThing parent = plainTo;
+        for (int i = 0; i < path.length - 1; i++) {
+            parent = (path[i] instanceof String)
+                ? parent.get((String)path[i])
+                : parent.get((Integer)path[i]);
+        }
+        Object leaf = path[path.length - 1];
+        if (leaf instanceof String) {
+            parent.put((String)leaf, -1L);
+        } else {
+            parent.asList().set((Integer)leaf, -1L);
+        }
+        frozenFrom = plainFrom.freeze();
+        frozenTo = with(frozenFrom, path, 0, -1L);
+    }
+
+    private static JsonThing with(
+        JsonThing node,
+        Object[] path,
+        int i,
+        Object value)
+    {
+        if (i == path.length) {
+            return JsonThing.wrap(value);
+        }
+        if (path[i] instanceof String) {
+            String key = (String)path[i];
+            return node.with(key, with(node.get(key), path, i + 1, value));
+        }
+        int idx = (Integer)path[i];
+        return node.with(idx, with(node.get(idx), path, i + 1, value));
+    }
+
+    @Benchmark
+    public String toJson() throws IOException {
+        return plainTo.toJson();
+    }
+
+    @Benchmark
+    public String diffPlain() throws IOException {
+        return JsonThing.diff(plainFrom, plainTo).toJson();
+    }
+
+    @Benchmark
+    public String diffFrozen() throws IOException {
+        return JsonThing.diff(frozenFrom, frozenTo).toJson();
+    }
+}
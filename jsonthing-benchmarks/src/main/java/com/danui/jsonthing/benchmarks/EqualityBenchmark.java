@@ -0,0 +1,76 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * EqualityBenchmark
+ *
+ * Comparing, hashing and copying two equal but separately parsed documents,
+ * with equals(), hashCode() and deepCopy(), against doing the same through
+ * toJson() strings. The frozen hash benchmark hashes a frozen document,
+ * whose hash is computed once and kept.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EqualityBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private JsonThing a;
+    private JsonThing b;
+    private JsonThing frozen;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] bytes = corpus.bytes();
+        a = JsonThing.parse(bytes);
+        b = JsonThing.parse(bytes);
+        frozen = a.freeze();
+        frozen.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsThings() {
+        return a.equals(b);
+    }
+
+    @Benchmark
+    public boolean equalsStrings() throws IOException {
+        return a.toJson().equals(b.toJson());
+    }
+
+    @Benchmark
+    public int hashThing() {
+        return a.hashCode();
+    }
+
+    @Benchmark
+    public int hashFrozen() {
+        return frozen.hashCode();
+    }
+
+    @Benchmark
+    public int hashString() throws IOException {
+        return a.toJson().hashCode();
+    }
+
+    @Benchmark
+    public JsonThing deepCopy() {
+        return a.deepCopy();
+    }
+
+    @Benchmark
+    public JsonThing copyByString() throws IOException {
+        return JsonThing.parse(a.toJson());
+    }
+}
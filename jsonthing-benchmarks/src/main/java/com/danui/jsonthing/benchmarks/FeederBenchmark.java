@@ -0,0 +1,52 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingFeeder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * FeederBenchmark
+ *
+ * Parsing each corpus from a single array, and feeding it to a
+ * JsonThingFeeder in chunks of the given size, as it would arrive from the
+ * network.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeederBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    @Param({"1024", "16384"})
+    public int chunk;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = corpus.bytes();
+    }
+
+    @Benchmark
+    public JsonThing parse() throws IOException {
+        return JsonThing.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing feed() throws IOException {
+        JsonThingFeeder feeder = JsonThingFeeder.values();
+        for (int i = 0; i < bytes.length; i += chunk) {
+            feeder.feed(bytes, i, Math.min(chunk, bytes.length - i));
+        }
+        return feeder.endOfInput().poll();
+    }
+}
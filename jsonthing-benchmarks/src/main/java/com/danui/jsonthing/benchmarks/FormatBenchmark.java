@@ -0,0 +1,53 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingFormat;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * FormatBenchmark
+ *
+ * Encoding and decoding each corpus as JSON text and as Smile, the way a
+ * cache would store documents.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    @Param({"JSON", "SMILE"})
+    public String format;
+
+    private JsonThingFormat fmt;
+    private JsonThing thing;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        fmt = "SMILE".equals(format)
+            ? JsonThingFormat.SMILE
+            : JsonThingFormat.JSON;
+        thing = corpus.thing();
+        encoded = thing.toBytes(fmt);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return thing.toBytes(fmt);
+    }
+
+    @Benchmark
+    public JsonThing decode() throws IOException {
+        return JsonThing.parse(encoded, fmt);
+    }
+}
@@ -0,0 +1,52 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ListBenchmark
+ *
+ * Iterating the records of a corpus and summing one field of each.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus corpus;
+
+    private JsonThing thing;
+
+    @Setup
+    public void setup() throws IOException {
+        thing = JsonThing.parse(corpus.bytes());
+    }
+
+    @Benchmark
+    public long asListOfThings() {
+        long sum = 0;
+        for (JsonThing record : thing.get("records").asListOfThings()) {
+            sum += record.get("badge_number").longValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long asListWithPath() {
+        List<Object> records = thing.get("records").asList();
+        long sum = 0;
+        for (int i = 0, n = records.size(); i < n; i++) {
+            sum += thing.getLong("records", i, "badge_number");
+        }
+        return sum;
+    }
+}
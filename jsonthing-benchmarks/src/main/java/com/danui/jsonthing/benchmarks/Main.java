@@ -0,0 +1,37 @@
+package com.danui.jsonthing.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main
+ *
+ * Runs the benchmarks like JMH's own main class does, taking the same
+ * command line options, but always with the GC profiler attached so that
+ * allocation rates (gc.alloc.rate.norm, bytes per operation) are reported
+ * next to the timings.
+ *
+ * @author Jin
+ */
+public final class Main {
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers()
+            || cmd.shouldListResultFormats() || cmd.shouldListWithParams())
+        {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        new Runner(new OptionsBuilder()
+            .parent(cmd)
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonPath;
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * NavigateBenchmark
+ *
+ * Reading one long from deep inside each corpus, by chained get() calls, by
+ * the path accessors and by JSON pointer. The pluck benchmarks include the
+ * parse, comparing eager against lazy parsing when only one value is wanted.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NavigateBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private JsonThing thing;
+    private byte[] bytes;
+    private Object[] path;
+    private String pointer;
+    private JsonPath compiled;
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = corpus.bytes();
+        thing = JsonThing.parse(bytes);
+        path = corpus.path();
+        pointer = corpus.pointer();
+        compiled = JsonPath.compile(pointer);
+    }
+
+    @Benchmark
+    public long chainedGet() {
+        JsonThing t = thing;
+        for (Object key : path) {
+            if (key instanceof Integer) {
+                t = t.get((Integer)key);
+            } else {
+                t = t.get((String)key);
+            }
+        }
+        return t.longValue();
+    }
+
+    @Benchmark
+    public long pathGetLong() {
+        return thing.getLong(path);
+    }
+
+    @Benchmark
+    public long compiledPath() {
+        return ((Number)compiled.getObject(thing)).longValue();
+    }
+
+    @Benchmark
+    public long pointerAt() {
+        return thing.at(pointer).longValue();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long parseAndPluck() throws IOException {
+        return JsonThing.parse(bytes).getLong(path);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long parseLazyAndPluck() throws IOException {
+        return JsonThing.parseLazy(bytes).getLong(path);
+    }
+}
@@ -0,0 +1,98 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import com.danui.jsonthing.JsonThingParallelReader;
+import com.danui.jsonthing.JsonThingStream;
+import com.danui.jsonthing.JsonThingStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ParallelReadBenchmark
+ *
+ * Reading the records of the LARGE corpus, repeated to about 100 MB, from an
+ * NDJSON file and from a file holding one big array. The parallelism
+ * parameter shows how parsing scales with cores; sequentialNdjson is the
+ * single threaded JsonThingStream baseline.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelReadBenchmark {
+
+    private static final int COPIES = 20;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path ndjson;
+    private Path array;
+
+    @Setup
+    public void setup() throws IOException {
+        JsonThing records = Corpus.LARGE.thing().get("records");
+        ndjson = Files.createTempFile("ParallelReadBenchmark", ".ndjson");
+        try (JsonThingStreamWriter out = JsonThingStreamWriter.to(ndjson)) {
+            for (int i = 0; i < COPIES; i++) {
+                for (JsonThing record : records.asListOfThings()) {
+                    out.write(record);
+                }
+            }
+        }
+        JsonThing all = JsonThing.newList();
+        for (int i = 0; i < COPIES; i++) {
+            all.asList().addAll(records.asList());
+        }
+        array = Files.createTempFile("ParallelReadBenchmark", ".json");
+        try (OutputStream out = Files.newOutputStream(array)) {
+            all.writeTo(out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(ndjson);
+        Files.deleteIfExists(array);
+    }
+
+    @Benchmark
+    public long sequentialNdjson() throws IOException {
+        try (JsonThingStream in = JsonThingStream.of(ndjson)) {
+            return in.readEach(record -> true);
+        }
+    }
+
+    @Benchmark
+    public int parallelNdjson() throws IOException {
+        return JsonThingParallelReader.ndjson(ndjson)
+            .parallelism(parallelism)
+            .readAll()
+            .size();
+    }
+
+    @Benchmark
+    public int parallelNdjsonUnordered() throws IOException {
+        return JsonThingParallelReader.ndjson(ndjson)
+            .parallelism(parallelism)
+            .ordered(false)
+            .readAll()
+            .size();
+    }
+
+    @Benchmark
+    public int parallelArray() throws IOException {
+        return JsonThingParallelReader.array(array)
+            .parallelism(parallelism)
+            .readAll()
+            .size();
+    }
+}
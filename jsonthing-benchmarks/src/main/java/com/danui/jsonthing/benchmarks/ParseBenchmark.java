@@ -0,0 +1,73 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ParseBenchmark
+ *
+ * Parsing each corpus from the forms it usually arrives in. decodeThenParse
+ * is the old way of parsing bytes: decode to a String, then parse that.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private String json;
+    private byte[] bytes;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setup() {
+        json = corpus.json();
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+        direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        ((Buffer)direct).flip();
+    }
+
+    @Benchmark
+    public JsonThing parseString() throws IOException {
+        return JsonThing.parse(json);
+    }
+
+    @Benchmark
+    public JsonThing decodeThenParse() throws IOException {
+        return JsonThing.parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public JsonThing parseBytes() throws IOException {
+        return JsonThing.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing parseInputStream() throws IOException {
+        return JsonThing.parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public JsonThing parseDirectBuffer() throws IOException {
+        return JsonThing.parse(direct);
+    }
+
+    @Benchmark
+    public JsonThing parseLazy() throws IOException {
+        return JsonThing.parseLazy(bytes);
+    }
+}
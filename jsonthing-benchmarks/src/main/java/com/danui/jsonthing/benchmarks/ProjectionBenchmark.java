@@ -0,0 +1,58 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonProjection;
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ProjectionBenchmark
+ *
+ * Reading the long at each corpus's path by parsing the whole document and
+ * by projecting just that field, into a flat JsonThing and into a reused
+ * record.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectionBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private byte[] bytes;
+    private Object[] path;
+    private JsonProjection projection;
+    private JsonProjection.Record record;
+
+    @Setup
+    public void setup() {
+        bytes = corpus.bytes();
+        path = corpus.path();
+        projection = JsonProjection.builder()
+            .field("value", JsonProjection.Type.LONG, path)
+            .build();
+        record = projection.newRecord();
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        return JsonThing.parse(bytes).getLong(path);
+    }
+
+    @Benchmark
+    public long projectThing() throws IOException {
+        return projection.project(bytes).getLong("value");
+    }
+
+    @Benchmark
+    public long projectRecord() throws IOException {
+        return projection.project(bytes, record).getLong(0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonShapes;
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ShapeBenchmark
+ *
+ * Parsing the record corpora into plain maps and into shaped maps, and
+ * reading one member of every record. The allocation rate of the parse
+ * benchmarks approximates the heap each representation retains.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShapeBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus corpus;
+
+    private byte[] bytes;
+    private JsonShapes shapes;
+    private List<JsonThing> plainRecords;
+    private List<JsonThing> shapedRecords;
+
+    @Setup
+    public void setup() throws IOException {
+        bytes = corpus.bytes();
+        shapes = new JsonShapes();
+        plainRecords = JsonThing.parse(bytes).get("records").asListOfThings();
+        shapedRecords = shapes.parse(bytes).get("records").asListOfThings();
+    }
+
+    @Benchmark
+    public JsonThing parsePlain() throws IOException {
+        return JsonThing.parse(bytes);
+    }
+
+    @Benchmark
+    public JsonThing parseShaped() throws IOException {
+        return shapes.parse(bytes);
+    }
+
+    @Benchmark
+    public long getPlain() {
+        return sumBadges(plainRecords);
+    }
+
+    @Benchmark
+    public long getShaped() {
+        return sumBadges(shapedRecords);
+    }
+
+    private static long sumBadges(List<JsonThing> records) {
+        long sum = 0;
+        for (JsonThing record : records) {
+            sum += record.get("badge_number").longValue();
+        }
+        return sum;
+    }
+}
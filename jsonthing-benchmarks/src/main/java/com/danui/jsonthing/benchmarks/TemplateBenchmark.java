@@ -0,0 +1,63 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * TemplateBenchmark
+ *
+ * Updating two members of a shared template, one at the top and one inside
+ * the first record, and encoding the result. The mutable template has to be
+ * copied first; the frozen one is updated with with(), sharing the rest.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus corpus;
+
+    private JsonThing template;
+    private JsonThing frozen;
+
+    @Setup
+    public void setup() {
+        template = corpus.thing();
+        frozen = template.freeze();
+    }
+
+    @Benchmark
+    public JsonThing copyAndPut() throws IOException {
+        JsonThing copy = JsonThing.parse(template.toJson());
+        copy.put("count", 0);
+        copy.get("records").get(0).put("name", "Trent");
+        return copy;
+    }
+
+    @Benchmark
+    public JsonThing frozenWith() {
+        JsonThing records = frozen.get("records");
+        return frozen
+            .with("count", 0)
+            .with("records",
+                records.with(0, records.get(0).with("name", "Trent")));
+    }
+
+    @Benchmark
+    public String copyAndPutToJson() throws IOException {
+        return copyAndPut().toJson();
+    }
+
+    @Benchmark
+    public String frozenWithToJson() throws IOException {
+        return frozenWith().toJson();
+    }
+}
@@ -0,0 +1,56 @@
+package com.danui.jsonthing.benchmarks;
+
+import com.danui.jsonthing.JsonThing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * ToJsonBenchmark
+ *
+ * Encoding each corpus, to a String and straight to a stream. The lazy
+ * benchmark encodes an untouched lazily parsed document.
+ *
+ * @author Jin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ToJsonBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE", "WIDE", "DEEP"})
+    public Corpus corpus;
+
+    private JsonThing thing;
+    private JsonThing lazy;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] bytes = corpus.bytes();
+        thing = JsonThing.parse(bytes);
+        lazy = JsonThing.parseLazy(bytes);
+        out = new ByteArrayOutputStream(bytes.length + 1024);
+    }
+
+    @Benchmark
+    public String toJson() throws IOException {
+        return thing.toJson();
+    }
+
+    @Benchmark
+    public int writeToStream() throws IOException {
+        out.reset();
+        thing.writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public String toJsonLazyUntouched() throws IOException {
+        return lazy.toJson();
+    }
+}
@@ -0,0 +1,275 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CachedEncoding
+ *
+ * The JSON encoding of a CachedMap or CachedList, kept from one encode to
+ * the next, and the cached containers it is part of. A change to the
+ * container drops its encoding and those of every container above it, so
+ * the next encode re-encodes only the changed path and splices everything
+ * else in as it was.
+ *
+ * Only members that report their own changes can be cached: scalars,
+ * frozen things and other cached containers. A container holding any
+ * other map or list is encoded afresh every time, and so is everything
+ * above it.
+ *
+ * The encoding is kept as a list of parts: runs of JSON text, and the
+ * encodings of cached containers among the members, which are written out
+ * in their place. So re-encoding a changed container costs only its own
+ * members, not the whole of everything below it.
+ *
+ * Cached encodings are only spliced into plain JSON output. Generators for
+ * other formats, or with a pretty printer or custom escapes, are given
+ * every member as usual.
+ *
+ * @author Jin
+ */
+final class CachedEncoding {
+
+    /**
+     * A container with a CachedEncoding.
+     */
+    interface Owner {
+        CachedEncoding encoding();
+
+        Iterable<Object> members();
+
+        /**
+         * Writes the container's members to gen. Returns false if any of
+         * them cannot be cached.
+         */
+        boolean writeTo(JsonGenerator gen, SerializerProvider provider)
+            throws IOException;
+    }
+
+    private final Owner owner;
+    private volatile Object[] parts;
+    private volatile boolean uncacheable;
+    private CachedEncoding parent;
+    private List<CachedEncoding> moreParents;
+
+    CachedEncoding(Owner owner) {
+        this.owner = owner;
+    }
+
+    static boolean canSplice(JsonGenerator gen) {
+        return LazyValues.canWriteRaw(gen)
+            && gen.getPrettyPrinter() == null
+            && gen.getCharacterEscapes() == null
+            && gen.getHighestEscapedChar() == 0;
+    }
+
+    /**
+     * Drops the encoding here and in every container above.
+     */
+    void invalidate() {
+        if (parts == null && !uncacheable) {
+            // Nothing above can be holding an encoding of this either.
+            return;
+        }
+        parts = null;
+        uncacheable = false;
+        if (parent != null) {
+            parent.invalidate();
+        }
+        if (moreParents != null) {
+            for (CachedEncoding p : moreParents) {
+                p.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Notes that value has been put into owner, so that changes to value
+     * reach owner. Values that are not cached containers are ignored.
+     */
+    void attach(Object value) {
+        if (value instanceof Owner) {
+            CachedEncoding child = ((Owner)value).encoding();
+            if (child.parent == null) {
+                child.parent = this;
+            } else {
+                if (child.moreParents == null) {
+                    child.moreParents = new ArrayList<>(2);
+                }
+                child.moreParents.add(this);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Notes that value has been taken out of owner, once.
+     */
+    void detach(Object value) {
+        if (value instanceof Owner) {
+            CachedEncoding child = ((Owner)value).encoding();
+            if (child.parent == this) {
+                child.parent = null;
+                if (child.moreParents != null && !child.moreParents.isEmpty()) {
+                    child.parent = child.moreParents.remove(
+                        child.moreParents.size() - 1);
+                }
+            } else if (child.moreParents != null) {
+                child.moreParents.remove(this);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Writes one member of owner. Returns false if the member cannot be
+     * cached.
+     */
+    static boolean write(
+        Object value,
+        JsonGenerator gen,
+        SerializerProvider provider)
+        throws IOException
+    {
+        if (value == null) {
+            gen.writeNull();
+            return true;
+        }
+        if (value instanceof Owner) {
+            return ((Owner)value).encoding().write(gen, provider);
+        }
+        provider.defaultSerializeValue(value, gen);
+        return !(value instanceof Map || value instanceof List)
+            || value instanceof PersistentMap
+            || value instanceof PersistentList;
+    }
+
+    /**
+     * Writes owner to gen, splicing in its cached encoding where it can.
+     * Returns false if owner cannot be cached.
+     */
+    boolean write(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        Object[] p = canSplice(gen) ? parts(provider) : null;
+        if (p == null) {
+            owner.writeTo(gen, provider);
+            return false;
+        }
+        // Lets gen write whatever separator comes before a value.
+        gen.writeRawValue("");
+        Object target = gen.getOutputTarget();
+        if (target instanceof Capture) {
+            gen.flush();
+            ((Capture)target).splice(this);
+        } else {
+            emit(p, gen);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cached encoding, encoding owner first if there is none.
+     * Returns null if owner cannot be cached.
+     */
+    private Object[] parts(SerializerProvider provider) throws IOException {
+        Object[] p = parts;
+        if (p != null || uncacheable) {
+            return p;
+        }
+        // Members first, so that their generators are not nested in this
+        // one's, and each can reuse the same recycled buffers.
+        for (Object value : owner.members()) {
+            if (value instanceof Owner) {
+                ((Owner)value).encoding().parts(provider);
+            }
+        }
+        Capture out = new Capture();
+        boolean cacheable;
+        try (JsonGenerator g =
+                 JsonThing.MAPPER.getFactory().createGenerator(out))
+        {
+            cacheable = owner.writeTo(g, provider);
+        }
+        if (!cacheable) {
+            uncacheable = true;
+            return null;
+        }
+        p = out.parts();
+        parts = p;
+        return p;
+    }
+
+    private static void emit(Object[] parts, JsonGenerator gen)
+        throws IOException
+    {
+        for (Object part : parts) {
+            if (part instanceof SerializedString) {
+                gen.writeRaw((SerializedString)part);
+            } else {
+                Object[] p = ((CachedEncoding)part).parts;
+                if (p == null) {
+                    throw new ConcurrentModificationException();
+                }
+                emit(p, gen);
+            }
+        }
+    }
+
+    /**
+     * Collects the parts of an encoding: the text written to it, cut
+     * wherever a cached member is spliced in.
+     */
+    private static final class Capture extends Writer {
+        private static final SerializedString COMMA = new SerializedString(",");
+
+
+        private final StringBuilder text = new StringBuilder();
+        private final List<Object> parts = new ArrayList<>();
+
+        void splice(CachedEncoding member) {
+            cut();
+            parts.add(member);
+        }
+
+        Object[] parts() {
+            cut();
+            return parts.toArray();
+        }
+
+        private void cut() {
+            int n = text.length();
+            if (n == 1 && text.charAt(0) == ',') {
+                parts.add(COMMA);
+            } else if (n > 0) {
+                parts.add(new SerializedString(text.toString()));
+            }
+            text.setLength(0);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            text.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            text.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * CachedList
+ *
+ * An ArrayList that keeps its JSON encoding between encodes, dropping it
+ * whenever it changes. See CachedEncoding. AbstractList routes every change,
+ * including those made through iterators and sublists, through set(), add()
+ * and remove() here.
+ *
+ * @author Jin
+ */
+final class CachedList extends AbstractList<Object>
+    implements RandomAccess, JsonSerializable, CachedEncoding.Owner
+{
+    private final ArrayList<Object> elements = new ArrayList<>();
+    private final CachedEncoding encoding = new CachedEncoding(this);
+
+    @Override
+    public CachedEncoding encoding() {
+        return encoding;
+    }
+
+    @Override
+    public Iterable<Object> members() {
+        return elements;
+    }
+
+    @Override
+    public Object get(int idx) {
+        return elements.get(idx);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public Object set(int idx, Object value) {
+        Object old = elements.set(idx, value);
+        if (old != value) {
+            encoding.detach(old);
+            encoding.attach(value);
+        }
+        return old;
+    }
+
+    @Override
+    public void add(int idx, Object value) {
+        elements.add(idx, value);
+        modCount += 1;
+        encoding.attach(value);
+    }
+
+    @Override
+    public Object remove(int idx) {
+        Object old = elements.remove(idx);
+        modCount += 1;
+        encoding.detach(old);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (Object value : elements) {
+            encoding.detach(value);
+        }
+        elements.clear();
+        modCount += 1;
+        encoding.invalidate();
+    }
+
+    @Override
+    public boolean writeTo(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        boolean cacheable = true;
+        int n = elements.size();
+        gen.writeStartArray(this, n);
+        for (int i = 0; i < n; i++) {
+            cacheable &= CachedEncoding.write(elements.get(i), gen, provider);
+        }
+        gen.writeEndArray();
+        return cacheable;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        encoding.write(gen, provider);
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,176 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CachedMap
+ *
+ * A LinkedHashMap that keeps its JSON encoding between encodes, dropping it
+ * whenever it changes. See CachedEncoding. Every change, whether through
+ * put(), remove(), clear() or the entry set, goes through here so that none
+ * is missed.
+ *
+ * @author Jin
+ */
+final class CachedMap extends AbstractMap<String,Object>
+    implements JsonSerializable, CachedEncoding.Owner
+{
+    private final LinkedHashMap<String,Object> members = new LinkedHashMap<>();
+    private final CachedEncoding encoding = new CachedEncoding(this);
+
+    @Override
+    public CachedEncoding encoding() {
+        return encoding;
+    }
+
+    @Override
+    public Iterable<Object> members() {
+        return members.values();
+    }
+
+    @Override
+    public Object get(Object key) {
+        return members.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return members.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return members.size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        boolean had = members.containsKey(key);
+        Object old = members.put(key, value);
+        if (!had || old != value) {
+            encoding.detach(old);
+            encoding.attach(value);
+        }
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!members.containsKey(key)) {
+            return null;
+        }
+        Object old = members.remove(key);
+        encoding.detach(old);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (Object value : members.values()) {
+            encoding.detach(value);
+        }
+        members.clear();
+        encoding.invalidate();
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public int size() {
+                return members.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                Iterator<Map.Entry<String,Object>> it =
+                    members.entrySet().iterator();
+                return new Iterator<Map.Entry<String,Object>>() {
+                    private Map.Entry<String,Object> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String,Object> next() {
+                        last = it.next();
+                        return new Entry(last);
+                    }
+
+                    @Override
+                    public void remove() {
+                        Object value = (last == null) ? null : last.getValue();
+                        it.remove();
+                        last = null;
+                        encoding.detach(value);
+                    }
+                };
+            }
+        };
+    }
+
+    private final class Entry extends AbstractMap.SimpleEntry<String,Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Map.Entry<String,Object> member;
+
+        Entry(Map.Entry<String,Object> member) {
+            super(member);
+            this.member = member;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            super.setValue(value);
+            Object old = member.setValue(value);
+            if (old != value) {
+                encoding.detach(old);
+                encoding.attach(value);
+            }
+            return old;
+        }
+    }
+
+    @Override
+    public boolean writeTo(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        boolean cacheable = true;
+        gen.writeStartObject(this, members.size());
+        for (Map.Entry<String,Object> e : members.entrySet()) {
+            gen.writeFieldName(e.getKey());
+            cacheable &= CachedEncoding.write(e.getValue(), gen, provider);
+        }
+        gen.writeEndObject();
+        return cacheable;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        encoding.write(gen, provider);
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,251 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * ConcurrentThingMap
+ *
+ * A lock free ConcurrentMap that holds its members in a PersistentMap. Every
+ * update swaps in a new PersistentMap with compare-and-set, retrying if
+ * another thread got there first. Readers, iterators and serialization
+ * work on whichever PersistentMap is current when they start, so they see
+ * a consistent snapshot and never block writers.
+ *
+ * Unlike ConcurrentHashMap, null values are allowed, as JSON has them. As
+ * with other ConcurrentMaps, compute() and merge() treat a member that is
+ * null as absent, and may call their function more than once when threads
+ * race.
+ *
+ * @author Jin
+ */
+final class ConcurrentThingMap extends AbstractMap<String,Object>
+    implements ConcurrentMap<String,Object>, JsonSerializable
+{
+    private final AtomicReference<PersistentMap> members =
+        new AtomicReference<>(PersistentMap.EMPTY);
+
+    @Override
+    public Object get(Object key) {
+        return members.get().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return members.get().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return members.get().size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        while (true) {
+            PersistentMap current = members.get();
+            PersistentMap next = current.with(key, value);
+            if (next == current || members.compareAndSet(current, next)) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        while (true) {
+            PersistentMap current = members.get();
+            Object old = current.get(key);
+            if (old != null) {
+                return old;
+            }
+            if (members.compareAndSet(current, current.with(key, value))) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        while (true) {
+            PersistentMap current = members.get();
+            PersistentMap next = current.without(key);
+            if (next == current || members.compareAndSet(current, next)) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        while (true) {
+            PersistentMap current = members.get();
+            if (!current.containsKey(key)
+                || !Objects.equals(current.get(key), value))
+            {
+                return false;
+            }
+            if (members.compareAndSet(current, current.without(key))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        while (true) {
+            PersistentMap current = members.get();
+            if (!current.containsKey(key)
+                || !Objects.equals(current.get(key), oldValue))
+            {
+                return false;
+            }
+            if (members.compareAndSet(current, current.with(key, newValue))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        while (true) {
+            PersistentMap current = members.get();
+            if (!current.containsKey(key)) {
+                return null;
+            }
+            if (members.compareAndSet(current, current.with(key, value))) {
+                return current.get(key);
+            }
+        }
+    }
+
+    @Override
+    public Object compute(
+        String key,
+        BiFunction<? super String,? super Object,? extends Object> fn)
+    {
+        while (true) {
+            PersistentMap current = members.get();
+            Object value = fn.apply(key, current.get(key));
+            if (update(current, key, value)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public Object merge(
+        String key,
+        Object value,
+        BiFunction<? super Object,? super Object,? extends Object> fn)
+    {
+        while (true) {
+            PersistentMap current = members.get();
+            Object old = current.get(key);
+            Object next = (old == null) ? value : fn.apply(old, value);
+            if (update(current, key, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Sets key to value, or removes it if value is null, provided the map is
+     * still current. Returns false if another thread changed it first.
+     */
+    private boolean update(PersistentMap current, String key, Object value) {
+        PersistentMap next = (value == null)
+            ? current.without(key)
+            : current.with(key, value);
+        return next == current || members.compareAndSet(current, next);
+    }
+
+    @Override
+    public void clear() {
+        members.set(PersistentMap.EMPTY);
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        PersistentMap snapshot = members.get();
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                Iterator<Map.Entry<String,Object>> it =
+                    snapshot.entrySet().iterator();
+                return new Iterator<Map.Entry<String,Object>>() {
+                    private String last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String,Object> next() {
+                        Map.Entry<String,Object> e = it.next();
+                        last = e.getKey();
+                        return new Entry(e.getKey(), e.getValue());
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) {
+                            throw new IllegalStateException();
+                        }
+                        ConcurrentThingMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+        };
+    }
+
+    private final class Entry extends AbstractMap.SimpleEntry<String,Object> {
+        private static final long serialVersionUID = 1L;
+
+        Entry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        members.get().serialize(gen, provider);
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,167 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * DoubleList
+ *
+ * A List of floating point numbers backed by a double[]. Elements read
+ * through the List interface are boxed as Double. Storing anything other than
+ * a Double moves the list over to a boxed ArrayList for good. See LongList.
+ *
+ * @author Jin
+ */
+final class DoubleList extends AbstractList<Object>
+    implements RandomAccess, JsonSerializable
+{
+    private double[] values;
+    private int size;
+    private ArrayList<Object> boxed;
+
+    DoubleList(double[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    boolean isPrimitive() {
+        return boxed == null;
+    }
+
+    double getDouble(int idx) {
+        if (boxed != null) {
+            return JsonThing.doubleOf(boxed.get(idx));
+        }
+        checkIndex(idx, size);
+        return values[idx];
+    }
+
+    double[] toDoubleArray() {
+        if (boxed != null) {
+            double[] a = new double[boxed.size()];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = JsonThing.doubleOf(boxed.get(i));
+            }
+            return a;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private void spill() {
+        ArrayList<Object> list = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        boxed = list;
+        values = null;
+        size = 0;
+    }
+
+    private static void checkIndex(int idx, int size) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + idx + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public Object get(int idx) {
+        if (boxed != null) {
+            return boxed.get(idx);
+        }
+        checkIndex(idx, size);
+        return values[idx];
+    }
+
+    @Override
+    public int size() {
+        return (boxed != null) ? boxed.size() : size;
+    }
+
+    @Override
+    public Object set(int idx, Object value) {
+        if (boxed == null && (value instanceof Double)) {
+            checkIndex(idx, size);
+            double prev = values[idx];
+            values[idx] = (Double)value;
+            return prev;
+        }
+        if (boxed == null) {
+            spill();
+        }
+        return boxed.set(idx, value);
+    }
+
+    @Override
+    public void add(int idx, Object value) {
+        modCount += 1;
+        if (boxed == null && (value instanceof Double)) {
+            if (idx < 0 || idx > size) {
+                throw new IndexOutOfBoundsException(
+                    "Index: " + idx + ", Size: " + size);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(8, size * 2));
+            }
+            System.arraycopy(values, idx, values, idx + 1, size - idx);
+            values[idx] = (Double)value;
+            size += 1;
+            return;
+        }
+        if (boxed == null) {
+            spill();
+        }
+        boxed.add(idx, value);
+    }
+
+    @Override
+    public Object remove(int idx) {
+        modCount += 1;
+        if (boxed != null) {
+            return boxed.remove(idx);
+        }
+        checkIndex(idx, size);
+        double prev = values[idx];
+        System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+        size -= 1;
+        return prev;
+    }
+
+    @Override
+    public void clear() {
+        modCount += 1;
+        if (boxed != null) {
+            boxed.clear();
+        } else {
+            size = 0;
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        if (boxed != null) {
+            provider.defaultSerializeValue(boxed, gen);
+        } else {
+            gen.writeArray(values, 0, size);
+        }
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
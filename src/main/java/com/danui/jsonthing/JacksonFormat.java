@@ -0,0 +1,38 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+
+/**
+ * JacksonFormat
+ *
+ * A JsonThingFormat over a Jackson data format. Values are read with the
+ * same deserializer as JsonThing::parse.
+ *
+ * @author Jin
+ */
+final class JacksonFormat implements JsonThingFormat {
+
+    private final ObjectMapper mapper;
+
+    JacksonFormat(JsonFactory factory) {
+        this(JsonThing.withThings(new ObjectMapper(factory.copy())));
+    }
+
+    JacksonFormat(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        return mapper.readValue(bytes, offset, length, Object.class);
+    }
+}
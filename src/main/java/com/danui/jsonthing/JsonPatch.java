@@ -0,0 +1,480 @@
+package com.danui.jsonthing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonPatch
+ *
+ * Structural diffs between JsonThings, as JSON Patch (RFC 6902) or JSON
+ * Merge Patch (RFC 7396) documents, and the application of such documents
+ * to a JsonThing in place. See JsonThing::diff, JsonThing::mergeDiff,
+ * JsonThing::apply and JsonThing::merge.
+ *
+ * Diffs walk both things together and skip any pair of members that are
+ * the same object. Two frozen maps are walked trie node by trie node,
+ * skipping the subtrees they share, so two versions of a frozen thing are
+ * diffed in time proportional to what changed, except for lists along the
+ * way. Lists, and maps that are not both frozen, are scanned in full,
+ * though members that are the same object are not descended into. Lists
+ * are compared element by element after trimming their common head and
+ * tail, so one insertion or removal gives one operation, but a reordering
+ * gives a replace for each element moved.
+ *
+ * Values are compared as JsonThing::equals compares them, so numbers are
+ * compared by value.
+ *
+ * @author Jin
+ */
+final class JsonPatch {
+
+    private JsonPatch() {
+    }
+
+    // ---- JSON Patch ----
+
+    static List<Object> diff(Object from, Object to) {
+        List<Object> ops = new ArrayList<>();
+        diff(from, to, "", ops);
+        return ops;
+    }
+
+    private static void diff(
+        Object from,
+        Object to,
+        String path,
+        List<Object> ops)
+    {
+        if (from == to) {
+            return;
+        }
+        if (from instanceof PersistentMap && to instanceof PersistentMap) {
+            diff((PersistentMap)from, (PersistentMap)to, path, ops);
+            return;
+        }
+        if (from instanceof Map && to instanceof Map) {
+            Map<?,?> a = (Map<?,?>)from;
+            Map<?,?> b = (Map<?,?>)to;
+            for (Map.Entry<?,?> e : a.entrySet()) {
+                String key = (String)e.getKey();
+                String child = path + "/" + escape(key);
+                Object value = b.get(key);
+                if (value == null && !b.containsKey(key)) {
+                    ops.add(op("remove", child));
+                } else {
+                    diff(e.getValue(), value, child, ops);
+                }
+            }
+            for (Map.Entry<?,?> e : b.entrySet()) {
+                String key = (String)e.getKey();
+                if (!a.containsKey(key)) {
+                    ops.add(op("add", path + "/" + escape(key), e.getValue()));
+                }
+            }
+            return;
+        }
+        if (from instanceof List && to instanceof List) {
+            List<?> a = (List<?>)from;
+            List<?> b = (List<?>)to;
+            int n = a.size();
+            int m = b.size();
+            int head = 0;
+            while (head < n && head < m
+                && JsonThing.equal(a.get(head), b.get(head)))
+            {
+                head += 1;
+            }
+            int tail = 0;
+            while (tail < n - head && tail < m - head
+                && JsonThing.equal(a.get(n - 1 - tail), b.get(m - 1 - tail)))
+            {
+                tail += 1;
+            }
+            int changed = Math.min(n, m) - head - tail;
+            for (int i = head; i < head + changed; i++) {
+                diff(a.get(i), b.get(i), path + "/" + i, ops);
+            }
+            for (int i = head + changed; i < m - tail; i++) {
+                ops.add(op("add", path + "/" + i, b.get(i)));
+            }
+            for (int i = head + changed; i < n - tail; i++) {
+                ops.add(op("remove", path + "/" + (head + changed)));
+            }
+            return;
+        }
+        if (!JsonThing.equal(from, to)) {
+            ops.add(op("replace", path, to));
+        }
+    }
+
+    /**
+     * diff() for two frozen maps, which skips the parts they share. Adds
+     * come after removes and changes, as for other maps.
+     */
+    private static void diff(
+        PersistentMap from,
+        PersistentMap to,
+        String path,
+        List<Object> ops)
+    {
+        List<Object> adds = new ArrayList<>();
+        PersistentMap.diff(from, to, new PersistentMap.Changes() {
+            @Override
+            public void removed(String key) {
+                ops.add(op("remove", path + "/" + escape(key)));
+            }
+
+            @Override
+            public void added(String key, Object value) {
+                adds.add(op("add", path + "/" + escape(key), value));
+            }
+
+            @Override
+            public void changed(String key, Object a, Object b) {
+                diff(a, b, path + "/" + escape(key), ops);
+            }
+        });
+        ops.addAll(adds);
+    }
+
+    private static Map<String,Object> op(String op, String path) {
+        Map<String,Object> map = new LinkedHashMap<>();
+        map.put("op", op);
+        map.put("path", path);
+        return map;
+    }
+
+    private static Map<String,Object> op(String op, String path, Object value) {
+        Map<String,Object> map = op(op, path);
+        map.put("value", value);
+        return map;
+    }
+
+    /**
+     * Applies patch, a list of JSON Patch operations, to target, changing
+     * its maps and lists in place, and returns the result. The result is
+     * target unless the patch replaces the root. Values are copied into
+     * target. Throws IllegalArgumentException on an operation that is
+     * malformed, refers to a missing location, or whose test fails; the
+     * operations before it are left applied.
+     */
+    static Object apply(Object target, List<?> patch) {
+        Object root = target;
+        for (int i = 0; i < patch.size(); i++) {
+            Object op = patch.get(i);
+            if (!(op instanceof Map)) {
+                throw failed(i, "operation is not an object");
+            }
+            try {
+                root = apply(root, (Map<?,?>)op);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw failed(i, e.getMessage());
+            }
+        }
+        return root;
+    }
+
+    private static IllegalArgumentException failed(int i, String why) {
+        return new IllegalArgumentException(
+            "JSON patch operation " + i + " failed: " + why);
+    }
+
+    private static Object apply(Object root, Map<?,?> op) {
+        String name = string(op, "op");
+        List<String> path = tokens(string(op, "path"));
+        switch (name) {
+        case "add":
+            return add(root, path, JsonThing.copy(required(op, "value")));
+        case "remove":
+            remove(root, path);
+            return root;
+        case "replace": {
+            Object value = JsonThing.copy(required(op, "value"));
+            if (!path.isEmpty()) {
+                remove(root, path);
+            }
+            return add(root, path, value);
+        }
+        case "move": {
+            List<String> from = tokens(string(op, "from"));
+            if (from.equals(path)) {
+                get(root, path);
+                return root;
+            }
+            if (isPrefix(from, path)) {
+                throw new IllegalArgumentException(
+                    "cannot move a value into itself");
+            }
+            return add(root, path, remove(root, from));
+        }
+        case "copy": {
+            List<String> from = tokens(string(op, "from"));
+            return add(root, path, JsonThing.copy(get(root, from)));
+        }
+        case "test":
+            if (!JsonThing.equal(get(root, path), required(op, "value"))) {
+                throw new IllegalArgumentException(
+                    "test of " + op.get("path") + " failed");
+            }
+            return root;
+        default:
+            throw new IllegalArgumentException("unknown op " + name);
+        }
+    }
+
+    private static Object required(Map<?,?> op, String member) {
+        Object value = op.get(member);
+        if (value == null && !op.containsKey(member)) {
+            throw new IllegalArgumentException("missing " + member);
+        }
+        return value;
+    }
+
+    private static String string(Map<?,?> op, String member) {
+        Object value = op.get(member);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(member + " must be a string");
+        }
+        return (String)value;
+    }
+
+    private static boolean isPrefix(List<String> prefix, List<String> path) {
+        return prefix.size() < path.size()
+            && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    /**
+     * Splits a JSON pointer into its unescaped reference tokens.
+     */
+    private static List<String> tokens(String pointer) {
+        List<String> tokens = new ArrayList<>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException(
+                "JSON pointer must start with '/': " + pointer);
+        }
+        int start = 1;
+        while (true) {
+            int end = pointer.indexOf('/', start);
+            if (end < 0) {
+                end = pointer.length();
+            }
+            tokens.add(pointer.substring(start, end)
+                .replace("~1", "/").replace("~0", "~"));
+            if (end == pointer.length()) {
+                return tokens;
+            }
+            start = end + 1;
+        }
+    }
+
+    private static String escape(String key) {
+        if (key.indexOf('~') < 0 && key.indexOf('/') < 0) {
+            return key;
+        }
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * The index token denotes in a list of the given size. "-" denotes the
+     * end of the list, which is only allowed when adding.
+     */
+    private static int index(String token, int size, boolean adding) {
+        if (adding && token.equals("-")) {
+            return size;
+        }
+        int n = token.length();
+        if (n == 0 || n > 9 || (n > 1 && token.charAt(0) == '0')) {
+            throw new IllegalArgumentException("bad list index " + token);
+        }
+        int index = 0;
+        for (int i = 0; i < n; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("bad list index " + token);
+            }
+            index = index * 10 + (c - '0');
+        }
+        if (index > (adding ? size : size - 1)) {
+            throw new IndexOutOfBoundsException(
+                "list index " + index + " out of range");
+        }
+        return index;
+    }
+
+    private static Object get(Object root, List<String> path) {
+        Object node = root;
+        for (String token : path) {
+            node = child(node, token);
+        }
+        return node;
+    }
+
+    private static Object child(Object node, String token) {
+        if (node instanceof Map) {
+            Map<?,?> map = (Map<?,?>)node;
+            Object value = map.get(token);
+            if (value == null && !map.containsKey(token)) {
+                throw new IllegalArgumentException("no member " + token);
+            }
+            return value;
+        }
+        if (node instanceof List) {
+            List<?> list = (List<?>)node;
+            return list.get(index(token, list.size(), false));
+        }
+        throw new IllegalArgumentException("no member " + token);
+    }
+
+    private static Object parent(Object root, List<String> path) {
+        return get(root, path.subList(0, path.size() - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object add(Object root, List<String> path, Object value) {
+        if (path.isEmpty()) {
+            return value;
+        }
+        Object parent = parent(root, path);
+        String last = path.get(path.size() - 1);
+        if (parent instanceof Map) {
+            ((Map<String,Object>)parent).put(last, value);
+        } else if (parent instanceof List) {
+            List<Object> list = (List<Object>)parent;
+            list.add(index(last, list.size(), true), value);
+        } else {
+            throw new IllegalArgumentException("no container for " + last);
+        }
+        return root;
+    }
+
+    private static Object remove(Object root, List<String> path) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("cannot remove the root");
+        }
+        Object parent = parent(root, path);
+        String last = path.get(path.size() - 1);
+        if (parent instanceof Map) {
+            Map<?,?> map = (Map<?,?>)parent;
+            if (!map.containsKey(last)) {
+                throw new IllegalArgumentException("no member " + last);
+            }
+            return map.remove(last);
+        }
+        if (parent instanceof List) {
+            List<?> list = (List<?>)parent;
+            return list.remove(index(last, list.size(), false));
+        }
+        throw new IllegalArgumentException("no member " + last);
+    }
+
+    // ---- JSON Merge Patch ----
+
+    /**
+     * A merge patch that turns from into to. Members of to that are null
+     * cannot be told apart from removals, so they are removed when the
+     * patch is applied.
+     */
+    static Object mergeDiff(Object from, Object to) {
+        if (!(from instanceof Map && to instanceof Map)) {
+            return to;
+        }
+        Map<?,?> a = (Map<?,?>)from;
+        Map<?,?> b = (Map<?,?>)to;
+        Map<String,Object> patch = new LinkedHashMap<>();
+        if (a == b) {
+            return patch;
+        }
+        if (a instanceof PersistentMap && b instanceof PersistentMap) {
+            PersistentMap.diff((PersistentMap)a, (PersistentMap)b,
+                new PersistentMap.Changes() {
+                    @Override
+                    public void removed(String key) {
+                        patch.put(key, null);
+                    }
+
+                    @Override
+                    public void added(String key, Object value) {
+                        patch.put(key, value);
+                    }
+
+                    @Override
+                    public void changed(String key, Object old, Object value) {
+                        mergeChanged(patch, key, old, value);
+                    }
+                });
+            return patch;
+        }
+        for (Object key : a.keySet()) {
+            if (!b.containsKey(key)) {
+                patch.put((String)key, null);
+            }
+        }
+        for (Map.Entry<?,?> e : b.entrySet()) {
+            String key = (String)e.getKey();
+            Object value = e.getValue();
+            Object old = a.get(key);
+            if (old == value && (old != null || a.containsKey(key))) {
+                continue;
+            }
+            if (!a.containsKey(key)) {
+                patch.put(key, value);
+            } else {
+                mergeChanged(patch, key, old, value);
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Adds to patch what turns old, the value at key, into value.
+     */
+    private static void mergeChanged(
+        Map<String,Object> patch,
+        String key,
+        Object old,
+        Object value)
+    {
+        if (old instanceof Map && value instanceof Map) {
+            Map<?,?> child = (Map<?,?>)mergeDiff(old, value);
+            if (!child.isEmpty()) {
+                patch.put(key, child);
+            }
+        } else if (!JsonThing.equal(old, value)) {
+            patch.put(key, value);
+        }
+    }
+
+    /**
+     * Applies a merge patch to target, changing its maps in place, and
+     * returns the result. Values are copied into target.
+     */
+    @SuppressWarnings("unchecked")
+    static Object merge(Object target, Object patch) {
+        if (!(patch instanceof Map)) {
+            return JsonThing.copy(patch);
+        }
+        Map<String,Object> map = (target instanceof Map)
+            ? (Map<String,Object>)target
+            : new HashMap<String,Object>();
+        for (Map.Entry<?,?> e : ((Map<?,?>)patch).entrySet()) {
+            String key = (String)e.getKey();
+            Object value = e.getValue();
+            if (value == null) {
+                map.remove(key);
+            } else {
+                Object old = map.get(key);
+                Object merged = merge(old, value);
+                if (merged != old) {
+                    map.put(key, merged);
+                }
+            }
+        }
+        return map;
+    }
+}
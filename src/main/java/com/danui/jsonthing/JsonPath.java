@@ -0,0 +1,275 @@
+package com.danui.jsonthing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JsonPath
+ *
+ * A JSON Pointer (RFC 6901) compiled once into an array of segments, so that
+ * it can be evaluated against many JsonThings without parsing the expression
+ * again. Examples: "/district_ids/0", "/user/profile/name".
+ *
+ * Paths made by compilePattern() also support two extensions, for use
+ * with select():
+ *
+ * - a segment that is exactly "*" matches every member of a map or every
+ *   element of a list;
+ * - a segment of the form "{a,b,c}" matches each of the listed keys or
+ *   indices in turn.
+ *
+ * Examples: "/contacts/*", "/contacts/{0,2}/name". Paths made by compile()
+ * and of() are plain pointers, in which "*" and "{a,b}" are keys like any
+ * other.
+ *
+ * Compiled paths are immutable and safe to share between threads. Use of()
+ * to look paths up in a shared cache keyed by expression.
+ *
+ * @author Jin
+ */
+public final class JsonPath {
+
+    private static final int MAX_CACHED = 1024;
+
+    private static final ConcurrentHashMap<String,JsonPath> CACHE =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Returns the compiled path for expression, compiling and caching it if
+     * it has not been seen before. Once the cache is full, further
+     * expressions are compiled but not cached.
+     */
+    public static JsonPath of(String expression) {
+        JsonPath path = CACHE.get(expression);
+        if (path == null) {
+            path = compile(expression);
+            if (CACHE.size() < MAX_CACHED) {
+                JsonPath prev = CACHE.putIfAbsent(expression, path);
+                if (prev != null) {
+                    path = prev;
+                }
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Compiles expression. Throws IllegalArgumentException if expression is
+     * neither empty nor starts with '/'.
+     */
+    public static JsonPath compile(String expression) {
+        return compile(expression, false);
+    }
+
+    /**
+     * Compiles expression, reading "*" and "{a,b,c}" segments as wildcard
+     * and multi-select segments.
+     */
+    public static JsonPath compilePattern(String expression) {
+        return compile(expression, true);
+    }
+
+    private static JsonPath compile(String expression, boolean pattern) {
+        if (expression.isEmpty()) {
+            return new JsonPath(expression, new Segment[0]);
+        }
+        if (expression.charAt(0) != '/') {
+            throw new IllegalArgumentException(
+                "JSON pointer must start with '/': " + expression);
+        }
+        List<Segment> segments = new ArrayList<>();
+        int start = 1;
+        while (true) {
+            int end = expression.indexOf('/', start);
+            if (end < 0) {
+                end = expression.length();
+            }
+            String raw = expression.substring(start, end);
+            segments.add(pattern ? Segment.parse(raw) : Segment.key(raw));
+            if (end == expression.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        return new JsonPath(expression, segments.toArray(new Segment[0]));
+    }
+
+    private final String expression;
+    private final Segment[] segments;
+    private final boolean single;
+
+    private JsonPath(String expression, Segment[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+        boolean single = true;
+        for (Segment segment : segments) {
+            single &= (segment.kind == Segment.KEY);
+        }
+        this.single = single;
+    }
+
+    /**
+     * True if the path has no wildcard or multi-select segments, and so
+     * refers to at most one value.
+     */
+    public boolean isSingle() {
+        return single;
+    }
+
+    /**
+     * Returns the value the path refers to, or null if there is no such
+     * value. Throws IllegalStateException if the path is not single.
+     */
+    public Object getObject(JsonThing thing) {
+        if (!single) {
+            throw new IllegalStateException(
+                "Path selects multiple values: " + expression);
+        }
+        Object node = thing.asObject();
+        for (Segment segment : segments) {
+            node = segment.step(node);
+            if (node == Segment.MISSING) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    public JsonThing get(JsonThing thing) {
+        return JsonThing.wrap(getObject(thing));
+    }
+
+    /**
+     * Appends every value the path matches to out, in document order, and
+     * returns how many were appended. A JSON null that is present counts as
+     * a match.
+     */
+    public int select(JsonThing thing, List<Object> out) {
+        int size = out.size();
+        select(thing.asObject(), 0, out);
+        return out.size() - size;
+    }
+
+    private void select(Object node, int i, List<Object> out) {
+        if (i == segments.length) {
+            out.add(node);
+            return;
+        }
+        Segment segment = segments[i];
+        switch (segment.kind) {
+        case Segment.KEY:
+            node = segment.step(node);
+            if (node != Segment.MISSING) {
+                select(node, i + 1, out);
+            }
+            break;
+        case Segment.WILDCARD:
+            if (node instanceof Map) {
+                for (Object value : ((Map<?,?>)node).values()) {
+                    select(value, i + 1, out);
+                }
+            } else if (node instanceof List) {
+                List<?> list = (List<?>)node;
+                for (int j = 0, n = list.size(); j < n; j++) {
+                    select(list.get(j), i + 1, out);
+                }
+            }
+            break;
+        default:
+            for (Segment choice : segment.choices) {
+                Object child = choice.step(node);
+                if (child != Segment.MISSING) {
+                    select(child, i + 1, out);
+                }
+            }
+            break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private static final class Segment {
+        static final int KEY = 0;
+        static final int WILDCARD = 1;
+        static final int MULTI = 2;
+
+        static final Object MISSING = new Object();
+
+        final int kind;
+        final String key;
+        final int index;
+        final Segment[] choices;
+
+        private Segment(int kind, String key, int index, Segment[] choices) {
+            this.kind = kind;
+            this.key = key;
+            this.index = index;
+            this.choices = choices;
+        }
+
+        static Segment parse(String raw) {
+            if (raw.equals("*")) {
+                return new Segment(WILDCARD, null, -1, null);
+            }
+            int n = raw.length();
+            if (n >= 2 && raw.charAt(0) == '{' && raw.charAt(n - 1) == '}') {
+                String[] parts = raw.substring(1, n - 1).split(",", -1);
+                Segment[] choices = new Segment[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    choices[i] = key(parts[i]);
+                }
+                return new Segment(MULTI, null, -1, choices);
+            }
+            return key(raw);
+        }
+
+        static Segment key(String raw) {
+            String key = raw.replace("~1", "/").replace("~0", "~").intern();
+            return new Segment(KEY, key, index(key), null);
+        }
+
+        /**
+         * The list index that key denotes, or -1 if it does not denote one.
+         * Leading zeros are not allowed, as per RFC 6901.
+         */
+        private static int index(String key) {
+            int n = key.length();
+            if (n == 0 || n > 9 || (n > 1 && key.charAt(0) == '0')) {
+                return -1;
+            }
+            int index = 0;
+            for (int i = 0; i < n; i++) {
+                char c = key.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                index = index * 10 + (c - '0');
+            }
+            return index;
+        }
+
+        Object step(Object node) {
+            if (node instanceof Map) {
+                Map<?,?> map = (Map<?,?>)node;
+                Object value = map.get(key);
+                if (value == null && !map.containsKey(key)) {
+                    return MISSING;
+                }
+                return value;
+            }
+            if (node instanceof List) {
+                List<?> list = (List<?>)node;
+                if (index < 0 || index >= list.size()) {
+                    return MISSING;
+                }
+                return list.get(index);
+            }
+            return MISSING;
+        }
+    }
+}
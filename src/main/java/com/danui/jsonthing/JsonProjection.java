@@ -0,0 +1,506 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonProjection
+ *
+ * Pulls a fixed set of fields out of JSON documents without parsing the
+ * rest. Each field has a name, a type and a path into the document, given
+ * as keys and list indices the way JsonThing::get takes them:
+ *
+ *     JsonProjection projection = JsonProjection.builder()
+ *         .field("name", JsonProjection.Type.STRING, "name")
+ *         .field("badge", JsonProjection.Type.LONG, "badge_number")
+ *         .field("district", JsonProjection.Type.LONG, "district_ids", 0)
+ *         .build();
+ *     JsonThing flat = projection.project(bytes);
+ *
+ * The document is read in a single pass over the parser's tokens. Members
+ * and elements on no field's path are skipped without being decoded, and
+ * reading stops as soon as every field has been found, so anything after
+ * the last field is not read, or checked, at all.
+ *
+ * project() returns the fields as a flat map, keyed by field name, holding
+ * only the fields found. project(input, record) fills a Record instead,
+ * which keeps numbers and booleans unboxed and can be reused from one
+ * document to the next.
+ *
+ * A field whose value is JSON null is treated as not found. A value of the
+ * wrong type for its field fails with an IOException. THING fields are
+ * read whole, with the projection's codec.
+ *
+ * JsonProjections are immutable and thread safe. Records are not.
+ *
+ * @author Jin
+ */
+public final class JsonProjection {
+
+    public enum Type {
+        STRING, LONG, DOUBLE, BOOLEAN, THING
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Type> types = new ArrayList<>();
+        private final List<Object[]> paths = new ArrayList<>();
+        private JsonThingCodec codec = JsonThingCodec.DEFAULT;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a field. path is made of String keys and Integer indices, and
+         * must not lead into, or be led into by, another field's path.
+         */
+        public Builder field(String name, Type type, Object... path) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException(
+                    "Duplicate field: " + name);
+            }
+            if (path.length == 0) {
+                throw new IllegalArgumentException(
+                    "Empty path for field: " + name);
+            }
+            for (Object step : path) {
+                if (!(step instanceof String)
+                    && !(step instanceof Integer && (Integer)step >= 0))
+                {
+                    throw new IllegalArgumentException(
+                        "Bad path step for field " + name + ": " + step);
+                }
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                Object[] other = paths.get(i);
+                int n = Math.min(other.length, path.length);
+                if (Arrays.equals(
+                    Arrays.copyOf(other, n), Arrays.copyOf(path, n)))
+                {
+                    throw new IllegalArgumentException(
+                        "Path of field " + name + " overlaps field "
+                        + names.get(i));
+                }
+            }
+            names.add(name);
+            types.add(type);
+            paths.add(path.clone());
+            return this;
+        }
+
+        /**
+         * The codec to read with, and to read THING fields as. Its listener
+         * is told about each document projected. Defaults to
+         * JsonThingCodec.DEFAULT.
+         */
+        public Builder codec(JsonThingCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public JsonProjection build() {
+            return new JsonProjection(this);
+        }
+    }
+
+    /**
+     * One step along the paths of the fields. A step either ends at a field,
+     * or leads on by key or by index.
+     */
+    private static final class Step {
+        int field = -1;
+        Map<String,Step> keys;
+        Step[] indices;
+
+        Step next(Object key) {
+            Step next;
+            if (key instanceof String) {
+                if (keys == null) {
+                    keys = new HashMap<>();
+                }
+                next = keys.computeIfAbsent((String)key, k -> new Step());
+            } else {
+                int idx = (Integer)key;
+                if (indices == null) {
+                    indices = new Step[idx + 1];
+                } else if (indices.length <= idx) {
+                    indices = Arrays.copyOf(indices, idx + 1);
+                }
+                if (indices[idx] == null) {
+                    indices[idx] = new Step();
+                }
+                next = indices[idx];
+            }
+            return next;
+        }
+    }
+
+    private final String[] names;
+    private final Type[] types;
+    private final Object[][] paths;
+    private final Map<String,Integer> indexes = new HashMap<>();
+    private final Step root = new Step();
+    private final JsonThingCodec codec;
+
+    private JsonProjection(Builder builder) {
+        this.names = builder.names.toArray(new String[0]);
+        this.types = builder.types.toArray(new Type[0]);
+        this.paths = builder.paths.toArray(new Object[0][]);
+        this.codec = builder.codec;
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+            Step step = root;
+            for (Object key : paths[i]) {
+                step = step.next(key);
+            }
+            step.field = i;
+        }
+    }
+
+    /**
+     * The number of fields.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int field) {
+        return names[field];
+    }
+
+    public Type type(int field) {
+        return types[field];
+    }
+
+    /**
+     * The field's path, not to be changed.
+     */
+    Object[] path(int field) {
+        return paths[field];
+    }
+
+    JsonThingCodec codec() {
+        return codec;
+    }
+
+    /**
+     * The index of the named field, or -1 if there is none.
+     */
+    public int indexOf(String name) {
+        Integer idx = indexes.get(name);
+        return (idx == null) ? -1 : idx;
+    }
+
+    public Record newRecord() {
+        return new Record(this);
+    }
+
+    public JsonThing project(String jsonString) throws IOException {
+        return project(jsonString, newRecord()).toThing();
+    }
+
+    public JsonThing project(byte[] bytes) throws IOException {
+        return project(bytes, 0, bytes.length, newRecord()).toThing();
+    }
+
+    /**
+     * Projects the JSON from in, and closes it.
+     */
+    public JsonThing project(InputStream in) throws IOException {
+        return project(in, newRecord()).toThing();
+    }
+
+    public Record project(String jsonString, Record record)
+        throws IOException
+    {
+        return project(
+            codec.factory().createParser(jsonString), record, jsonString);
+    }
+
+    public Record project(byte[] bytes, Record record) throws IOException {
+        return project(bytes, 0, bytes.length, record);
+    }
+
+    public Record project(byte[] bytes, int offset, int length, Record record)
+        throws IOException
+    {
+        return project(
+            codec.factory().createParser(bytes, offset, length), record, null);
+    }
+
+    /**
+     * Projects the JSON from in into record, and closes in.
+     */
+    public Record project(InputStream in, Record record) throws IOException {
+        return project(codec.factory().createParser(in), record, null);
+    }
+
+    private Record project(JsonParser p, Record record, String source)
+        throws IOException
+    {
+        try {
+            JsonToken t = p.nextToken();
+            if (t == null) {
+                throw MismatchedInputException.from(
+                    p, Object.class, "No content to map due to end-of-input");
+            }
+            return read(p, record, source);
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * Projects the value that starts at p's current token into record. p is
+     * left somewhere inside the value if reading stopped early.
+     */
+    Record read(JsonParser p, Record record) throws IOException {
+        return read(p, record, null);
+    }
+
+    /**
+     * As read(p, record), where source is the String p reads, if any.
+     */
+    private Record read(JsonParser p, Record record, String source)
+        throws IOException
+    {
+        if (record.projection != this) {
+            throw new IllegalArgumentException(
+                "Record belongs to another projection");
+        }
+        record.clear();
+        JsonThingListener listener = codec.listener();
+        if (listener == null) {
+            value(p, p.currentToken(), root, record);
+            return record;
+        }
+        long start = System.nanoTime();
+        long from = JsonThingCodec.offset(p.getTokenLocation(), source);
+        try {
+            value(p, p.currentToken(), root, record);
+            listener.parsed(
+                System.nanoTime() - start,
+                JsonThingCodec.offset(p.getCurrentLocation(), source) - from,
+                -1);
+            return record;
+        } catch (IOException | RuntimeException e) {
+            listener.parseFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the value starting at token t, which step leads to. Returns true
+     * once every field has been found.
+     */
+    private boolean value(JsonParser p, JsonToken t, Step step, Record record)
+        throws IOException
+    {
+        if (step.field >= 0) {
+            return capture(p, t, step.field, record);
+        }
+        if (t == JsonToken.START_OBJECT && step.keys != null) {
+            String key;
+            while ((key = p.nextFieldName()) != null) {
+                JsonToken v = p.nextToken();
+                Step next = step.keys.get(key);
+                if (next == null) {
+                    p.skipChildren();
+                } else if (value(p, v, next, record)) {
+                    return true;
+                }
+            }
+        } else if (t == JsonToken.START_ARRAY && step.indices != null) {
+            int idx = 0;
+            JsonToken v;
+            while ((v = p.nextToken()) != JsonToken.END_ARRAY) {
+                Step next = (idx < step.indices.length)
+                    ? step.indices[idx]
+                    : null;
+                if (next == null) {
+                    p.skipChildren();
+                } else if (value(p, v, next, record)) {
+                    return true;
+                }
+                idx += 1;
+            }
+        } else {
+            p.skipChildren();
+        }
+        return false;
+    }
+
+    private boolean capture(JsonParser p, JsonToken t, int field, Record record)
+        throws IOException
+    {
+        if (t == JsonToken.VALUE_NULL) {
+            return false;
+        }
+        switch (types[field]) {
+        case STRING:
+            expect(p, field, t == JsonToken.VALUE_STRING);
+            record.objects[field] = p.getText();
+            break;
+        case LONG:
+            expect(p, field, t == JsonToken.VALUE_NUMBER_INT);
+            record.longs[field] = p.getLongValue();
+            break;
+        case DOUBLE:
+            expect(p, field, t == JsonToken.VALUE_NUMBER_INT
+                || t == JsonToken.VALUE_NUMBER_FLOAT);
+            record.doubles[field] = p.getDoubleValue();
+            break;
+        case BOOLEAN:
+            expect(p, field, t == JsonToken.VALUE_TRUE
+                || t == JsonToken.VALUE_FALSE);
+            record.longs[field] = (t == JsonToken.VALUE_TRUE) ? 1 : 0;
+            break;
+        default:
+            record.objects[field] = codec.readValue(p);
+            break;
+        }
+        if (record.present[field]) {
+            return false;
+        }
+        record.present[field] = true;
+        return --record.missing == 0;
+    }
+
+    private void expect(JsonParser p, int field, boolean ok)
+        throws IOException
+    {
+        if (!ok) {
+            throw wrongType(p, field, p.currentToken());
+        }
+    }
+
+    /**
+     * The error for finding a value of the wrong type for field. p is null
+     * where the value was not parsed, as for JsonThingBatch's records.
+     */
+    IOException wrongType(JsonParser p, int field, Object found) {
+        return MismatchedInputException.from(
+            p, Object.class,
+            "Expected " + types[field] + " for field " + names[field]
+            + " but found " + found);
+    }
+
+    /**
+     * Record
+     *
+     * The fields of one projected document, read by field index. Numbers
+     * and booleans are held unboxed. Fields that were not found read as
+     * null, 0 or false; has() tells them apart.
+     */
+    public static final class Record {
+        private final JsonProjection projection;
+        private final boolean[] present;
+        private final long[] longs;
+        private final double[] doubles;
+        private final Object[] objects;
+        private int missing;
+
+        private Record(JsonProjection projection) {
+            int n = projection.size();
+            this.projection = projection;
+            this.present = new boolean[n];
+            this.longs = new long[n];
+            this.doubles = new double[n];
+            this.objects = new Object[n];
+        }
+
+        private void clear() {
+            Arrays.fill(present, false);
+            Arrays.fill(longs, 0);
+            Arrays.fill(doubles, 0);
+            Arrays.fill(objects, null);
+            missing = present.length;
+        }
+
+        public JsonProjection projection() {
+            return projection;
+        }
+
+        public boolean has(int field) {
+            return present[field];
+        }
+
+        public String getString(int field) {
+            check(field, Type.STRING);
+            return (String)objects[field];
+        }
+
+        public long getLong(int field) {
+            check(field, Type.LONG);
+            return longs[field];
+        }
+
+        public double getDouble(int field) {
+            check(field, Type.DOUBLE);
+            return doubles[field];
+        }
+
+        public boolean is(int field) {
+            check(field, Type.BOOLEAN);
+            return longs[field] != 0;
+        }
+
+        /**
+         * The field's value, of any type, as a JsonThing.
+         */
+        public JsonThing get(int field) {
+            return JsonThing.wrap(value(field));
+        }
+
+        private Object value(int field) {
+            if (!present[field]) {
+                return null;
+            }
+            switch (projection.types[field]) {
+            case LONG:
+                return longs[field];
+            case DOUBLE:
+                return doubles[field];
+            case BOOLEAN:
+                return longs[field] != 0;
+            default:
+                return objects[field];
+            }
+        }
+
+        private void check(int field, Type type) {
+            if (projection.types[field] != type) {
+                throw new ClassCastException(
+                    "Field " + projection.names[field] + " is "
+                    + projection.types[field] + ", not " + type);
+            }
+        }
+
+        /**
+         * The fields found, as a map from field name to value, in the order
+         * the fields were added to the projection.
+         */
+        public JsonThing toThing() {
+            Map<String,Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < present.length; i++) {
+                if (present[i]) {
+                    map.put(projection.names[i], value(i));
+                }
+            }
+            return JsonThing.wrap(map);
+        }
+    }
+}
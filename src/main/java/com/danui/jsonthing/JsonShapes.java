@@ -0,0 +1,137 @@
+package com.danui.jsonthing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JsonShapes
+ *
+ * A registry of shared key sets for holding many maps with the same keys,
+ * such as the records of a large data set. Maps parsed or built through a
+ * JsonShapes store their keys once, in a shape shared by every map with the
+ * same keys in the same order, plus an array of values. Reading a member
+ * looks its key up in the shape's table of slots.
+ *
+ * The maps are ordinary Maps to asMap() and encode to the same JSON. They
+ * keep members in insertion order.
+ *
+ * A JsonShapes holds at most maxShapes shapes, so that documents with
+ * unbounded key sets cannot make it grow forever, and no shape has more
+ * than MAX_KEYS keys, as each shape holds its own copy of its keys. Maps
+ * that need a shape beyond either limit fall back to a LinkedHashMap.
+ * JsonShapes is thread safe.
+ *
+ *     JsonShapes shapes = new JsonShapes();
+ *     for (String line : lines) {
+ *         records.add(shapes.parse(line));
+ *     }
+ *
+ * @author Jin
+ */
+public final class JsonShapes {
+
+    public static final int DEFAULT_MAX_SHAPES = 4096;
+
+    /**
+     * The most keys a shape can have. Wider maps are LinkedHashMaps.
+     */
+    public static final int MAX_KEYS = 64;
+
+    private final int maxShapes;
+    private final AtomicInteger count = new AtomicInteger();
+    private final Shape root;
+    private final JsonThingCodec codec;
+
+    public JsonShapes() {
+        this(DEFAULT_MAX_SHAPES);
+    }
+
+    public JsonShapes(int maxShapes) {
+        if (maxShapes < 0) {
+            throw new IllegalArgumentException(
+                "maxShapes must not be negative: " + maxShapes);
+        }
+        this.maxShapes = maxShapes;
+        this.root = new Shape(this);
+        this.codec = JsonThingCodec.builder().shapes(this).build();
+    }
+
+    Shape root() {
+        return root;
+    }
+
+    /**
+     * Claims room for one more shape, returning false if there is none.
+     */
+    boolean reserve() {
+        while (true) {
+            int n = count.get();
+            if (n >= maxShapes) {
+                return false;
+            }
+            if (count.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The number of shapes created so far, not counting the empty one.
+     */
+    public int size() {
+        return count.get();
+    }
+
+    public JsonThing parse(String jsonString) throws IOException {
+        return codec.parse(jsonString);
+    }
+
+    public JsonThing parse(byte[] bytes) throws IOException {
+        return codec.parse(bytes);
+    }
+
+    public JsonThing parse(InputStream in) throws IOException {
+        return codec.parse(in);
+    }
+
+    public JsonThing newMap() {
+        return JsonThing.wrap(new ShapedMap(root, new Object[4]));
+    }
+
+    /**
+     * Returns a copy of thing in which every map is shaped. Lists of numbers
+     * and scalar values are shared with thing.
+     */
+    public JsonThing compact(JsonThing thing) {
+        return JsonThing.wrap(compact(thing.asObject()));
+    }
+
+    private Object compact(Object value) {
+        if (value instanceof Map) {
+            ShapedMap map = new ShapedMap(root, new Object[4]);
+            for (Map.Entry<?,?> e : ((Map<?,?>)value).entrySet()) {
+                map.put((String)e.getKey(), compact(e.getValue()));
+            }
+            map.trim();
+            return map;
+        }
+        if ((value instanceof LongList && ((LongList)value).isPrimitive())
+            || (value instanceof DoubleList && ((DoubleList)value).isPrimitive()))
+        {
+            return value;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>)value;
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(compact(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
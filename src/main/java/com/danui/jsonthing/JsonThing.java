@@ -1,12 +1,34 @@
 package com.danui.jsonthing;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
 
 /**
  * JsonThing
@@ -15,14 +37,172 @@ import java.util.stream.Collectors;
  */
 public class JsonThing {
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final ObjectMapper MAPPER = withThings(new ObjectMapper());
+
+    /**
+     * Configures mapper to read untyped values the way JsonThing does.
+     */
+    static ObjectMapper withThings(ObjectMapper mapper) {
+        return withThings(mapper, null, true);
+    }
+
+    /**
+     * As withThings(mapper), with objects read into ShapedMaps of the given
+     * shapes if not null, and number arrays compacted if compactNumbers.
+     */
+    static ObjectMapper withThings(
+        ObjectMapper mapper,
+        JsonShapes shapes,
+        boolean compactNumbers)
+    {
+        return mapper.registerModule(new SimpleModule()
+            .addDeserializer(
+                Object.class, new ThingDeserializer(shapes, compactNumbers)));
+    }
+
+    /**
+     * For writing values into a generator that is shared by several values,
+     * so does not flush after each one.
+     */
+    static final ObjectWriter WRITER = MAPPER.writer()
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
     public static JsonThing wrap(Object thing) {
         return new JsonThing(thing);
     }
 
     public static JsonThing parse(String jsonString) throws IOException {
-        return wrap(MAPPER.readValue(jsonString, Map.class));
+        return JsonThingCodec.DEFAULT.parse(jsonString);
+    }
+
+    public static JsonThing parse(InputStream in) throws IOException {
+        return JsonThingCodec.DEFAULT.parse(in);
+    }
+
+    public static JsonThing parse(Reader reader) throws IOException {
+        return JsonThingCodec.DEFAULT.parse(reader);
+    }
+
+    public static JsonThing parse(byte[] bytes) throws IOException {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public static JsonThing parse(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        return JsonThingCodec.DEFAULT.parse(bytes, offset, length);
+    }
+
+    public static JsonThing parse(String jsonString, JsonThingCodec codec)
+        throws IOException
+    {
+        return codec.parse(jsonString);
+    }
+
+    public static JsonThing parse(InputStream in, JsonThingCodec codec)
+        throws IOException
+    {
+        return codec.parse(in);
+    }
+
+    public static JsonThing parse(byte[] bytes, JsonThingCodec codec)
+        throws IOException
+    {
+        return codec.parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads only the fields of projection, into a flat map. See
+     * JsonProjection.
+     */
+    public static JsonThing parse(String jsonString, JsonProjection projection)
+        throws IOException
+    {
+        return projection.project(jsonString);
+    }
+
+    public static JsonThing parse(byte[] bytes, JsonProjection projection)
+        throws IOException
+    {
+        return projection.project(bytes);
+    }
+
+    /**
+     * Parses bytes written by toBytes(format).
+     */
+    public static JsonThing parse(byte[] bytes, JsonThingFormat format)
+        throws IOException
+    {
+        return parse(bytes, 0, bytes.length, format);
+    }
+
+    public static JsonThing parse(
+        byte[] bytes,
+        int offset,
+        int length,
+        JsonThingFormat format)
+        throws IOException
+    {
+        return wrap(format.decode(bytes, offset, length));
+    }
+
+    /**
+     * Parses the bytes between the buffer's position and limit. The buffer's
+     * position is left unchanged.
+     */
+    public static JsonThing parse(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            return parse(
+                buffer.array(),
+                buffer.arrayOffset() + buffer.position(),
+                buffer.remaining());
+        }
+        return parse(new ByteBufferBackedInputStream(buffer.duplicate()));
+    }
+
+    /**
+     * Parses lazily. The input is only scanned for structure; values are
+     * decoded when they are first read through get(), asMap() or asList().
+     * The returned thing keeps a reference to the input bytes, which must
+     * not be modified afterwards. Until it is modified, the returned thing
+     * may be read from many threads at once.
+     */
+    public static JsonThing parseLazy(byte[] bytes) throws IOException {
+        return parseLazy(bytes, 0, bytes.length);
+    }
+
+    public static JsonThing parseLazy(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        return wrap(LazyValues.root(
+            LazySource.of(bytes), offset, offset + length));
+    }
+
+    public static JsonThing parseLazy(String jsonString) throws IOException {
+        return parseLazy(jsonString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Memory maps the file at path and parses it lazily, as parseLazy()
+     * does. Values are decoded from the mapped file when they are first
+     * read, so the file's contents are never copied onto the heap as a
+     * whole. The result is read-only: put(), add() and changes through
+     * asMap() or asList() throw UnsupportedOperationException, and it may
+     * be read from many threads at once. Files larger than 2 GiB are not
+     * supported.
+     */
+    public static JsonThing map(Path path) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map: " + path);
+            }
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return wrap(LazyValues.root(LazySource.of(buffer), 0, (int)size));
+        }
     }
 
     public static JsonThing newMap() {
@@ -33,6 +213,55 @@ public class JsonThing {
         return new JsonThing(new ArrayList<Object>());
     }
 
+    /**
+     * A map that may be read and updated by many threads at once. Updates
+     * are lock free, and toJson() encodes a consistent snapshot without
+     * blocking writers. Members that are themselves maps or lists should be
+     * frozen or concurrent too. See also increment(), putIfAbsent() and
+     * compute().
+     */
+    public static JsonThing newConcurrentMap() {
+        return new JsonThing(new ConcurrentThingMap());
+    }
+
+    /**
+     * A list that may be read and updated by many threads at once. It is a
+     * CopyOnWriteArrayList, so suits lists that are read far more often than
+     * they are changed. toJson() encodes a consistent snapshot.
+     */
+    public static JsonThing newConcurrentList() {
+        return new JsonThing(new CopyOnWriteArrayList<Object>());
+    }
+
+    /**
+     * A map that keeps its JSON encoding from one toJson() to the next, for
+     * things that are encoded far more often than they change. A change
+     * re-encodes only the maps and lists on the path to it. Members that are
+     * maps or lists should be cached or frozen too, or nothing above them
+     * can be cached. See also cached().
+     */
+    public static JsonThing newCachedMap() {
+        return new JsonThing(new CachedMap());
+    }
+
+    /**
+     * A list that keeps its JSON encoding from one toJson() to the next. See
+     * newCachedMap().
+     */
+    public static JsonThing newCachedList() {
+        return new JsonThing(new CachedList());
+    }
+
+    public static JsonThing newLongList(long... values) {
+        return new JsonThing(
+            new LongList(Arrays.copyOf(values, values.length), values.length));
+    }
+
+    public static JsonThing newDoubleList(double... values) {
+        return new JsonThing(
+            new DoubleList(Arrays.copyOf(values, values.length), values.length));
+    }
+
     private final Object thing;
 
     private JsonThing(Object thing) {
@@ -92,7 +321,7 @@ public class JsonThing {
     }
 
     public long longValue() {
-        return asLong();
+        return longOf(thing);
     }
 
     public boolean booleanValue() {
@@ -100,7 +329,82 @@ public class JsonThing {
     }
 
     public double doubleValue() {
-        return asDouble();
+        return doubleOf(thing);
+    }
+
+    static long longOf(Object x) {
+        if (x instanceof Integer) {
+            return (Integer)x;
+        }
+        return (Long)x;
+    }
+
+    static double doubleOf(Object x) {
+        if (x instanceof Double) {
+            return (Double)x;
+        }
+        if (x instanceof Long) {
+            return (Long)x;
+        }
+        if (x instanceof Integer) {
+            return (Integer)x;
+        }
+        if (x instanceof Float) {
+            return (Float)x;
+        }
+        return (Double)x;
+    }
+
+    public long[] asLongArray() {
+        if (thing instanceof LongList) {
+            return ((LongList)thing).toLongArray();
+        }
+        List<Object> list = asList();
+        long[] a = new long[list.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = longOf(list.get(i));
+        }
+        return a;
+    }
+
+    public double[] asDoubleArray() {
+        if (thing instanceof DoubleList) {
+            return ((DoubleList)thing).toDoubleArray();
+        }
+        if (thing instanceof LongList) {
+            return ((LongList)thing).toDoubleArray();
+        }
+        List<Object> list = asList();
+        double[] a = new double[list.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = doubleOf(list.get(i));
+        }
+        return a;
+    }
+
+    public long longAt(int idx) {
+        return longAt(thing, idx);
+    }
+
+    public double doubleAt(int idx) {
+        return doubleAt(thing, idx);
+    }
+
+    private static long longAt(Object list, int idx) {
+        if (list instanceof LongList) {
+            return ((LongList)list).getLong(idx);
+        }
+        return longOf(((List<?>)list).get(idx));
+    }
+
+    private static double doubleAt(Object list, int idx) {
+        if (list instanceof DoubleList) {
+            return ((DoubleList)list).getDouble(idx);
+        }
+        if (list instanceof LongList) {
+            return ((LongList)list).getLong(idx);
+        }
+        return doubleOf(((List<?>)list).get(idx));
     }
 
     public JsonThing get(String key) {
@@ -111,15 +415,124 @@ public class JsonThing {
         return new JsonThing(asList().get(idx));
     }
 
+    /**
+     * Navigates using a JSON pointer such as "/district_ids/0". Returns a
+     * JsonThing wrapping null if there is no value at that location. See
+     * JsonPath.
+     */
+    public JsonThing at(String pointer) {
+        return JsonPath.of(pointer).get(this);
+    }
+
     public boolean is(String key) {
         Boolean val = (Boolean)(asMap().get(key));
         return (val != null) && val;
     }
 
+    /**
+     * Returns a read-only view of the list that wraps each element as it is
+     * read. Later changes to the list show through the view.
+     */
     public List<JsonThing> asListOfThings() {
-        return asList().stream()
-            .map(x -> JsonThing.wrap(x))
-            .collect(Collectors.toList());
+        return new ThingList(asList());
+    }
+
+    private static final class ThingList extends AbstractList<JsonThing>
+        implements RandomAccess
+    {
+        private final List<Object> list;
+
+        ThingList(List<Object> list) {
+            this.list = list;
+        }
+
+        @Override
+        public JsonThing get(int idx) {
+            return new JsonThing(list.get(idx));
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+
+    /**
+     * Path accessors. Each element of the path is either a String, which
+     * navigates a Map, or an Integer, which navigates a List. Values are read
+     * straight out of the underlying maps and lists without wrapping. If the
+     * path runs into a missing value, or into a value that is not the Map or
+     * List it needs, the result is null, so getString() and getObject()
+     * return null while getLong(), getDouble() and getBoolean() throw
+     * NullPointerException, just as longValue() and friends do.
+     */
+    public Object getObject(Object... path) {
+        return walk(path, path.length);
+    }
+
+    private Object walk(Object[] path, int length) {
+        return walk(thing, path, length);
+    }
+
+    /**
+     * The value at the first length elements of path from node, or null if
+     * there is none. Also used by JsonThingBatch.
+     */
+    static Object walk(Object node, Object[] path, int length) {
+        for (int i = 0; i < length && node != null; i++) {
+            Object key = path[i];
+            if (key instanceof Integer) {
+                int idx = (Integer)key;
+                node = (node instanceof List
+                    && idx >= 0 && idx < ((List<?>)node).size())
+                    ? ((List<?>)node).get(idx)
+                    : null;
+            } else {
+                node = (node instanceof Map) ? ((Map<?,?>)node).get(key) : null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * The list that path ends with an index into, if the index is in range,
+     * so that getLong() and getDouble() can read it unboxed. Otherwise null.
+     */
+    private Object indexed(Object[] path) {
+        int n = path.length;
+        if (n == 0 || !(path[n - 1] instanceof Integer)) {
+            return null;
+        }
+        Object list = walk(path, n - 1);
+        int idx = (Integer)path[n - 1];
+        if (!(list instanceof List)) {
+            return null;
+        }
+        return (idx >= 0 && idx < ((List<?>)list).size()) ? list : null;
+    }
+
+    public String getString(Object... path) {
+        return (String)getObject(path);
+    }
+
+    public long getLong(Object... path) {
+        Object list = indexed(path);
+        if (list != null) {
+            return longAt(list, (Integer)path[path.length - 1]);
+        }
+        return longOf(getObject(path));
+    }
+
+    public double getDouble(Object... path) {
+        Object list = indexed(path);
+        if (list != null) {
+            return doubleAt(list, (Integer)path[path.length - 1]);
+        }
+        return doubleOf(getObject(path));
+    }
+
+    public boolean getBoolean(Object... path) {
+        return (Boolean)getObject(path);
     }
 
     public JsonThing put(String key, Object value) {
@@ -140,7 +553,537 @@ public class JsonThing {
         return this;
     }
 
+    /**
+     * Adds one to the number at key, treating a missing number as zero, and
+     * returns the result. Atomic on a concurrent map.
+     */
+    public long increment(String key) {
+        return increment(key, 1);
+    }
+
+    /**
+     * Adds delta to the number at key, treating a missing number as zero,
+     * and returns the result. Atomic on a concurrent map.
+     */
+    public long increment(String key, long delta) {
+        return longOf(asMap().merge(
+            key, delta, (a, b) -> longOf(a) + longOf(b)));
+    }
+
+    /**
+     * Sets key to value unless key already has a non-null value. Returns the
+     * previous value. Atomic on a concurrent map.
+     */
+    public JsonThing putIfAbsent(String key, Object value) {
+        return wrap(asMap().putIfAbsent(key, unwrap(value)));
+    }
+
+    /**
+     * Sets key to the result of fn, which is given the key and its current
+     * value, and returns the result. A null result removes key. On a
+     * concurrent map this is atomic, but fn may be called more than once if
+     * other threads update key at the same time.
+     */
+    public JsonThing compute(
+        String key,
+        BiFunction<String,JsonThing,Object> fn)
+    {
+        return wrap(asMap().compute(
+            key, (k, v) -> unwrap(fn.apply(k, wrap(v)))));
+    }
+
+    /**
+     * Returns an immutable copy of the thing. A frozen thing can be shared
+     * between threads without copying, and is updated with with(),
+     * withAdded() and without(), which return a new thing that shares every
+     * part that was not changed. Parts that are already frozen are shared
+     * rather than copied. put() and add() on a frozen thing throw
+     * UnsupportedOperationException.
+     */
+    public JsonThing freeze() {
+        Object frozen = freeze(thing);
+        return (frozen == thing) ? this : wrap(frozen);
+    }
+
+    /**
+     * True if the thing is a frozen map or list, or a value that has no
+     * parts to change.
+     */
+    public boolean isFrozen() {
+        return !(thing instanceof Map || thing instanceof List)
+            || thing instanceof PersistentMap
+            || thing instanceof PersistentList;
+    }
+
+    /**
+     * Returns a copy of this frozen map with key set to value. The value is
+     * frozen first. Throws ClassCastException if this is not a frozen map.
+     */
+    public JsonThing with(String key, Object value) {
+        return wrap(((PersistentMap)thing).with(key, freeze(unwrap(value))));
+    }
+
+    /**
+     * Returns a copy of this frozen map without key. Throws
+     * ClassCastException if this is not a frozen map.
+     */
+    public JsonThing without(String key) {
+        return wrap(((PersistentMap)thing).without(key));
+    }
+
+    /**
+     * Returns a copy of this frozen list with value appended. The value is
+     * frozen first. Throws ClassCastException if this is not a frozen list.
+     */
+    public JsonThing withAdded(Object value) {
+        return wrap(((PersistentList)thing).withAdded(freeze(unwrap(value))));
+    }
+
+    /**
+     * Returns a copy of this frozen list with the idx'th element set to
+     * value. The value is frozen first. Throws ClassCastException if this is
+     * not a frozen list.
+     */
+    public JsonThing with(int idx, Object value) {
+        return wrap(((PersistentList)thing).with(idx, freeze(unwrap(value))));
+    }
+
+    private static Object unwrap(Object value) {
+        if (value instanceof JsonThing) {
+            return ((JsonThing)value).asObject();
+        }
+        return value;
+    }
+
+    private static Object freeze(Object value) {
+        if (value instanceof PersistentMap || value instanceof PersistentList) {
+            return value;
+        }
+        if (value instanceof Map) {
+            PersistentMap map = PersistentMap.EMPTY;
+            for (Map.Entry<?,?> e : ((Map<?,?>)value).entrySet()) {
+                map = map.with((String)e.getKey(), freeze(e.getValue()));
+            }
+            return map;
+        }
+        if (value instanceof List) {
+            PersistentList list = PersistentList.EMPTY;
+            for (Object element : (List<?>)value) {
+                list = list.withAdded(freeze(element));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    /**
+     * Returns a copy of this thing made of cached maps and lists, as made by
+     * newCachedMap() and newCachedList(). Maps and lists that are already
+     * cached or frozen are kept as they are.
+     */
+    public JsonThing cached() {
+        Object cached = cached(thing);
+        return (cached == thing) ? this : wrap(cached);
+    }
+
+    /**
+     * True if the thing is a cached map or list.
+     */
+    public boolean isCached() {
+        return thing instanceof CachedEncoding.Owner;
+    }
+
+    private static Object cached(Object value) {
+        if (value instanceof CachedEncoding.Owner
+            || value instanceof PersistentMap
+            || value instanceof PersistentList)
+        {
+            return value;
+        }
+        if (value instanceof Map) {
+            CachedMap map = new CachedMap();
+            for (Map.Entry<?,?> e : ((Map<?,?>)value).entrySet()) {
+                map.put((String)e.getKey(), cached(e.getValue()));
+            }
+            return map;
+        }
+        if (value instanceof List) {
+            CachedList list = new CachedList();
+            for (Object element : (List<?>)value) {
+                list.add(cached(element));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    /**
+     * Returns a copy of this thing that can be changed without changing
+     * this one. Maps and lists are copied into HashMaps and ArrayLists, or
+     * LinkedHashMaps for maps that keep an order, sized to fit. Lists of
+     * numbers stay primitive, and frozen parts are shared rather than
+     * copied.
+     */
+    public JsonThing deepCopy() {
+        return wrap(copy(thing));
+    }
+
+    static Object copy(Object value) {
+        if (value instanceof PersistentMap || value instanceof PersistentList) {
+            return value;
+        }
+        if (value instanceof Map) {
+            Map<?,?> map = (Map<?,?>)value;
+            int capacity = (int)(map.size() / 0.75f) + 1;
+            Map<String,Object> copy = (map.getClass() == HashMap.class)
+                ? new HashMap<String,Object>(capacity)
+                : new LinkedHashMap<String,Object>(capacity);
+            for (Map.Entry<?,?> e : map.entrySet()) {
+                copy.put((String)e.getKey(), copy(e.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof LongList && ((LongList)value).isPrimitive()) {
+            long[] a = ((LongList)value).toLongArray();
+            return new LongList(a, a.length);
+        }
+        if (value instanceof DoubleList && ((DoubleList)value).isPrimitive()) {
+            double[] a = ((DoubleList)value).toDoubleArray();
+            return new DoubleList(a, a.length);
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>)value;
+            int n = list.size();
+            ArrayList<Object> copy = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                copy.add(copy(list.get(i)));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * True if o is a JsonThing holding the same JSON value. Maps are equal
+     * if they have the same members, whatever their order, and numbers are
+     * equal if they have the same value, so 1, 1L and 1.0 are all equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof JsonThing) && equal(thing, ((JsonThing)o).thing);
+    }
+
+    /**
+     * A hash of the JSON value, consistent with equals(). The hash of a
+     * frozen map or list is computed once and kept.
+     */
+    @Override
+    public int hashCode() {
+        return hashOf(thing);
+    }
+
+    static boolean equal(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof Map) {
+            return (b instanceof Map) && equalMaps((Map<?,?>)a, (Map<?,?>)b);
+        }
+        if (a instanceof List) {
+            return (b instanceof List) && equalLists((List<?>)a, (List<?>)b);
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return equalNumbers((Number)a, (Number)b);
+        }
+        return a.equals(b);
+    }
+
+    private static boolean equalMaps(Map<?,?> a, Map<?,?> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        if (a instanceof PersistentMap && b instanceof PersistentMap
+            && hashOf(a) != hashOf(b))
+        {
+            return false;
+        }
+        for (Map.Entry<?,?> e : a.entrySet()) {
+            Object value = b.get(e.getKey());
+            if (value == null && !b.containsKey(e.getKey())) {
+                return false;
+            }
+            if (!equal(e.getValue(), value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalLists(List<?> a, List<?> b) {
+        int n = a.size();
+        if (n != b.size()) {
+            return false;
+        }
+        if (a instanceof PersistentList && b instanceof PersistentList
+            && hashOf(a) != hashOf(b))
+        {
+            return false;
+        }
+        if (a instanceof LongList && ((LongList)a).isPrimitive()
+            && b instanceof LongList && ((LongList)b).isPrimitive())
+        {
+            for (int i = 0; i < n; i++) {
+                if (((LongList)a).getLong(i) != ((LongList)b).getLong(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!equal(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(Object x) {
+        return (x instanceof Long) || (x instanceof Integer);
+    }
+
+    private static boolean isFloating(Object x) {
+        return (x instanceof Double) || (x instanceof Float);
+    }
+
+    private static boolean equalNumbers(Number a, Number b) {
+        if (isIntegral(a)) {
+            if (isIntegral(b)) {
+                return a.longValue() == b.longValue();
+            }
+            if (isFloating(b)) {
+                return sameValue(a.longValue(), b.doubleValue());
+            }
+        } else if (isFloating(a)) {
+            if (isIntegral(b)) {
+                return sameValue(b.longValue(), a.doubleValue());
+            }
+            if (isFloating(b)) {
+                return a.doubleValue() == b.doubleValue();
+            }
+        }
+        BigDecimal x = decimal(a);
+        BigDecimal y = decimal(b);
+        if (x == null || y == null) {
+            return a.equals(b);
+        }
+        return x.compareTo(y) == 0;
+    }
+
+    /**
+     * The value of x as a BigDecimal, or null for NaN, infinities and kinds
+     * of number that JSON is not parsed to. Doubles are read as the shortest
+     * decimal that gives them back, which is how they are written in JSON,
+     * so 0.1 and a BigDecimal 0.1 are the same value.
+     */
+    private static BigDecimal decimal(Number x) {
+        if (x instanceof BigDecimal) {
+            return (BigDecimal)x;
+        }
+        if (x instanceof BigInteger) {
+            return new BigDecimal((BigInteger)x);
+        }
+        if (isIntegral(x) || x instanceof Short || x instanceof Byte) {
+            return BigDecimal.valueOf(x.longValue());
+        }
+        if (isFloating(x)) {
+            double d = x.doubleValue();
+            return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+        }
+        return null;
+    }
+
+    private static boolean sameValue(long x, double d) {
+        return isLong(d) && (long)d == x;
+    }
+
+    /**
+     * True if d is a whole number that a long can hold exactly.
+     */
+    private static boolean isLong(double d) {
+        return d >= -0x1p63 && d < 0x1p63 && d == (long)d;
+    }
+
+    static int hashOf(Object x) {
+        if (x == null) {
+            return 0;
+        }
+        if (x instanceof PersistentMap) {
+            return ((PersistentMap)x).deepHash();
+        }
+        if (x instanceof PersistentList) {
+            return ((PersistentList)x).deepHash();
+        }
+        if (x instanceof Map) {
+            return hashOfMap((Map<?,?>)x);
+        }
+        if (x instanceof List) {
+            return hashOfList((List<?>)x);
+        }
+        if (isIntegral(x)) {
+            return Long.hashCode(((Number)x).longValue());
+        }
+        if (isFloating(x)) {
+            return hashOfDouble(((Number)x).doubleValue());
+        }
+        if (x instanceof Number) {
+            BigDecimal d = decimal((Number)x);
+            if (d != null) {
+                return hashOfDecimal(d);
+            }
+        }
+        return x.hashCode();
+    }
+
+    /**
+     * hashOf() without the kept hash of frozen maps.
+     */
+    static int hashOfMap(Map<?,?> map) {
+        int h = 0;
+        for (Map.Entry<?,?> e : map.entrySet()) {
+            h += e.getKey().hashCode() ^ hashOf(e.getValue());
+        }
+        return h;
+    }
+
+    /**
+     * hashOf() without the kept hash of frozen lists.
+     */
+    static int hashOfList(List<?> list) {
+        int h = 1;
+        int n = list.size();
+        if (list instanceof LongList && ((LongList)list).isPrimitive()) {
+            LongList longs = (LongList)list;
+            for (int i = 0; i < n; i++) {
+                h = 31 * h + Long.hashCode(longs.getLong(i));
+            }
+            return h;
+        }
+        for (int i = 0; i < n; i++) {
+            h = 31 * h + hashOf(list.get(i));
+        }
+        return h;
+    }
+
+    private static int hashOfDouble(double d) {
+        return isLong(d) ? Long.hashCode((long)d) : Double.hashCode(d);
+    }
+
+    /**
+     * The hash of the long or double d equals, if there is one, so that
+     * equal numbers hash the same whatever kind they are.
+     */
+    private static int hashOfDecimal(BigDecimal d) {
+        if (d.signum() == 0) {
+            return 0;
+        }
+        BigDecimal stripped = d.stripTrailingZeros();
+        if (stripped.scale() <= 0) {
+            BigInteger whole = stripped.toBigInteger();
+            if (whole.bitLength() < 64) {
+                return Long.hashCode(whole.longValue());
+            }
+        }
+        double v = d.doubleValue();
+        if (Double.isFinite(v) && BigDecimal.valueOf(v).compareTo(d) == 0) {
+            return hashOfDouble(v);
+        }
+        return stripped.hashCode();
+    }
+
+    /**
+     * Returns a JSON Patch (RFC 6902), as a list of operations, that turns
+     * from into to. Parts that from and to share are skipped without being
+     * looked at. The patch refers to values of to rather than copying them.
+     * See JsonPatch.
+     */
+    public static JsonThing diff(JsonThing from, JsonThing to) {
+        return wrap(JsonPatch.diff(from.thing, to.thing));
+    }
+
+    /**
+     * Returns a JSON Merge Patch (RFC 7396) that turns from into to. Merge
+     * patches cannot set a member to null; such members are removed by the
+     * patch instead.
+     */
+    public static JsonThing mergeDiff(JsonThing from, JsonThing to) {
+        return wrap(JsonPatch.mergeDiff(from.thing, to.thing));
+    }
+
+    /**
+     * Applies a JSON Patch (RFC 6902) to this thing, changing its maps and
+     * lists in place. Returns this, or the new value if the patch replaces
+     * the whole thing. Throws IllegalArgumentException if an operation
+     * cannot be applied, leaving the operations before it applied.
+     */
+    public JsonThing apply(JsonThing patch) {
+        Object result = JsonPatch.apply(thing, patch.asList());
+        return (result == thing) ? this : wrap(result);
+    }
+
+    /**
+     * Applies a JSON Merge Patch (RFC 7396) to this thing, changing its maps
+     * in place. Returns this, or the new value if the patch replaces the
+     * whole thing.
+     */
+    public JsonThing merge(JsonThing mergePatch) {
+        Object result = JsonPatch.merge(thing, mergePatch.thing);
+        return (result == thing) ? this : wrap(result);
+    }
+
     public String toJson() throws IOException {
-        return MAPPER.writeValueAsString(thing);
+        return JsonThingCodec.DEFAULT.toJson(this);
+    }
+
+    public String toJson(JsonThingCodec codec) throws IOException {
+        return codec.toJson(this);
+    }
+
+    /**
+     * Encodes the thing in the given format. See JsonThingFormat.
+     */
+    public byte[] toBytes(JsonThingFormat format) throws IOException {
+        return format.encode(thing);
+    }
+
+    /**
+     * Writes the thing as JSON to out. The stream is flushed but not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        JsonThingCodec.DEFAULT.writeTo(this, out);
+    }
+
+    public void writeTo(OutputStream out, JsonThingCodec codec)
+        throws IOException
+    {
+        codec.writeTo(this, out);
+    }
+
+    /**
+     * Writes the thing as JSON to out. The writer is flushed but not closed.
+     */
+    public void writeTo(Writer out) throws IOException {
+        JsonThingCodec.DEFAULT.writeTo(this, out);
+    }
+
+    /**
+     * Writes the thing as UTF-8 encoded JSON into buffer, starting at its
+     * position and advancing it. Throws BufferOverflowException if the
+     * buffer does not have enough room.
+     */
+    public void writeTo(ByteBuffer buffer) throws IOException {
+        writeTo(new ByteBufferBackedOutputStream(buffer));
     }
 }
\ No newline at end of file
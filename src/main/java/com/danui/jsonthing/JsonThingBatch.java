@@ -0,0 +1,616 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * JsonThingBatch
+ *
+ * Converts many records into columns, one per field of a JsonProjection,
+ * for code that scans a field across all records rather than all fields of
+ * one record. The records are read once, and each field's values go
+ * straight into a primitive column:
+ *
+ * - LONG and DOUBLE fields into long[] and double[].
+ * - BOOLEAN fields into a BitSet of the records where they are true.
+ * - STRING fields into an int[] of codes into a dictionary of the distinct
+ *   strings, in the order they were first seen.
+ * - THING fields into an Object[] of the values as parsed.
+ *
+ * Records where a field is missing or null are marked in that field's
+ * nulls() and hold 0, false, code -1 or null.
+ *
+ * Records can be JsonThings, whose fields are looked up along the
+ * projection's paths, or NDJSON, which is read with the projection itself
+ * so that only the projected fields are decoded. Either way, a field whose
+ * value has the wrong type for it fails with the IOException that
+ * JsonProjection throws. With parallelism above 1, a list of records or an
+ * NDJSON byte array is cut into chunks that are converted on a
+ * ForkJoinPool and joined in order, so the columns are the same as a
+ * sequential conversion would give.
+ *
+ *     JsonThingBatch.Columns columns = JsonThingBatch.of(projection)
+ *         .parallelism(4)
+ *         .convert(records);
+ *     long[] badges = columns.longs(projection.indexOf("badge"));
+ *
+ * @author Jin
+ */
+public final class JsonThingBatch {
+
+    public static JsonThingBatch of(JsonProjection projection) {
+        return new JsonThingBatch(projection);
+    }
+
+    private final JsonProjection projection;
+    private int parallelism = 1;
+    private int chunkRecords = 16 * 1024;
+    private int chunkBytes = 4 * 1024 * 1024;
+
+    private JsonThingBatch(JsonProjection projection) {
+        this.projection = projection;
+    }
+
+    public JsonProjection projection() {
+        return projection;
+    }
+
+    /**
+     * Number of threads to convert on. Defaults to 1, which converts on the
+     * calling thread.
+     */
+    public JsonThingBatch parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                "parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Number of records in each chunk of a list converted in parallel.
+     * Defaults to 16384.
+     */
+    public JsonThingBatch chunkRecords(int chunkRecords) {
+        if (chunkRecords < 1) {
+            throw new IllegalArgumentException(
+                "chunkRecords must be at least 1: " + chunkRecords);
+        }
+        this.chunkRecords = chunkRecords;
+        return this;
+    }
+
+    /**
+     * Approximate number of bytes in each chunk of NDJSON read in parallel.
+     * Chunks are cut after the first newline past each multiple of
+     * chunkBytes. Defaults to 4 MiB.
+     */
+    public JsonThingBatch chunkBytes(int chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException(
+                "chunkBytes must be at least 1: " + chunkBytes);
+        }
+        this.chunkBytes = chunkBytes;
+        return this;
+    }
+
+    /**
+     * Converts records, in parallel if so configured.
+     */
+    public Columns convert(List<JsonThing> records) throws IOException {
+        int n = records.size();
+        if (parallelism == 1 || n <= chunkRecords) {
+            return convert(records, n).toColumns();
+        }
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int start = 0; start < n; start += chunkRecords) {
+            List<JsonThing> part =
+                records.subList(start, Math.min(n, start + chunkRecords));
+            tasks.add(() -> convert(part, part.size()));
+        }
+        return join(run(tasks));
+    }
+
+    /**
+     * Converts records on the calling thread. JsonThingStream, for one, can
+     * be passed here.
+     */
+    public Columns convert(Iterable<JsonThing> records) throws IOException {
+        return convert(records, 16).toColumns();
+    }
+
+    private Chunk convert(Iterable<JsonThing> records, int capacity)
+        throws IOException
+    {
+        Chunk chunk = new Chunk(projection, capacity);
+        for (JsonThing record : records) {
+            chunk.add(record);
+        }
+        return chunk;
+    }
+
+    /**
+     * Reads the records of NDJSON held in bytes, in parallel if so
+     * configured. Records must not contain newlines, as the bytes are cut
+     * into chunks at newlines.
+     */
+    public Columns read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+
+    public Columns read(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        int end = offset + length;
+        if (parallelism == 1 || length <= chunkBytes) {
+            return read(bytes, offset, end, length / 64).toColumns();
+        }
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        int start = offset;
+        while (start < end) {
+            int cut = start + Math.min(chunkBytes, end - start);
+            while (cut < end && bytes[cut - 1] != '\n') {
+                cut += 1;
+            }
+            int from = start;
+            int to = cut;
+            tasks.add(() -> read(bytes, from, to, (to - from) / 64));
+            start = cut;
+        }
+        return join(run(tasks));
+    }
+
+    private Chunk read(byte[] bytes, int start, int end, int capacity)
+        throws IOException
+    {
+        JsonParser p = projection.codec().factory()
+            .createParser(bytes, start, end - start);
+        return read(p, capacity);
+    }
+
+    /**
+     * Reads the records of NDJSON from in, on the calling thread, and
+     * closes in.
+     */
+    public Columns read(InputStream in) throws IOException {
+        return read(projection.codec().factory().createParser(in), 1024)
+            .toColumns();
+    }
+
+    private Chunk read(JsonParser p, int capacity) throws IOException {
+        Chunk chunk = new Chunk(projection, Math.max(16, capacity));
+        JsonProjection.Record record = projection.newRecord();
+        try {
+            while (p.nextToken() != null) {
+                projection.read(p, record);
+                skipRest(p);
+                chunk.add(record);
+            }
+        } finally {
+            p.close();
+        }
+        return chunk;
+    }
+
+    /**
+     * Moves p to the last token of the root value it is in, which the
+     * projection may have stopped reading early.
+     */
+    private static void skipRest(JsonParser p) throws IOException {
+        while (!p.getParsingContext().inRoot()) {
+            if (p.nextToken() == null) {
+                throw new EOFException("Unexpected end of input in record");
+            }
+        }
+    }
+
+    private List<Chunk> run(List<Callable<Chunk>> tasks) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<Chunk>> futures = new ArrayList<>();
+            for (Callable<Chunk> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            List<Chunk> chunks = new ArrayList<>();
+            for (Future<Chunk> future : futures) {
+                chunks.add(JsonThingParallelReader.await(future));
+            }
+            return chunks;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * The chunks' records, in order, as one set of columns. String codes
+     * are renumbered into one dictionary in the order the strings were
+     * first seen.
+     */
+    private Columns join(List<Chunk> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0).toColumns();
+        }
+        int rows = 0;
+        for (Chunk chunk : chunks) {
+            rows += chunk.rows;
+        }
+        Chunk all = new Chunk(projection, rows);
+        for (Chunk chunk : chunks) {
+            all.append(chunk);
+        }
+        return all.toColumns();
+    }
+
+    /**
+     * Columns being filled, which grow as records are added.
+     */
+    private static final class Chunk {
+        private final JsonProjection projection;
+        private final JsonProjection.Type[] types;
+        private final Object[][] paths;
+        private final Object[] values;
+        private final BitSet[] nulls;
+        private final List<Map<String,Integer>> codes;
+        private final List<List<String>> dictionaries;
+        private int capacity;
+        private int rows;
+
+        private Chunk(JsonProjection projection, int capacity) {
+            int n = projection.size();
+            this.projection = projection;
+            this.types = new JsonProjection.Type[n];
+            this.paths = new Object[n][];
+            this.values = new Object[n];
+            this.nulls = new BitSet[n];
+            this.codes = new ArrayList<>(n);
+            this.dictionaries = new ArrayList<>(n);
+            this.capacity = capacity;
+            for (int i = 0; i < n; i++) {
+                types[i] = projection.type(i);
+                paths[i] = projection.path(i);
+                nulls[i] = new BitSet();
+                codes.add(types[i] == JsonProjection.Type.STRING
+                    ? new HashMap<>() : null);
+                dictionaries.add(types[i] == JsonProjection.Type.STRING
+                    ? new ArrayList<>() : null);
+                switch (types[i]) {
+                case LONG:
+                    values[i] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    values[i] = new double[capacity];
+                    break;
+                case BOOLEAN:
+                    values[i] = new BitSet();
+                    break;
+                case STRING:
+                    values[i] = new int[capacity];
+                    break;
+                default:
+                    values[i] = new Object[capacity];
+                    break;
+                }
+            }
+        }
+
+        private void ensure(int needed) {
+            if (needed <= capacity) {
+                return;
+            }
+            capacity = Math.max(needed, capacity * 2);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = resize(values[i], capacity);
+            }
+        }
+
+        private void add(JsonThing record) throws IOException {
+            ensure(rows + 1);
+            Object root = record.asObject();
+            for (int i = 0; i < types.length; i++) {
+                Object value = JsonThing.walk(root, paths[i], paths[i].length);
+                if (value == null) {
+                    setNull(i);
+                    continue;
+                }
+                switch (types[i]) {
+                case LONG:
+                    expect(i, value,
+                        value instanceof Long || value instanceof Integer);
+                    ((long[])values[i])[rows] = JsonThing.longOf(value);
+                    break;
+                case DOUBLE:
+                    expect(i, value, value instanceof Number);
+                    ((double[])values[i])[rows] =
+                        ((Number)value).doubleValue();
+                    break;
+                case BOOLEAN:
+                    expect(i, value, value instanceof Boolean);
+                    if ((Boolean)value) {
+                        ((BitSet)values[i]).set(rows);
+                    }
+                    break;
+                case STRING:
+                    expect(i, value, value instanceof String);
+                    ((int[])values[i])[rows] = code(i, (String)value);
+                    break;
+                default:
+                    ((Object[])values[i])[rows] = value;
+                    break;
+                }
+            }
+            rows += 1;
+        }
+
+        private void add(JsonProjection.Record record) {
+            ensure(rows + 1);
+            for (int i = 0; i < types.length; i++) {
+                if (!record.has(i)) {
+                    setNull(i);
+                    continue;
+                }
+                switch (types[i]) {
+                case LONG:
+                    ((long[])values[i])[rows] = record.getLong(i);
+                    break;
+                case DOUBLE:
+                    ((double[])values[i])[rows] = record.getDouble(i);
+                    break;
+                case BOOLEAN:
+                    if (record.is(i)) {
+                        ((BitSet)values[i]).set(rows);
+                    }
+                    break;
+                case STRING:
+                    ((int[])values[i])[rows] = code(i, record.getString(i));
+                    break;
+                default:
+                    ((Object[])values[i])[rows] = record.get(i).asObject();
+                    break;
+                }
+            }
+            rows += 1;
+        }
+
+        private void expect(int field, Object value, boolean ok)
+            throws IOException
+        {
+            if (!ok) {
+                throw projection.wrongType(
+                    null, field, value.getClass().getSimpleName());
+            }
+        }
+
+        private void setNull(int field) {
+            nulls[field].set(rows);
+            if (types[field] == JsonProjection.Type.STRING) {
+                ((int[])values[field])[rows] = -1;
+            }
+        }
+
+        private int code(int field, String value) {
+            Map<String,Integer> index = codes.get(field);
+            Integer code = index.get(value);
+            if (code == null) {
+                List<String> dictionary = dictionaries.get(field);
+                code = dictionary.size();
+                dictionary.add(value);
+                index.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Adds other's records after this chunk's.
+         */
+        private void append(Chunk other) {
+            int offset = rows;
+            int n = other.rows;
+            ensure(offset + n);
+            for (int i = 0; i < types.length; i++) {
+                Object from = other.values[i];
+                Object to = values[i];
+                switch (types[i]) {
+                case BOOLEAN:
+                    or((BitSet)to, (BitSet)from, offset);
+                    break;
+                case STRING: {
+                    List<String> dictionary = other.dictionaries.get(i);
+                    int[] recode = new int[dictionary.size()];
+                    for (int c = 0; c < recode.length; c++) {
+                        recode[c] = code(i, dictionary.get(c));
+                    }
+                    int[] a = (int[])from;
+                    int[] b = (int[])to;
+                    for (int r = 0; r < n; r++) {
+                        b[offset + r] = (a[r] < 0) ? -1 : recode[a[r]];
+                    }
+                    break;
+                }
+                default:
+                    System.arraycopy(from, 0, to, offset, n);
+                    break;
+                }
+                or(nulls[i], other.nulls[i], offset);
+            }
+            rows += n;
+        }
+
+        private static void or(BitSet to, BitSet from, int offset) {
+            int r = from.nextSetBit(0);
+            while (r >= 0) {
+                to.set(offset + r);
+                r = from.nextSetBit(r + 1);
+            }
+        }
+
+        /**
+         * The columns, trimmed to the records added. Columns that are
+         * already the right size are handed over rather than copied.
+         */
+        private Columns toColumns() {
+            if (rows < capacity) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = resize(values[i], rows);
+                }
+                capacity = rows;
+            }
+            String[][] strings = new String[values.length][];
+            for (int i = 0; i < values.length; i++) {
+                if (types[i] == JsonProjection.Type.STRING) {
+                    strings[i] = dictionaries.get(i).toArray(new String[0]);
+                }
+            }
+            return new Columns(projection, rows, values, nulls, strings);
+        }
+
+        private static Object resize(Object column, int n) {
+            if (column instanceof long[]) {
+                return Arrays.copyOf((long[])column, n);
+            }
+            if (column instanceof double[]) {
+                return Arrays.copyOf((double[])column, n);
+            }
+            if (column instanceof int[]) {
+                return Arrays.copyOf((int[])column, n);
+            }
+            if (column instanceof Object[]) {
+                return Arrays.copyOf((Object[])column, n);
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Columns
+     *
+     * The converted records, one column per field of the projection, read
+     * by field index. The arrays returned are the columns themselves, not
+     * copies.
+     */
+    public static final class Columns {
+        private final JsonProjection projection;
+        private final int size;
+        private final Object[] columns;
+        private final BitSet[] nulls;
+        private final String[][] dictionaries;
+
+        private Columns(
+            JsonProjection projection,
+            int size,
+            Object[] columns,
+            BitSet[] nulls,
+            String[][] dictionaries)
+        {
+            this.projection = projection;
+            this.size = size;
+            this.columns = columns;
+            this.nulls = nulls;
+            this.dictionaries = dictionaries;
+        }
+
+        public JsonProjection projection() {
+            return projection;
+        }
+
+        /**
+         * Number of records.
+         */
+        public int size() {
+            return size;
+        }
+
+        public long[] longs(int field) {
+            check(field, JsonProjection.Type.LONG);
+            return (long[])columns[field];
+        }
+
+        public double[] doubles(int field) {
+            check(field, JsonProjection.Type.DOUBLE);
+            return (double[])columns[field];
+        }
+
+        /**
+         * The records where the field is true.
+         */
+        public BitSet booleans(int field) {
+            check(field, JsonProjection.Type.BOOLEAN);
+            return (BitSet)columns[field];
+        }
+
+        /**
+         * Each record's index into dictionary(field), or -1 where the field
+         * is missing or null.
+         */
+        public int[] codes(int field) {
+            check(field, JsonProjection.Type.STRING);
+            return (int[])columns[field];
+        }
+
+        /**
+         * The field's distinct strings, in the order they were first seen.
+         */
+        public String[] dictionary(int field) {
+            check(field, JsonProjection.Type.STRING);
+            return dictionaries[field];
+        }
+
+        public Object[] objects(int field) {
+            check(field, JsonProjection.Type.THING);
+            return (Object[])columns[field];
+        }
+
+        /**
+         * The records where the field is missing or null.
+         */
+        public BitSet nulls(int field) {
+            return nulls[field];
+        }
+
+        /**
+         * The field's value in one record, of any type, as a JsonThing.
+         */
+        public JsonThing get(int record, int field) {
+            if (record < 0 || record >= size) {
+                throw new IndexOutOfBoundsException(
+                    "record " + record + " of " + size);
+            }
+            if (nulls[field].get(record)) {
+                return JsonThing.wrap(null);
+            }
+            Object column = columns[field];
+            switch (projection.type(field)) {
+            case LONG:
+                return JsonThing.wrap(((long[])column)[record]);
+            case DOUBLE:
+                return JsonThing.wrap(((double[])column)[record]);
+            case BOOLEAN:
+                return JsonThing.wrap(((BitSet)column).get(record));
+            case STRING:
+                return JsonThing.wrap(
+                    dictionaries[field][((int[])column)[record]]);
+            default:
+                return JsonThing.wrap(((Object[])column)[record]);
+            }
+        }
+
+        private void check(int field, JsonProjection.Type type) {
+            if (projection.type(field) != type) {
+                throw new ClassCastException(
+                    "Field " + projection.name(field) + " is "
+                    + projection.type(field) + ", not " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.danui.jsonthing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JsonThingCache
+ *
+ * A cache of parsed documents keyed by their content, for inputs that are
+ * seen over and over, such as config blobs or repeated webhook payloads.
+ * parse() hashes the input and, if the same bytes have been parsed before,
+ * returns the thing parsed then. Things returned are frozen, so one can be
+ * shared by every caller without copying.
+ *
+ * The input is hashed with a fast non-cryptographic 64-bit hash, and a hit
+ * is confirmed by comparing the input with a copy kept in the cache, so
+ * colliding inputs never share a thing.
+ *
+ * The cache holds at most maxBytes of input, counting each document by its
+ * length. The parsed tree takes a few times that on the heap, which should
+ * be allowed for when choosing the budget. A document larger than the
+ * budget is parsed but not cached. When room is needed, the least recently
+ * used documents are evicted, but only if they have been used less often
+ * than the document being added, as in TinyLFU; otherwise the new document
+ * is not cached. So a burst of one-off documents does not push out the ones
+ * that keep coming back.
+ *
+ * JsonThingCache is thread safe. Entries are split across segments by hash,
+ * each with its own lock, and parsing is done outside of any lock. Two
+ * threads that miss on the same input at once both parse it, and both get
+ * the thing that was cached first.
+ *
+ *     JsonThingCache cache = new JsonThingCache(64 << 20);
+ *     JsonThing config = cache.parse(body);
+ *
+ * @author Jin
+ */
+public final class JsonThingCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final long MIN_SEGMENT_BYTES = 64 << 10;
+
+    private final JsonThingCodec codec;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public JsonThingCache(long maxBytes) {
+        this(maxBytes, JsonThingCodec.DEFAULT);
+    }
+
+    public JsonThingCache(long maxBytes, JsonThingCodec codec) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException(
+                "maxBytes must not be negative: " + maxBytes);
+        }
+        int n = 1;
+        while (n < MAX_SEGMENTS && maxBytes / (n * 2) >= MIN_SEGMENT_BYTES) {
+            n *= 2;
+        }
+        this.codec = codec;
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment(maxBytes / n);
+        }
+    }
+
+    public JsonThing parse(String jsonString) throws IOException {
+        return parse(jsonString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public JsonThing parse(byte[] bytes) throws IOException {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Returns the frozen thing parsed from the given bytes, parsing them
+     * with the cache's codec only if they are not in the cache. Inputs that
+     * fail to parse are not cached.
+     */
+    public JsonThing parse(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        long h = hash(bytes, offset, length);
+        Segment segment = segments[(int)(h >>> 32) & (segments.length - 1)];
+        Key key = new Key(bytes, offset, length, h);
+        JsonThing thing = segment.get(key);
+        if (thing != null) {
+            hits.increment();
+            return thing;
+        }
+        misses.increment();
+        thing = codec.parse(bytes, offset, length).freeze();
+        return segment.put(key, thing);
+    }
+
+    /**
+     * The number of calls to parse() that found their input in the cache.
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of calls to parse() that had to parse their input.
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of documents evicted to make room for others.
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The number of documents in the cache.
+     */
+    public int size() {
+        int n = 0;
+        for (Segment segment : segments) {
+            n += segment.size();
+        }
+        return n;
+    }
+
+    /**
+     * The total length of the documents in the cache.
+     */
+    public long weight() {
+        long n = 0;
+        for (Segment segment : segments) {
+            n += segment.weight();
+        }
+        return n;
+    }
+
+    /**
+     * Empties the cache. Counts are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+
+    /**
+     * A 64-bit hash of the given bytes, read eight at a time, in the manner
+     * of xxHash64.
+     */
+    static long hash(byte[] b, int offset, int length) {
+        long h = P3 + length * P1;
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            long k = (b[i] & 0xffL)
+                | (b[i + 1] & 0xffL) << 8
+                | (b[i + 2] & 0xffL) << 16
+                | (b[i + 3] & 0xffL) << 24
+                | (b[i + 4] & 0xffL) << 32
+                | (b[i + 5] & 0xffL) << 40
+                | (b[i + 6] & 0xffL) << 48
+                | (b[i + 7] & 0xffL) << 56;
+            h ^= Long.rotateLeft(k * P2, 31) * P1;
+            h = Long.rotateLeft(h, 27) * P1 + P3;
+        }
+        if (i < end) {
+            long k = 0;
+            for (int shift = 0; i < end; i++, shift += 8) {
+                k |= (b[i] & 0xffL) << shift;
+            }
+            h ^= Long.rotateLeft(k * P2, 31) * P1;
+            h = Long.rotateLeft(h, 27) * P1 + P3;
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * The content of a document. A key made for a lookup refers to the
+     * caller's bytes; a key kept in the cache refers to its own copy.
+     */
+    private static final class Key {
+        final byte[] bytes;
+        final int offset;
+        final int length;
+        final long hash;
+
+        Key(byte[] bytes, int offset, int length, long hash) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        Key copy() {
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            return new Key(copy, 0, length, hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)o;
+            if (hash != other.hash || length != other.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[offset + i] != other.bytes[other.offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A share of the cache, with its own budget, lock and frequencies.
+     * Entries are kept in access order, least recently used first.
+     */
+    private final class Segment {
+        private final long maxWeight;
+        private final LinkedHashMap<Key,JsonThing> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch = new FrequencySketch();
+        private long weight;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized JsonThing get(Key key) {
+            sketch.increment(key.hash);
+            return entries.get(key);
+        }
+
+        /**
+         * Caches thing under key if there is room, or room can be made, and
+         * returns the thing now cached under key, or thing if none is.
+         */
+        synchronized JsonThing put(Key key, JsonThing thing) {
+            JsonThing cached = entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (key.length > maxWeight) {
+                return thing;
+            }
+            long needed = weight + key.length - maxWeight;
+            if (needed > 0) {
+                int frequency = sketch.frequency(key.hash);
+                List<Key> victims = new ArrayList<>();
+                for (Key victim : entries.keySet()) {
+                    if (needed <= 0) {
+                        break;
+                    }
+                    if (sketch.frequency(victim.hash) >= frequency) {
+                        return thing;
+                    }
+                    victims.add(victim);
+                    needed -= victim.length;
+                }
+                for (Key victim : victims) {
+                    entries.remove(victim);
+                    weight -= victim.length;
+                    evictions.increment();
+                }
+            }
+            entries.put(key.copy(), thing);
+            weight += key.length;
+            return thing;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * FrequencySketch
+     *
+     * Approximate counts of how often each hash has been looked up
+     * recently, as a count-min sketch of four rows of counters capped at
+     * 15. Once a number of lookups have been counted all counters are
+     * halved, so that documents that stop coming back are forgotten.
+     */
+    private static final class FrequencySketch {
+        private static final int BITS = 12;
+        private static final int WIDTH = 1 << BITS;
+        private static final int MAX_COUNT = 15;
+        private static final int SAMPLE_SIZE = 10 * WIDTH;
+
+        private final byte[][] rows = new byte[4][WIDTH];
+        private int samples;
+
+        void increment(long hash) {
+            for (int i = 0; i < rows.length; i++) {
+                byte[] row = rows[i];
+                int idx = index(hash, i);
+                if (row[idx] < MAX_COUNT) {
+                    row[idx] += 1;
+                }
+            }
+            if (++samples >= SAMPLE_SIZE) {
+                samples = 0;
+                for (byte[] row : rows) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+            }
+        }
+
+        int frequency(long hash) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private static int index(long hash, int row) {
+            long h = Long.rotateLeft(hash, row * 16) * P2;
+            return (int)(h >>> (64 - BITS));
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.FilterOutputStream;
+import java.io.FilterReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * JsonThingCodec
+ *
+ * A parsing and encoding configuration for JsonThing. The reader and writer
+ * for a configuration are built once, when the codec is built, so a codec
+ * should be kept and reused rather than built per call. Codecs are
+ * immutable and thread safe.
+ *
+ * Parsing is done by a loop over the parser's tokens that builds JsonThing's
+ * values directly. Jackson databind can be used instead with databind(true);
+ * both produce the same values.
+ *
+ * A codec built with a listener tells it about every document it parses or
+ * encodes, including each record of a JsonThingStream made with it. A
+ * codec without one does no extra work.
+ *
+ * JsonThing::parse and JsonThing::toJson use DEFAULT. Other configurations
+ * are made with the builder:
+ *
+ *     JsonThingCodec codec = JsonThingCodec.builder()
+ *         .internFieldNames(false)
+ *         .bigDecimalFloats(true)
+ *         .build();
+ *     JsonThing obj = JsonThing.parse(json, codec);
+ *
+ * @author Jin
+ */
+public final class JsonThingCodec {
+
+    public static final JsonThingCodec DEFAULT = builder().build();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private boolean bigDecimalFloats = false;
+        private boolean internFieldNames = true;
+        private boolean recycleBuffers = true;
+        private boolean compactNumberLists = true;
+        private JsonShapes shapes;
+        private boolean databind = false;
+        private JsonThingListener listener;
+
+        private Builder() {
+        }
+
+        /**
+         * Tell listener about each document parsed or encoded. See
+         * JsonThingMetrics. Off (null) by default.
+         */
+        public Builder listener(JsonThingListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Parse with Jackson databind rather than the built-in token parser.
+         * Slower, but kept as a fallback. Off by default.
+         */
+        public Builder databind(boolean enabled) {
+            this.databind = enabled;
+            return this;
+        }
+
+        /**
+         * Read floating point numbers as BigDecimal rather than Double, so
+         * that no precision is lost. Off by default.
+         */
+        public Builder bigDecimalFloats(boolean enabled) {
+            this.bigDecimalFloats = enabled;
+            return this;
+        }
+
+        /**
+         * Intern member names with String.intern(). Pays off when the same
+         * few names are parsed over and over; turn it off for documents with
+         * many distinct names, such as maps keyed by id. On by default.
+         */
+        public Builder internFieldNames(boolean enabled) {
+            this.internFieldNames = enabled;
+            return this;
+        }
+
+        /**
+         * Reuse parsing and encoding buffers, held per thread, from one call
+         * to the next. On by default.
+         */
+        public Builder recycleBuffers(boolean enabled) {
+            this.recycleBuffers = enabled;
+            return this;
+        }
+
+        /**
+         * Read arrays made up only of integers, or only of floating point
+         * numbers, into primitive arrays. On by default.
+         */
+        public Builder compactNumberLists(boolean enabled) {
+            this.compactNumberLists = enabled;
+            return this;
+        }
+
+        /**
+         * Read objects into maps of the given shapes. See JsonShapes. Off
+         * (null) by default.
+         */
+        public Builder shapes(JsonShapes shapes) {
+            this.shapes = shapes;
+            return this;
+        }
+
+        public JsonThingCodec build() {
+            JsonFactory factory = JsonFactory.builder()
+                .configure(
+                    JsonFactory.Feature.INTERN_FIELD_NAMES,
+                    internFieldNames)
+                .configure(
+                    JsonFactory.Feature.USE_THREAD_LOCAL_FOR_BUFFER_RECYCLING,
+                    recycleBuffers)
+                .build();
+            ObjectMapper mapper = JsonThing.withThings(
+                new ObjectMapper(factory), shapes, compactNumberLists);
+            mapper.configure(
+                DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS,
+                bigDecimalFloats);
+            ThingParser parser =
+                new ThingParser(shapes, compactNumberLists, bigDecimalFloats);
+            return new JsonThingCodec(mapper, parser, databind, listener);
+        }
+    }
+
+    private final JsonFactory factory;
+    private final ThingParser parser;
+    private final boolean databind;
+    private final JsonThingListener listener;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final ObjectWriter streamWriter;
+
+    private JsonThingCodec(
+        ObjectMapper mapper,
+        ThingParser parser,
+        boolean databind,
+        JsonThingListener listener)
+    {
+        this.factory = mapper.getFactory();
+        this.parser = parser;
+        this.databind = databind;
+        this.listener = listener;
+        this.reader = mapper.readerFor(Object.class);
+        this.writer = mapper.writer();
+        this.streamWriter =
+            writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    JsonFactory factory() {
+        return factory;
+    }
+
+    /**
+     * The token parser for this configuration, even if databind is used
+     * for parsing.
+     */
+    ThingParser parser() {
+        return parser;
+    }
+
+    JsonThingListener listener() {
+        return listener;
+    }
+
+    /**
+     * Writes values to a generator without flushing after each.
+     */
+    ObjectWriter streamWriter() {
+        return streamWriter;
+    }
+
+    public JsonThing parse(String jsonString) throws IOException {
+        if (databind && listener == null) {
+            return JsonThing.wrap(reader.readValue(jsonString));
+        }
+        return parse(factory.createParser(jsonString), jsonString);
+    }
+
+    public JsonThing parse(byte[] bytes) throws IOException {
+        return parse(bytes, 0, bytes.length);
+    }
+
+    public JsonThing parse(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        if (databind && listener == null) {
+            return JsonThing.wrap(reader.readValue(bytes, offset, length));
+        }
+        return parse(factory.createParser(bytes, offset, length), null);
+    }
+
+    /**
+     * Parses the JSON from in, and closes it.
+     */
+    public JsonThing parse(InputStream in) throws IOException {
+        if (databind && listener == null) {
+            return JsonThing.wrap(reader.readValue(in));
+        }
+        return parse(factory.createParser(in), null);
+    }
+
+    /**
+     * Parses the JSON from in, and closes it.
+     */
+    public JsonThing parse(Reader in) throws IOException {
+        if (databind && listener == null) {
+            return JsonThing.wrap(reader.readValue(in));
+        }
+        if (listener != null) {
+            in = new CountingReader(in);
+        }
+        return parse(factory.createParser(in), null);
+    }
+
+    /**
+     * Parses the first value from p, and closes it. source is the String p
+     * reads, if any.
+     */
+    private JsonThing parse(JsonParser p, String source) throws IOException {
+        try {
+            if (listener == null) {
+                return JsonThing.wrap(parser.readRoot(p));
+            }
+            long start = System.nanoTime();
+            try {
+                Object value;
+                int depth = -1;
+                if (databind) {
+                    value = reader.readValue(p);
+                } else {
+                    ThingParser.Reader r = parser.reader(p);
+                    value = r.root();
+                    depth = r.maxDepth();
+                }
+                listener.parsed(
+                    System.nanoTime() - start,
+                    bytesRead(p, source),
+                    depth);
+                return JsonThing.wrap(value);
+            } catch (IOException | RuntimeException e) {
+                listener.parseFailed(System.nanoTime() - start, e);
+                throw e;
+            }
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * Reads the value that starts at p's current token, leaving p on its
+     * last token.
+     */
+    Object read(JsonParser p) throws IOException {
+        if (listener == null) {
+            return readValue(p);
+        }
+        long start = System.nanoTime();
+        long from = offset(p.getTokenLocation());
+        try {
+            Object value;
+            int depth = -1;
+            if (databind) {
+                value = reader.readValue(p);
+            } else {
+                ThingParser.Reader r = parser.reader(p);
+                value = r.value(p.currentToken());
+                depth = r.maxDepth();
+            }
+            listener.parsed(
+                System.nanoTime() - start,
+                offset(p.getCurrentLocation()) - from,
+                depth);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            listener.parseFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * As read(p), without telling the listener.
+     */
+    Object readValue(JsonParser p) throws IOException {
+        return databind ? reader.readValue(p) : parser.read(p);
+    }
+
+    /**
+     * UTF-8 bytes of input p has used, up to its current location.
+     */
+    private static long bytesRead(JsonParser p, String source)
+        throws IOException
+    {
+        if (p.getInputSource() instanceof CountingReader) {
+            StringWriter buffered = new StringWriter();
+            p.releaseBuffered(buffered);
+            String unread = buffered.toString();
+            return ((CountingReader)p.getInputSource()).count
+                - utf8Length(unread, 0, unread.length());
+        }
+        return offset(p.getCurrentLocation(), source);
+    }
+
+    static long offset(JsonLocation location) {
+        return offset(location, null);
+    }
+
+    /**
+     * The offset of location in UTF-8 bytes. Parsers that read chars only
+     * know char offsets, which are measured in source, the String they
+     * read. Returns -1 if neither is known.
+     */
+    static long offset(JsonLocation location, String source) {
+        long bytes = location.getByteOffset();
+        if (bytes >= 0 || source == null) {
+            return bytes;
+        }
+        return utf8Length(source, 0, (int)location.getCharOffset());
+    }
+
+    static long utf8Length(String s, int start, int end) {
+        long n = 0;
+        for (int i = start; i < end; i++) {
+            n += utf8Length(s.charAt(i));
+        }
+        return n;
+    }
+
+    /**
+     * UTF-8 bytes of c, where each half of a surrogate pair counts 2.
+     */
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    public String toJson(JsonThing thing) throws IOException {
+        if (listener == null) {
+            return writer.writeValueAsString(thing.asObject());
+        }
+        long start = System.nanoTime();
+        try {
+            String json = writer.writeValueAsString(thing.asObject());
+            listener.encoded(
+                System.nanoTime() - start, utf8Length(json, 0, json.length()));
+            return json;
+        } catch (IOException | RuntimeException e) {
+            listener.encodeFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    public byte[] toBytes(JsonThing thing) throws IOException {
+        if (listener == null) {
+            return writer.writeValueAsBytes(thing.asObject());
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = writer.writeValueAsBytes(thing.asObject());
+            listener.encoded(System.nanoTime() - start, bytes.length);
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            listener.encodeFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes thing as JSON to out. The stream is flushed but not closed.
+     */
+    public void writeTo(JsonThing thing, OutputStream out) throws IOException {
+        if (listener == null) {
+            write(thing, factory.createGenerator(out));
+            return;
+        }
+        CountingOutputStream counted = new CountingOutputStream(out);
+        long start = System.nanoTime();
+        try {
+            write(thing, factory.createGenerator(counted));
+            listener.encoded(System.nanoTime() - start, counted.count);
+        } catch (IOException | RuntimeException e) {
+            listener.encodeFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes thing as JSON to out. The writer is flushed but not closed.
+     */
+    public void writeTo(JsonThing thing, Writer out) throws IOException {
+        if (listener == null) {
+            write(thing, factory.createGenerator(out));
+            return;
+        }
+        CountingWriter counted = new CountingWriter(out);
+        long start = System.nanoTime();
+        try {
+            write(thing, factory.createGenerator(counted));
+            listener.encoded(System.nanoTime() - start, counted.count);
+        } catch (IOException | RuntimeException e) {
+            listener.encodeFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    private void write(JsonThing thing, JsonGenerator gen) throws IOException {
+        try {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            streamWriter.writeValue(gen, thing.asObject());
+        } finally {
+            gen.close();
+        }
+    }
+
+    static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the chars written to out.
+     */
+    private static final class CountingWriter extends FilterWriter {
+        long count;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count += utf8Length((char)c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            for (int i = off; i < off + len; i++) {
+                count += utf8Length(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += utf8Length(str, off, off + len);
+        }
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the chars read from in.
+     */
+    private static final class CountingReader extends FilterReader {
+        long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = in.read();
+            if (c >= 0) {
+                count += utf8Length((char)c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = in.read(cbuf, off, len);
+            for (int i = off; i < off + n; i++) {
+                count += utf8Length(cbuf[i]);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * JsonThingFeeder
+ *
+ * Parses JSON pushed to it in chunks, as they arrive from the network,
+ * without blocking and without buffering the whole input. Each chunk is
+ * parsed as far as it goes when it is fed, and values are handed out as
+ * soon as their last byte arrives.
+ *
+ *     JsonThingFeeder feeder = JsonThingFeeder.values();
+ *     // as each chunk arrives
+ *     feeder.feed(chunk, 0, n);
+ *     // once the body has all arrived
+ *     JsonThing body = feeder.endOfInput().poll();
+ *
+ * values() hands out each top level value, so it can take one body or a
+ * stream of NDJSON records. elements() expects top level arrays and hands
+ * out each of their elements instead, so a large array is never held whole.
+ * Values can be taken with poll(), or passed to a Handler as they finish.
+ *
+ * Values are the same as the codec would parse; the codec's listener is
+ * told about each one, with the time spent parsing it across all chunks.
+ * Each value's length includes the separators and whitespace before it.
+ *
+ * A JsonThingFeeder is not thread safe.
+ *
+ * @author Jin
+ */
+public final class JsonThingFeeder {
+
+    public static JsonThingFeeder values() {
+        return new JsonThingFeeder(JsonThingCodec.DEFAULT, false);
+    }
+
+    public static JsonThingFeeder values(JsonThingCodec codec) {
+        return new JsonThingFeeder(codec, false);
+    }
+
+    public static JsonThingFeeder elements() {
+        return new JsonThingFeeder(JsonThingCodec.DEFAULT, true);
+    }
+
+    public static JsonThingFeeder elements(JsonThingCodec codec) {
+        return new JsonThingFeeder(codec, true);
+    }
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder input;
+    private final ThingParser.Assembler assembler;
+    private final JsonThingListener listener;
+    private final boolean elements;
+    private final ArrayDeque<JsonThing> ready = new ArrayDeque<>();
+    private JsonThingStream.Handler handler;
+    private boolean inArray;
+    private boolean ended;
+    private byte[] scratch;
+    private long valueStart;
+    private long valueNanos;
+
+    private JsonThingFeeder(JsonThingCodec codec, boolean elements) {
+        try {
+            this.parser = codec.factory().createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            // The byte array parser is always supported by JsonFactory.
+            throw new IllegalStateException(e);
+        }
+        this.input = (ByteArrayFeeder)parser.getNonBlockingInputFeeder();
+        this.assembler = codec.parser().assembler();
+        this.listener = codec.listener();
+        this.elements = elements;
+    }
+
+    /**
+     * Passes each value to handler as it finishes, instead of keeping it
+     * for poll(). Once handler returns false, later values are kept for
+     * poll() instead.
+     */
+    public JsonThingFeeder handler(JsonThingStream.Handler handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    public JsonThingFeeder feed(byte[] bytes) throws IOException {
+        return feed(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parses bytes from offset to offset + length, which may end anywhere,
+     * even part way through a value or a character. The bytes are not
+     * kept, so the array can be reused as soon as this returns.
+     */
+    public JsonThingFeeder feed(byte[] bytes, int offset, int length)
+        throws IOException
+    {
+        if (ended) {
+            throw new IllegalStateException("Fed after end of input");
+        }
+        if (length > 0) {
+            input.feedInput(bytes, offset, offset + length);
+            parse();
+        }
+        return this;
+    }
+
+    /**
+     * Parses the bytes between the buffer's position and limit, and moves
+     * its position to its limit.
+     */
+    public JsonThingFeeder feed(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            int length = buffer.remaining();
+            feed(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                length);
+            ((Buffer)buffer).position(buffer.limit());
+            return this;
+        }
+        if (scratch == null) {
+            scratch = new byte[8192];
+        }
+        while (buffer.hasRemaining()) {
+            int length = Math.min(scratch.length, buffer.remaining());
+            buffer.get(scratch, 0, length);
+            feed(scratch, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * Marks the end of the input, and parses what is left. Fails if the
+     * input ends part way through a value.
+     */
+    public JsonThingFeeder endOfInput() throws IOException {
+        if (!ended) {
+            ended = true;
+            input.endOfInput();
+            parse();
+            if (assembler.isPartial() || inArray) {
+                throw MismatchedInputException.from(
+                    parser, Object.class, "Unexpected end-of-input");
+            }
+        }
+        return this;
+    }
+
+    /**
+     * True once endOfInput() has been called and every value has been
+     * taken.
+     */
+    public boolean isDone() {
+        return ended && ready.isEmpty();
+    }
+
+    /**
+     * Takes the next finished value, or returns null if there is none yet.
+     */
+    public JsonThing poll() {
+        return ready.poll();
+    }
+
+    /**
+     * The number of finished values waiting for poll().
+     */
+    public int available() {
+        return ready.size();
+    }
+
+    private void parse() throws IOException {
+        long start = (listener == null) ? 0 : System.nanoTime();
+        try {
+            JsonToken t;
+            while ((t = parser.nextToken()) != null
+                && t != JsonToken.NOT_AVAILABLE)
+            {
+                start = token(t, start);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (listener != null) {
+                listener.parseFailed(valueNanos + System.nanoTime() - start, e);
+                valueNanos = 0;
+            }
+            throw e;
+        }
+        if (listener != null) {
+            valueNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Handles token t. Returns the time from which parsing is counted
+     * against the next value.
+     */
+    private long token(JsonToken t, long start) throws IOException {
+        if (elements && !assembler.isPartial()) {
+            if (!inArray) {
+                if (t != JsonToken.START_ARRAY) {
+                    throw MismatchedInputException.from(
+                        parser, Object.class,
+                        "Expected an array but found " + t);
+                }
+                inArray = true;
+                return start;
+            }
+            if (t == JsonToken.END_ARRAY) {
+                inArray = false;
+                return start;
+            }
+        }
+        if (!assembler.token(parser, t)) {
+            return start;
+        }
+        JsonThing value = JsonThing.wrap(assembler.take());
+        int depth = assembler.takeMaxDepth();
+        if (listener != null) {
+            long now = System.nanoTime();
+            long end = JsonThingCodec.offset(parser.getCurrentLocation());
+            listener.parsed(valueNanos + now - start, end - valueStart, depth);
+            valueNanos = 0;
+            valueStart = end;
+            start = now;
+        }
+        if (handler == null) {
+            ready.add(value);
+        } else if (!handler.handle(value)) {
+            handler = null;
+        }
+        return start;
+    }
+}
@@ -0,0 +1,50 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+
+/**
+ * JsonThingFormat
+ *
+ * An encoding that JsonThings can be written to with toBytes() and read back
+ * from with parse(byte[], JsonThingFormat). Formats work on the plain value
+ * model that JsonThing wraps: Maps, Lists, Strings, numbers, booleans and
+ * null.
+ *
+ * JSON and SMILE are provided. Any other Jackson data format can be used
+ * through of(JsonFactory), for example of(new CBORFactory()), or the
+ * interface can be implemented directly.
+ *
+ *     byte[] bytes = obj.toBytes(JsonThingFormat.SMILE);
+ *     JsonThing copy = JsonThing.parse(bytes, JsonThingFormat.SMILE);
+ *
+ * @author Jin
+ */
+public interface JsonThingFormat {
+
+    /**
+     * UTF-8 encoded JSON text, as produced by toJson().
+     */
+    JsonThingFormat JSON = new JacksonFormat(JsonThing.MAPPER);
+
+    /**
+     * Jackson's binary JSON format. Smile keeps integers and floating point
+     * numbers distinct, but like JSON it does not record the Java type, so
+     * numbers read back as the smallest type that fits them: a Long that
+     * fits in an int reads back as an Integer, as it would from JSON.
+     */
+    JsonThingFormat SMILE = of(new SmileFactory());
+
+    /**
+     * A format backed by a Jackson data format. The factory is copied, so
+     * later changes to it do not affect the format.
+     */
+    static JsonThingFormat of(JsonFactory factory) {
+        return new JacksonFormat(factory);
+    }
+
+    byte[] encode(Object value) throws IOException;
+
+    Object decode(byte[] bytes, int offset, int length) throws IOException;
+}
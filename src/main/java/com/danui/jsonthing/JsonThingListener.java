@@ -0,0 +1,53 @@
+package com.danui.jsonthing;
+
+/**
+ * JsonThingListener
+ *
+ * Told about each document a JsonThingCodec parses or encodes. Set one with
+ * JsonThingCodec.Builder::listener; JsonThingMetrics is the usual one.
+ * Codecs without a listener do no timing or counting at all.
+ *
+ * Methods are called on the thread doing the work, straight after it, so
+ * they should be quick and must be thread safe. Each does nothing by
+ * default.
+ *
+ * @author Jin
+ */
+public interface JsonThingListener {
+
+    /**
+     * A document was parsed.
+     *
+     * @param nanos time taken
+     * @param length bytes read, or for String and Reader input the UTF-8
+     *     length of the chars read
+     * @param depth deepest nesting of maps and lists, 0 for a scalar, or -1
+     *     if not known (when parsing with databind)
+     */
+    default void parsed(long nanos, long length, int depth) {
+    }
+
+    /**
+     * Parsing failed with error, which is thrown to the caller after this
+     * returns.
+     */
+    default void parseFailed(long nanos, Exception error) {
+    }
+
+    /**
+     * A document was encoded.
+     *
+     * @param nanos time taken
+     * @param length bytes written, or for String and Writer output the
+     *     UTF-8 length of the chars written
+     */
+    default void encoded(long nanos, long length) {
+    }
+
+    /**
+     * Encoding failed with error, which is thrown to the caller after this
+     * returns.
+     */
+    default void encodeFailed(long nanos, Exception error) {
+    }
+}
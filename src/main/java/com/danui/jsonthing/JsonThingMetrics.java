@@ -0,0 +1,330 @@
+package com.danui.jsonthing;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JsonThingMetrics
+ *
+ * A JsonThingListener that keeps counts and histograms of what a codec
+ * does: parses, encodes and failures, bytes in and out, and how long each
+ * call took and how long and deep each document was. Give each call site
+ * its own codec and metrics to see them apart:
+ *
+ *     JsonThingMetrics metrics = new JsonThingMetrics();
+ *     JsonThingCodec codec = JsonThingCodec.builder()
+ *         .listener(metrics)
+ *         .build();
+ *     metrics.register("orders");
+ *
+ * Recording never locks. Counters are LongAdders, and histograms keep
+ * their counts in log-linear buckets, in the manner of HdrHistogram, so
+ * values are recorded and read back to within about 3%.
+ *
+ * @author Jin
+ */
+public final class JsonThingMetrics
+    implements JsonThingListener, JsonThingMetricsMBean
+{
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder encodeFailures = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final Histogram parseNanos = new Histogram();
+    private final Histogram encodeNanos = new Histogram();
+    private final Histogram documentLength = new Histogram();
+    private final Histogram documentDepth = new Histogram();
+
+    @Override
+    public void parsed(long nanos, long length, int depth) {
+        parseNanos.record(nanos);
+        if (length >= 0) {
+            bytesIn.add(length);
+            documentLength.record(length);
+        }
+        if (depth >= 0) {
+            documentDepth.record(depth);
+        }
+    }
+
+    @Override
+    public void parseFailed(long nanos, Exception error) {
+        parseFailures.increment();
+    }
+
+    @Override
+    public void encoded(long nanos, long length) {
+        encodeNanos.record(nanos);
+        if (length >= 0) {
+            bytesOut.add(length);
+        }
+    }
+
+    @Override
+    public void encodeFailed(long nanos, Exception error) {
+        encodeFailures.increment();
+    }
+
+    /**
+     * Time taken by each successful parse, in nanoseconds.
+     */
+    public Histogram parseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Time taken by each successful encode, in nanoseconds.
+     */
+    public Histogram encodeNanos() {
+        return encodeNanos;
+    }
+
+    /**
+     * Length of each parsed document.
+     */
+    public Histogram documentLength() {
+        return documentLength;
+    }
+
+    /**
+     * Nesting depth of each parsed document, where known.
+     */
+    public Histogram documentDepth() {
+        return documentDepth;
+    }
+
+    /**
+     * Registers these metrics with the platform MBeanServer, under
+     * com.danui.jsonthing:type=JsonThingMetrics,name=name, and returns the
+     * name used.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = objectName(name);
+        ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public void unregister(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(objectName(name));
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(
+            "com.danui.jsonthing:type=JsonThingMetrics,name="
+            + ObjectName.quote(name));
+    }
+
+    @Override
+    public long getParseCount() {
+        return parseNanos.count();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public double getParseMicrosMean() {
+        return parseNanos.mean() / 1000;
+    }
+
+    @Override
+    public long getParseMicrosMedian() {
+        return parseNanos.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getParseMicros99() {
+        return parseNanos.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getParseMicrosMax() {
+        return parseNanos.max() / 1000;
+    }
+
+    @Override
+    public long getDocumentLengthMedian() {
+        return documentLength.percentile(50);
+    }
+
+    @Override
+    public long getDocumentLength99() {
+        return documentLength.percentile(99);
+    }
+
+    @Override
+    public long getDocumentLengthMax() {
+        return documentLength.max();
+    }
+
+    @Override
+    public long getDocumentDepthMedian() {
+        return documentDepth.percentile(50);
+    }
+
+    @Override
+    public long getDocumentDepthMax() {
+        return documentDepth.max();
+    }
+
+    @Override
+    public long getEncodeCount() {
+        return encodeNanos.count();
+    }
+
+    @Override
+    public long getEncodeFailures() {
+        return encodeFailures.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getEncodeMicrosMean() {
+        return encodeNanos.mean() / 1000;
+    }
+
+    @Override
+    public long getEncodeMicrosMedian() {
+        return encodeNanos.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getEncodeMicros99() {
+        return encodeNanos.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getEncodeMicrosMax() {
+        return encodeNanos.max() / 1000;
+    }
+
+    /**
+     * Clears all counts. Calls recorded while this runs may be partly kept.
+     */
+    @Override
+    public void reset() {
+        parseFailures.reset();
+        encodeFailures.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        parseNanos.reset();
+        encodeNanos.reset();
+        documentLength.reset();
+        documentDepth.reset();
+    }
+
+    /**
+     * Histogram
+     *
+     * Counts non-negative long values in buckets. Values below 32 get a
+     * bucket each; above that, each power of two is split into 32 buckets,
+     * so a bucket is never wider than 1/32 of the values in it. Negative
+     * values are counted as 0.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts =
+            new AtomicLongArray((64 - SUB_BITS) * SUB);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+        }
+
+        static int index(long value) {
+            if (value < SUB) {
+                return (int)Math.max(value, 0);
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB + (int)((value >>> shift) & (SUB - 1));
+        }
+
+        /**
+         * The largest value that falls in bucket index.
+         */
+        static long highest(int index) {
+            if (index < SUB) {
+                return index;
+            }
+            int shift = index / SUB - 1;
+            long lowest = (long)(SUB + index % SUB) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+
+        public void record(long value) {
+            counts.incrementAndGet(index(value));
+            count.increment();
+            sum.add(Math.max(value, 0));
+            long m = max.get();
+            while (value > m && !max.compareAndSet(m, value)) {
+                m = max.get();
+            }
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return (n == 0) ? 0 : (double)sum.sum() / n;
+        }
+
+        /**
+         * The value that percent of recorded values are at or below, to
+         * within the width of its bucket, or 0 if nothing was recorded.
+         */
+        public long percentile(double percent) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long)Math.ceil(total * percent / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(highest(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.danui.jsonthing;
+
+/**
+ * JsonThingMetricsMBean
+ *
+ * The JMX view of a JsonThingMetrics. Times are in microseconds, lengths in
+ * bytes (or chars).
+ *
+ * @author Jin
+ */
+public interface JsonThingMetricsMBean {
+
+    long getParseCount();
+
+    long getParseFailures();
+
+    long getBytesIn();
+
+    double getParseMicrosMean();
+
+    long getParseMicrosMedian();
+
+    long getParseMicros99();
+
+    long getParseMicrosMax();
+
+    long getDocumentLengthMedian();
+
+    long getDocumentLength99();
+
+    long getDocumentLengthMax();
+
+    long getDocumentDepthMedian();
+
+    long getDocumentDepthMax();
+
+    long getEncodeCount();
+
+    long getEncodeFailures();
+
+    long getBytesOut();
+
+    double getEncodeMicrosMean();
+
+    long getEncodeMicrosMedian();
+
+    long getEncodeMicros99();
+
+    long getEncodeMicrosMax();
+
+    void reset();
+}
@@ -0,0 +1,373 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * JsonThingParallelReader
+ *
+ * Parses the records of a large file on several threads. The file is cut
+ * into chunks at record boundaries, each chunk is memory mapped and parsed on
+ * a ForkJoinPool, and the records are handed back either in file order or as
+ * each chunk completes.
+ *
+ * Two layouts are supported:
+ *
+ * - ndjson(): one JSON value per line. Chunks are cut after newlines.
+ * - array(): a single JSON array whose elements are the records. Chunks are
+ *   cut between top level elements, found by a quick scan of the file that
+ *   tracks nesting and strings but does not parse.
+ *
+ * Records are parsed with the same configuration as JsonThing::parse, so
+ * they are identical to those a sequential read would produce.
+ *
+ *     List<JsonThing> records = JsonThingParallelReader.ndjson(path)
+ *         .parallelism(8)
+ *         .readAll();
+ *
+ * @author Jin
+ */
+public final class JsonThingParallelReader {
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] OPEN = {'['};
+    private static final byte[] CLOSE = {']'};
+
+    public static JsonThingParallelReader ndjson(Path path) {
+        return new JsonThingParallelReader(path, false);
+    }
+
+    public static JsonThingParallelReader array(Path path) {
+        return new JsonThingParallelReader(path, true);
+    }
+
+    private final Path path;
+    private final boolean array;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean ordered = true;
+    private int chunkSize = 4 * 1024 * 1024;
+
+    private JsonThingParallelReader(Path path, boolean array) {
+        this.path = path;
+        this.array = array;
+    }
+
+    /**
+     * Number of threads to parse on. Defaults to the number of available
+     * processors.
+     */
+    public JsonThingParallelReader parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                "parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Whether records are delivered in file order. Defaults to true.
+     */
+    public JsonThingParallelReader ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Approximate number of bytes per chunk. Defaults to 4 MiB. A chunk is
+     * never smaller than one record.
+     */
+    public JsonThingParallelReader chunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException(
+                "chunkSize must be at least 1: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public List<JsonThing> readAll() throws IOException {
+        List<JsonThing> records = new ArrayList<>();
+        if (ordered) {
+            readEach(records::add);
+            return records;
+        }
+        readEach(record -> {
+            synchronized (records) {
+                records.add(record);
+            }
+        });
+        return records;
+    }
+
+    /**
+     * Passes every record to consumer. When ordered, consumer is called on
+     * the calling thread in file order, and only a bounded number of chunks
+     * are parsed ahead of it. When not ordered, consumer is called from the
+     * parsing threads as records are parsed, so it must be thread safe.
+     */
+    public void readEach(Consumer<JsonThing> consumer) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(path, StandardOpenOption.READ))
+        {
+            List<long[]> chunks =
+                array ? arrayChunks(channel) : lineChunks(channel);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                if (ordered) {
+                    readOrdered(pool, channel, chunks, consumer);
+                } else {
+                    readUnordered(pool, channel, chunks, consumer);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void readOrdered(
+        ForkJoinPool pool,
+        FileChannel channel,
+        List<long[]> chunks,
+        Consumer<JsonThing> consumer)
+        throws IOException
+    {
+        int window = 2 * parallelism;
+        boolean split = chunks.size() > 1;
+        ArrayDeque<Future<List<JsonThing>>> pending = new ArrayDeque<>();
+        int next = 0;
+        while (next < chunks.size() || !pending.isEmpty()) {
+            while (next < chunks.size() && pending.size() < window) {
+                long[] chunk = chunks.get(next++);
+                pending.add(pool.submit(() -> parse(channel, chunk, split)));
+            }
+            for (JsonThing record : await(pending.poll())) {
+                consumer.accept(record);
+            }
+        }
+    }
+
+    private void readUnordered(
+        ForkJoinPool pool,
+        FileChannel channel,
+        List<long[]> chunks,
+        Consumer<JsonThing> consumer)
+        throws IOException
+    {
+        List<Future<List<JsonThing>>> futures = new ArrayList<>();
+        boolean split = chunks.size() > 1;
+        for (long[] chunk : chunks) {
+            futures.add(pool.submit(() -> {
+                for (JsonThing record : parse(channel, chunk, split)) {
+                    consumer.accept(record);
+                }
+                return Collections.<JsonThing>emptyList();
+            }));
+        }
+        for (Future<List<JsonThing>> future : futures) {
+            await(future);
+        }
+    }
+
+    /**
+     * The result of future, with the exception it failed with rethrown as
+     * it was thrown.
+     */
+    static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool wraps what a Callable throws in RuntimeExceptions,
+            // and may wrap that again when rethrowing on another thread.
+            Throwable inner = cause;
+            while (inner != null
+                && inner.getClass() == RuntimeException.class)
+            {
+                inner = inner.getCause();
+            }
+            if (inner instanceof IOException) {
+                cause = inner;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException)cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Parses the records in the chunk [start, end), straight from the mapped
+     * file. In an array, a chunk holds a run of elements without the commas
+     * it was cut at, and is parsed as if it were an array of its own, so
+     * that the separators inside it are checked as a sequential parse would
+     * check them. When the array was split into several chunks, each must
+     * hold an element, which rejects a doubled, leading or trailing comma
+     * at a cut.
+     */
+    private List<JsonThing> parse(
+        FileChannel channel,
+        long[] chunk,
+        boolean split)
+        throws IOException
+    {
+        if (chunk[1] - chunk[0] > Integer.MAX_VALUE) {
+            throw new IOException(
+                "Record at offset " + chunk[0] + " is too large in " + path);
+        }
+        int length = (int)(chunk[1] - chunk[0]);
+        MappedByteBuffer mapped =
+            channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], length);
+        InputStream in = new ByteBufferBackedInputStream(mapped);
+        List<JsonThing> records = new ArrayList<>();
+        if (!array) {
+            try (JsonThingStream stream = JsonThingStream.of(in)) {
+                JsonThing record;
+                while ((record = stream.read()) != null) {
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+        JsonThingCodec codec = JsonThingCodec.DEFAULT;
+        in = new SequenceInputStream(
+            Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(OPEN), in,
+                new ByteArrayInputStream(CLOSE))));
+        try (JsonParser p = codec.factory().createParser(in)) {
+            p.nextToken();
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                records.add(JsonThing.wrap(codec.read(p)));
+            }
+        }
+        if (split && records.isEmpty()) {
+            throw new IOException(
+                "Missing array element at offset " + chunk[0] + " in " + path);
+        }
+        return records;
+    }
+
+    /**
+     * Cuts the file just after the first newline at or beyond each multiple
+     * of chunkSize.
+     */
+    private List<long[]> lineChunks(FileChannel channel) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            while (end < size) {
+                ((Buffer)buf).clear();
+                int n = channel.read(buf, end);
+                int i = 0;
+                while (i < n && buf.get(i) != '\n') {
+                    i += 1;
+                }
+                end += i;
+                if (i < n) {
+                    end += 1;
+                    break;
+                }
+            }
+            chunks.add(new long[] {start, Math.min(end, size)});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Scans the root array, cutting it at the first element separator at or
+     * beyond each multiple of chunkSize. The chunks cover the array's
+     * contents without its brackets.
+     */
+    private List<long[]> arrayChunks(FileChannel channel) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long pos = 0;
+        long start = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            ((Buffer)buf).clear();
+            int n = channel.read(buf, pos);
+            if (n < 0) {
+                throw new IOException(
+                    "Unexpected end of JSON array in " + path);
+            }
+            for (int i = 0; i < n; i++, pos++) {
+                byte b = buf.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                if (start < 0) {
+                    if (b == '[') {
+                        start = pos + 1;
+                        depth = 1;
+                    } else if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                        throw new IOException(
+                            "Expected a JSON array at the root of " + path);
+                    }
+                    continue;
+                }
+                if (b == '"') {
+                    inString = true;
+                } else if (b == '[' || b == '{') {
+                    depth += 1;
+                } else if (b == ']' || b == '}') {
+                    depth -= 1;
+                    if (depth == 0) {
+                        chunks.add(new long[] {start, pos});
+                        return chunks;
+                    }
+                } else if (b == ',' && depth == 1 && pos - start >= chunkSize) {
+                    chunks.add(new long[] {start, pos});
+                    start = pos + 1;
+                }
+            }
+        }
+    }
+}
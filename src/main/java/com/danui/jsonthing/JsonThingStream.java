@@ -0,0 +1,155 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * JsonThingStream
+ *
+ * Reads a sequence of JSON values, such as newline delimited JSON (NDJSON,
+ * JSON lines), one record at a time. A single parser is used for the whole
+ * input, so records are never split into lines or Strings first.
+ *
+ * Records can be pulled with read() or iterator(), consumed as a Stream, or
+ * pushed to a Handler with readEach(). Records are only parsed as they are
+ * asked for.
+ *
+ * Closing a JsonThingStream closes the underlying input.
+ *
+ * @author Jin
+ */
+public final class JsonThingStream implements Iterable<JsonThing>, Closeable {
+
+    /**
+     * Receives records pushed by readEach(). Returning false stops reading.
+     */
+    public interface Handler {
+        boolean handle(JsonThing record) throws IOException;
+    }
+
+    public static JsonThingStream of(InputStream in) throws IOException {
+        return of(in, JsonThingCodec.DEFAULT);
+    }
+
+    /**
+     * Reads records from in as codec would parse them. Each record counts
+     * as one parse to the codec's listener.
+     */
+    public static JsonThingStream of(InputStream in, JsonThingCodec codec)
+        throws IOException
+    {
+        return new JsonThingStream(codec, codec.factory().createParser(in));
+    }
+
+    public static JsonThingStream of(Path path) throws IOException {
+        return of(Files.newInputStream(path));
+    }
+
+    public static JsonThingStream of(Path path, JsonThingCodec codec)
+        throws IOException
+    {
+        return of(Files.newInputStream(path), codec);
+    }
+
+    private final JsonThingCodec codec;
+    private final JsonParser parser;
+
+    private JsonThingStream(JsonThingCodec codec, JsonParser parser) {
+        this.codec = codec;
+        this.parser = parser;
+    }
+
+    /**
+     * Reads the next record, or returns null at the end of the input.
+     */
+    public JsonThing read() throws IOException {
+        if (parser.nextToken() == null) {
+            return null;
+        }
+        return JsonThing.wrap(codec.read(parser));
+    }
+
+    /**
+     * Reads records and passes them to handler, until handler returns false
+     * or the input ends. Returns the number of records passed to handler.
+     */
+    public long readEach(Handler handler) throws IOException {
+        long count = 0;
+        JsonThing record;
+        while ((record = read()) != null) {
+            count += 1;
+            if (!handler.handle(record)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The returned iterator throws UncheckedIOException if reading fails.
+     */
+    @Override
+    public Iterator<JsonThing> iterator() {
+        return new Iterator<JsonThing>() {
+            private JsonThing next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public JsonThing next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                JsonThing record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<JsonThing> spliterator() {
+        return Spliterators.spliteratorUnknownSize(
+            iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * A sequential Stream of the records. Closing the Stream closes this.
+     */
+    public Stream<JsonThing> stream() {
+        return StreamSupport.stream(spliterator(), false)
+            .onClose(() -> {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
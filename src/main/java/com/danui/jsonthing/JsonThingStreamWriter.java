@@ -0,0 +1,110 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * JsonThingStreamWriter
+ *
+ * Writes JsonThings as newline delimited JSON, one record per line, through
+ * a single buffered generator. Output reaches the underlying stream when the
+ * generator's buffer fills, on flush(), and on close().
+ *
+ * Closing a JsonThingStreamWriter closes the underlying output.
+ *
+ * @author Jin
+ */
+public final class JsonThingStreamWriter implements Closeable, Flushable {
+
+    public static JsonThingStreamWriter to(OutputStream out) throws IOException {
+        return to(out, JsonThingCodec.DEFAULT);
+    }
+
+    /**
+     * Writes records as codec would encode them. Each record counts as one
+     * encode to the codec's listener.
+     */
+    public static JsonThingStreamWriter to(
+        OutputStream out,
+        JsonThingCodec codec)
+        throws IOException
+    {
+        JsonThingCodec.CountingOutputStream counted = null;
+        if (codec.listener() != null) {
+            counted = new JsonThingCodec.CountingOutputStream(out);
+            out = counted;
+        }
+        return new JsonThingStreamWriter(
+            codec, counted, codec.factory().createGenerator(out));
+    }
+
+    /**
+     * Creates the file at path, or truncates it if it exists.
+     */
+    public static JsonThingStreamWriter to(Path path) throws IOException {
+        return to(Files.newOutputStream(path));
+    }
+
+    public static JsonThingStreamWriter to(Path path, JsonThingCodec codec)
+        throws IOException
+    {
+        return to(Files.newOutputStream(path), codec);
+    }
+
+    private final JsonThingCodec codec;
+    private final JsonThingCodec.CountingOutputStream counted;
+    private final JsonGenerator gen;
+
+    private JsonThingStreamWriter(
+        JsonThingCodec codec,
+        JsonThingCodec.CountingOutputStream counted,
+        JsonGenerator gen)
+    {
+        this.codec = codec;
+        this.counted = counted;
+        this.gen = gen;
+        gen.setRootValueSeparator(null);
+    }
+
+    public JsonThingStreamWriter write(JsonThing record) throws IOException {
+        JsonThingListener listener = codec.listener();
+        if (listener == null) {
+            codec.streamWriter().writeValue(gen, record.asObject());
+            gen.writeRaw('\n');
+            return this;
+        }
+        long start = System.nanoTime();
+        long before = written();
+        try {
+            codec.streamWriter().writeValue(gen, record.asObject());
+            gen.writeRaw('\n');
+            listener.encoded(System.nanoTime() - start, written() - before);
+        } catch (IOException | RuntimeException e) {
+            listener.encodeFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+        return this;
+    }
+
+    /**
+     * Bytes written so far, whether or not they have left the generator.
+     */
+    private long written() {
+        return counted.count + gen.getOutputBuffered();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        gen.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        gen.close();
+    }
+}
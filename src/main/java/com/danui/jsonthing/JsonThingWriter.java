@@ -0,0 +1,143 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * JsonThingWriter
+ *
+ * Writes JSON straight to a stream, with the same fluent style as building a
+ * JsonThing, but without building any maps or lists along the way.
+ *
+ *     JsonThingWriter.to(out)
+ *         .newMap()
+ *             .put("name", "Alice")
+ *             .put("badge_number", 107)
+ *             .newList("district_ids")
+ *                 .add(310)
+ *                 .add(309)
+ *             .end()
+ *         .end()
+ *         .close();
+ *
+ * Values passed to put() and add() can be anything JsonThing can hold,
+ * including other JsonThings. Calls that do not fit the structure written so
+ * far, such as put() inside a list, throw IOException.
+ *
+ * @author Jin
+ */
+public final class JsonThingWriter implements Closeable, Flushable {
+
+    /**
+     * Closing the returned writer does not close out.
+     */
+    public static JsonThingWriter to(OutputStream out) throws IOException {
+        return new JsonThingWriter(
+            JsonThing.MAPPER.getFactory().createGenerator(out));
+    }
+
+    /**
+     * Closing the returned writer does not close out.
+     */
+    public static JsonThingWriter to(Writer out) throws IOException {
+        return new JsonThingWriter(
+            JsonThing.MAPPER.getFactory().createGenerator(out));
+    }
+
+    private final JsonGenerator gen;
+
+    private JsonThingWriter(JsonGenerator gen) {
+        this.gen = gen;
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Starts a map, either as a top level value or as an element of the
+     * current list.
+     */
+    public JsonThingWriter newMap() throws IOException {
+        gen.writeStartObject();
+        return this;
+    }
+
+    /**
+     * Starts a map as the value at key of the current map.
+     */
+    public JsonThingWriter newMap(String key) throws IOException {
+        gen.writeFieldName(key);
+        gen.writeStartObject();
+        return this;
+    }
+
+    public JsonThingWriter newList() throws IOException {
+        gen.writeStartArray();
+        return this;
+    }
+
+    public JsonThingWriter newList(String key) throws IOException {
+        gen.writeFieldName(key);
+        gen.writeStartArray();
+        return this;
+    }
+
+    /**
+     * Ends the current map or list.
+     */
+    public JsonThingWriter end() throws IOException {
+        if (gen.getOutputContext().inArray()) {
+            gen.writeEndArray();
+        } else {
+            gen.writeEndObject();
+        }
+        return this;
+    }
+
+    public JsonThingWriter put(String key, Object value) throws IOException {
+        gen.writeFieldName(key);
+        writeValue(value);
+        return this;
+    }
+
+    public JsonThingWriter add(Object value) throws IOException {
+        writeValue(value);
+        return this;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value instanceof JsonThing) {
+            value = ((JsonThing)value).asObject();
+        }
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String) {
+            gen.writeString((String)value);
+        } else if (value instanceof Integer) {
+            gen.writeNumber((Integer)value);
+        } else if (value instanceof Long) {
+            gen.writeNumber((Long)value);
+        } else if (value instanceof Double) {
+            gen.writeNumber((Double)value);
+        } else if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean)value);
+        } else {
+            JsonThing.WRITER.writeValue(gen, value);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        gen.flush();
+    }
+
+    /**
+     * Ends any maps and lists that are still open, then flushes.
+     */
+    @Override
+    public void close() throws IOException {
+        gen.close();
+    }
+}
@@ -0,0 +1,199 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * LazyList
+ *
+ * A List over a JSON array that is still held as UTF-8 bytes. See LazyMap,
+ * including for what is thread safe.
+ *
+ * @author Jin
+ */
+final class LazyList extends AbstractList<Object>
+    implements RandomAccess, JsonSerializable
+{
+    private final LazySource src;
+    private final int start;
+    private final int end;
+
+    private volatile ArrayList<Object> elements;
+    private boolean modified;
+    private volatile Boolean compact;
+
+    LazyList(LazySource src, int start, int end) {
+        this.src = src;
+        this.start = start;
+        this.end = end;
+    }
+
+    private LazyList(
+        LazySource src,
+        int start,
+        int end,
+        ArrayList<Object> elements)
+    {
+        this(src, start, end);
+        this.elements = elements;
+    }
+
+    /**
+     * Reads the array that starts at p's current token, leaving p on its
+     * last token. Offsets in p are relative to base.
+     */
+    static LazyList read(LazySource src, int base, JsonParser p)
+        throws IOException
+    {
+        int start = base + LazyValues.tokenOffset(p);
+        ArrayList<Object> elements = index(src, base, p);
+        return new LazyList(
+            src, start, base + LazyValues.currentOffset(p), elements);
+    }
+
+
+    private static ArrayList<Object> index(
+        LazySource src,
+        int base,
+        JsonParser p)
+        throws IOException
+    {
+        ArrayList<Object> list = new ArrayList<>();
+        JsonToken t = p.nextToken();
+        while (t != JsonToken.END_ARRAY) {
+            int valueStart = base + LazyValues.tokenOffset(p);
+            int valueEnd;
+            if (t.isStructStart()) {
+                p.skipChildren();
+                valueEnd = base + LazyValues.currentOffset(p);
+                t = p.nextToken();
+            } else {
+                t = p.nextToken();
+                valueEnd = LazyValues.trimEnd(
+                    src, valueStart, base + LazyValues.tokenOffset(p));
+            }
+            list.add(new LazyValues.Slice(valueStart, valueEnd));
+        }
+        return list;
+    }
+
+    private ArrayList<Object> elements() {
+        ArrayList<Object> list = elements;
+        if (list == null) {
+            synchronized (this) {
+                list = elements;
+                if (list == null) {
+                    try (JsonParser p = src.parser(start, end)) {
+                        p.nextToken();
+                        list = index(src, start, p);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    elements = list;
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * True if the source has no whitespace outside of strings. Worked out
+     * on first use.
+     */
+    private boolean isCompact() {
+        Boolean c = compact;
+        if (c == null) {
+            c = LazyValues.isCompact(src, start, end);
+            compact = c;
+        }
+        return c;
+    }
+
+    private void modify() {
+        if (src.isReadOnly()) {
+            throw new UnsupportedOperationException(
+                "Memory mapped documents are read-only");
+        }
+        modified = true;
+    }
+
+    boolean isPristine() {
+        if (modified) {
+            return false;
+        }
+        if (elements != null) {
+            for (Object value : elements) {
+                if (!LazyValues.isPristine(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object get(int idx) {
+        return LazyValues.resolve(src, elements().get(idx));
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    @Override
+    public Object set(int idx, Object value) {
+        modify();
+        return LazyValues.resolve(src, elements().set(idx, value));
+    }
+
+    @Override
+    public void add(int idx, Object value) {
+        modify();
+        elements().add(idx, value);
+        modCount += 1;
+    }
+
+    @Override
+    public Object remove(int idx) {
+        modify();
+        Object value = elements().remove(idx);
+        modCount += 1;
+        return LazyValues.resolve(src, value);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        if (isPristine() && LazyValues.canWriteRaw(gen)) {
+            LazyValues.writeSource(src, start, end, isCompact(), gen);
+            return;
+        }
+        ArrayList<Object> list = elements();
+        gen.writeStartArray(this, list.size());
+        for (Object value : list) {
+            LazyValues.write(src, value, gen, provider);
+        }
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
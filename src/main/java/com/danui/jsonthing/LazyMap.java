@@ -0,0 +1,269 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LazyMap
+ *
+ * A Map over a JSON object that is still held as UTF-8 bytes. The object is
+ * indexed on first use, which records where each member's value lies, and a
+ * value is only decoded when it is read. Decoded values are kept.
+ *
+ * Reading does not change the map as seen from outside, so an unmodified map
+ * may be read from many threads at once: the index is built once and
+ * published through a volatile field, and each value is decoded once by its
+ * Slice. Modifying the map is not thread safe.
+ *
+ * Until it is modified, the map serializes by copying its source bytes, or,
+ * if they have whitespace outside of strings, by copying their tokens, so
+ * that it encodes as compactly as other maps.
+ *
+ * @author Jin
+ */
+final class LazyMap extends AbstractMap<String,Object>
+    implements JsonSerializable
+{
+    private final LazySource src;
+    private final int start;
+    private final int end;
+
+    private volatile LinkedHashMap<String,Object> members;
+    private boolean modified;
+    private volatile Boolean compact;
+
+    LazyMap(LazySource src, int start, int end) {
+        this.src = src;
+        this.start = start;
+        this.end = end;
+    }
+
+    private LazyMap(
+        LazySource src,
+        int start,
+        int end,
+        LinkedHashMap<String,Object> members)
+    {
+        this(src, start, end);
+        this.members = members;
+    }
+
+    /**
+     * Reads the object that starts at p's current token, leaving p on its
+     * last token. Offsets in p are relative to base.
+     */
+    static LazyMap read(LazySource src, int base, JsonParser p)
+        throws IOException
+    {
+        int start = base + LazyValues.tokenOffset(p);
+        LinkedHashMap<String,Object> members = index(src, base, p);
+        return new LazyMap(
+            src, start, base + LazyValues.currentOffset(p), members);
+    }
+
+
+    private static LinkedHashMap<String,Object> index(
+        LazySource src,
+        int base,
+        JsonParser p)
+        throws IOException
+    {
+        LinkedHashMap<String,Object> m = new LinkedHashMap<>();
+        JsonToken t = p.nextToken();
+        while (t == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            JsonToken v = p.nextToken();
+            int valueStart = base + LazyValues.tokenOffset(p);
+            int valueEnd;
+            if (v.isStructStart()) {
+                p.skipChildren();
+                valueEnd = base + LazyValues.currentOffset(p);
+                t = p.nextToken();
+            } else {
+                t = p.nextToken();
+                valueEnd = LazyValues.trimEnd(
+                    src, valueStart, base + LazyValues.tokenOffset(p));
+            }
+            m.put(name, new LazyValues.Slice(valueStart, valueEnd));
+        }
+        return m;
+    }
+
+    private LinkedHashMap<String,Object> members() {
+        LinkedHashMap<String,Object> m = members;
+        if (m == null) {
+            synchronized (this) {
+                m = members;
+                if (m == null) {
+                    try (JsonParser p = src.parser(start, end)) {
+                        p.nextToken();
+                        m = index(src, start, p);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    members = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * True if the source has no whitespace outside of strings. Worked out
+     * on first use.
+     */
+    private boolean isCompact() {
+        Boolean c = compact;
+        if (c == null) {
+            c = LazyValues.isCompact(src, start, end);
+            compact = c;
+        }
+        return c;
+    }
+
+    private void modify() {
+        if (src.isReadOnly()) {
+            throw new UnsupportedOperationException(
+                "Memory mapped documents are read-only");
+        }
+        modified = true;
+    }
+
+    boolean isPristine() {
+        if (modified) {
+            return false;
+        }
+        if (members != null) {
+            for (Object value : members.values()) {
+                if (!LazyValues.isPristine(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return LazyValues.resolve(src, members().get(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return members().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return members().size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        modify();
+        return LazyValues.resolve(src, members().put(key, value));
+    }
+
+    @Override
+    public Object remove(Object key) {
+        modify();
+        return LazyValues.resolve(src, members().remove(key));
+    }
+
+    @Override
+    public void clear() {
+        modify();
+        members().clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public int size() {
+                return members().size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                Iterator<Map.Entry<String,Object>> it =
+                    members().entrySet().iterator();
+                return new Iterator<Map.Entry<String,Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String,Object> next() {
+                        return new Entry(it.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        modify();
+                        it.remove();
+                    }
+                };
+            }
+        };
+    }
+
+    private final class Entry extends AbstractMap.SimpleEntry<String,Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final Map.Entry<String,Object> backing;
+
+        Entry(Map.Entry<String,Object> backing) {
+            super(
+                backing.getKey(),
+                LazyValues.resolve(src, backing.getValue()));
+            this.backing = backing;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            modify();
+            super.setValue(value);
+            return backing.setValue(value);
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        if (isPristine() && LazyValues.canWriteRaw(gen)) {
+            LazyValues.writeSource(src, start, end, isCompact(), gen);
+            return;
+        }
+        gen.writeStartObject(this);
+        for (Map.Entry<String,Object> e : members().entrySet()) {
+            gen.writeFieldName(e.getKey());
+            LazyValues.write(src, e.getValue(), gen, provider);
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
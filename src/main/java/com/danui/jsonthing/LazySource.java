@@ -0,0 +1,101 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LazySource
+ *
+ * The UTF-8 bytes that LazyMap and LazyList read from: either a byte array,
+ * or a ByteBuffer such as a memory mapped file. Documents over a ByteBuffer
+ * are read-only.
+ *
+ * @author Jin
+ */
+abstract class LazySource {
+
+    static LazySource of(byte[] bytes) {
+        return new Bytes(bytes);
+    }
+
+    static LazySource of(ByteBuffer buffer) {
+        return new Buffer(buffer);
+    }
+
+    abstract byte byteAt(int idx);
+
+    abstract JsonParser parser(int start, int end) throws IOException;
+
+    abstract String text(int start, int end);
+
+    abstract boolean isReadOnly();
+
+    private static final class Bytes extends LazySource {
+        private final byte[] bytes;
+
+        Bytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        byte byteAt(int idx) {
+            return bytes[idx];
+        }
+
+        @Override
+        JsonParser parser(int start, int end) throws IOException {
+            return JsonThing.MAPPER.getFactory()
+                .createParser(bytes, start, end - start);
+        }
+
+        @Override
+        String text(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean isReadOnly() {
+            return false;
+        }
+    }
+
+    private static final class Buffer extends LazySource {
+        private final ByteBuffer buffer;
+
+        Buffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        byte byteAt(int idx) {
+            return buffer.get(idx);
+        }
+
+        private ByteBuffer slice(int start, int end) {
+            ByteBuffer slice = buffer.duplicate();
+            ((java.nio.Buffer)slice).limit(end).position(start);
+            return slice;
+        }
+
+        @Override
+        JsonParser parser(int start, int end) throws IOException {
+            return JsonThing.MAPPER.getFactory().createParser(
+                new ByteBufferBackedInputStream(slice(start, end)));
+        }
+
+        @Override
+        String text(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            slice(start, end).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        boolean isReadOnly() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * LazyValues
+ *
+ * Helpers shared by LazyMap and LazyList. A value that has been located in
+ * the source bytes but not yet decoded is held as a Slice.
+ *
+ * @author Jin
+ */
+final class LazyValues {
+
+    private LazyValues() {
+    }
+
+    /**
+     * A value located at src[start, end). It is decoded on first read and
+     * then kept, so every thread that reads it gets the same object.
+     */
+    static final class Slice {
+        final int start;
+        final int end;
+        private volatile boolean decoded;
+        private Object value;
+
+        Slice(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        Object get(LazySource src) {
+            if (!decoded) {
+                synchronized (this) {
+                    if (!decoded) {
+                        try {
+                            value = decode(src, start, end);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        decoded = true;
+                    }
+                }
+            }
+            return value;
+        }
+
+        /**
+         * The decoded value, or this slice if it has not been read yet.
+         */
+        Object peek() {
+            return decoded ? value : this;
+        }
+    }
+
+    /**
+     * Returns the root value of the JSON in src[start, end), which must hold
+     * that one value and nothing but whitespace after it. A root map or list
+     * is indexed straight away, in the same pass that finds its end, so that
+     * malformed input is reported here rather than on first access.
+     */
+    static Object root(LazySource src, int start, int end) throws IOException {
+        try (JsonParser p = src.parser(start, end)) {
+            JsonToken t = p.nextToken();
+            Object value;
+            if (t == JsonToken.START_OBJECT) {
+                value = LazyMap.read(src, start, p);
+            } else if (t == JsonToken.START_ARRAY) {
+                value = LazyList.read(src, start, p);
+            } else {
+                // Scalars are decoded as they are, and Jackson reports
+                // empty input.
+                value = JsonThing.MAPPER.readValue(p, Object.class);
+            }
+            t = p.nextToken();
+            if (t != null) {
+                throw MismatchedInputException.from(
+                    p, Object.class,
+                    "Trailing token (of type " + t + ") found after value");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Offset, relative to the start of the parser's input, of the current
+     * token.
+     */
+    static int tokenOffset(JsonParser p) {
+        return (int)p.getTokenLocation().getByteOffset();
+    }
+
+    /**
+     * Offset, relative to the start of the parser's input, just past the
+     * last consumed byte.
+     */
+    static int currentOffset(JsonParser p) {
+        return (int)p.getCurrentLocation().getByteOffset();
+    }
+
+    /**
+     * Moves 'end' back over whitespace and separators, so that src[start,
+     * end) covers exactly one value.
+     */
+    static int trimEnd(LazySource src, int start, int end) {
+        while (end > start) {
+            byte b = src.byteAt(end - 1);
+            if (b != ',' && b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            end -= 1;
+        }
+        return end;
+    }
+
+    static Object decode(LazySource src, int start, int end)
+        throws IOException
+    {
+        switch (src.byteAt(start)) {
+        case '{':
+            return new LazyMap(src, start, end);
+        case '[':
+            return new LazyList(src, start, end);
+        default:
+            try (JsonParser p = src.parser(start, end)) {
+                return JsonThing.MAPPER.readValue(p, Object.class);
+            }
+        }
+    }
+
+    static Object resolve(LazySource src, Object value) {
+        if (!(value instanceof Slice)) {
+            return value;
+        }
+        return ((Slice)value).get(src);
+    }
+
+    /**
+     * True if value is not a lazy container, or is one that still matches
+     * its source bytes exactly.
+     */
+    static boolean isPristine(Object value) {
+        if (value instanceof Slice) {
+            value = ((Slice)value).peek();
+        }
+        if (value instanceof LazyMap) {
+            return ((LazyMap)value).isPristine();
+        }
+        if (value instanceof LazyList) {
+            return ((LazyList)value).isPristine();
+        }
+        return true;
+    }
+
+    /**
+     * True if gen writes JSON text, so that source bytes can be copied into
+     * it as they are. Other generators, such as binary formats, need values
+     * to be decoded and written token by token.
+     */
+    static boolean canWriteRaw(JsonGenerator gen) {
+        return gen instanceof JsonGeneratorImpl;
+    }
+
+    /**
+     * True if src[start, end) has no whitespace outside of strings, so that
+     * copying it as it is gives the text that encoding its value would.
+     */
+    static boolean isCompact(LazySource src, int start, int end) {
+        boolean inString = false;
+        for (int i = start; i < end; i++) {
+            byte b = src.byteAt(i);
+            if (inString) {
+                if (b == '\\') {
+                    i += 1;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the value at src[start, end) to gen, which must write JSON
+     * text. Compact source is copied as it is; anything else is copied token
+     * by token, which drops its whitespace without decoding it.
+     */
+    static void writeSource(
+        LazySource src,
+        int start,
+        int end,
+        boolean compact,
+        JsonGenerator gen)
+        throws IOException
+    {
+        if (compact) {
+            gen.writeRawValue(src.text(start, end));
+            return;
+        }
+        try (JsonParser p = src.parser(start, end)) {
+            p.nextToken();
+            gen.copyCurrentStructure(p);
+        }
+    }
+
+    static void write(
+        LazySource src,
+        Object value,
+        JsonGenerator gen,
+        SerializerProvider provider)
+        throws IOException
+    {
+        if (value instanceof Slice) {
+            value = ((Slice)value).peek();
+        }
+        if (value instanceof Slice && canWriteRaw(gen)) {
+            Slice slice = (Slice)value;
+            writeSource(
+                src,
+                slice.start,
+                slice.end,
+                isCompact(src, slice.start, slice.end),
+                gen);
+        } else if (value instanceof Slice) {
+            provider.defaultSerializeValue(resolve(src, value), gen);
+        } else {
+            provider.defaultSerializeValue(value, gen);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * LongList
+ *
+ * A List of integral numbers backed by a long[]. Elements read through the
+ * List interface are boxed the way Jackson boxes them: as an Integer if the
+ * value fits, as a Long otherwise. Storing anything other than a Long or an
+ * Integer moves the list over to a boxed ArrayList for good.
+ *
+ * @author Jin
+ */
+final class LongList extends AbstractList<Object>
+    implements RandomAccess, JsonSerializable
+{
+    private long[] values;
+    private int size;
+    private ArrayList<Object> boxed;
+
+    LongList(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    boolean isPrimitive() {
+        return boxed == null;
+    }
+
+    long getLong(int idx) {
+        if (boxed != null) {
+            return JsonThing.longOf(boxed.get(idx));
+        }
+        checkIndex(idx, size);
+        return values[idx];
+    }
+
+    long[] toLongArray() {
+        if (boxed != null) {
+            long[] a = new long[boxed.size()];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = JsonThing.longOf(boxed.get(i));
+            }
+            return a;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    double[] toDoubleArray() {
+        if (boxed != null) {
+            double[] a = new double[boxed.size()];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = JsonThing.doubleOf(boxed.get(i));
+            }
+            return a;
+        }
+        double[] a = new double[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = values[i];
+        }
+        return a;
+    }
+
+    static Object box(long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return (int)value;
+        }
+        return value;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return (value instanceof Long) || (value instanceof Integer);
+    }
+
+    private void spill() {
+        ArrayList<Object> list = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            list.add(box(values[i]));
+        }
+        boxed = list;
+        values = null;
+        size = 0;
+    }
+
+    private static void checkIndex(int idx, int size) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + idx + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public Object get(int idx) {
+        if (boxed != null) {
+            return boxed.get(idx);
+        }
+        checkIndex(idx, size);
+        return box(values[idx]);
+    }
+
+    @Override
+    public int size() {
+        return (boxed != null) ? boxed.size() : size;
+    }
+
+    @Override
+    public Object set(int idx, Object value) {
+        if (boxed == null && isIntegral(value)) {
+            checkIndex(idx, size);
+            long prev = values[idx];
+            values[idx] = ((Number)value).longValue();
+            return box(prev);
+        }
+        if (boxed == null) {
+            spill();
+        }
+        return boxed.set(idx, value);
+    }
+
+    @Override
+    public void add(int idx, Object value) {
+        modCount += 1;
+        if (boxed == null && isIntegral(value)) {
+            if (idx < 0 || idx > size) {
+                throw new IndexOutOfBoundsException(
+                    "Index: " + idx + ", Size: " + size);
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(8, size * 2));
+            }
+            System.arraycopy(values, idx, values, idx + 1, size - idx);
+            values[idx] = ((Number)value).longValue();
+            size += 1;
+            return;
+        }
+        if (boxed == null) {
+            spill();
+        }
+        boxed.add(idx, value);
+    }
+
+    @Override
+    public Object remove(int idx) {
+        modCount += 1;
+        if (boxed != null) {
+            return boxed.remove(idx);
+        }
+        checkIndex(idx, size);
+        long prev = values[idx];
+        System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+        size -= 1;
+        return box(prev);
+    }
+
+    @Override
+    public void clear() {
+        modCount += 1;
+        if (boxed != null) {
+            boxed.clear();
+        } else {
+            size = 0;
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        if (boxed != null) {
+            provider.defaultSerializeValue(boxed, gen);
+        } else {
+            gen.writeArray(values, 0, size);
+        }
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,181 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * PersistentList
+ *
+ * An immutable List stored as a 32-way trie of arrays, with the last
+ * partial array kept aside as a tail. withAdded() and with() return a new
+ * list that shares all but the changed path with this one. The List
+ * mutators throw UnsupportedOperationException.
+ *
+ * @author Jin
+ */
+final class PersistentList extends AbstractList<Object>
+    implements RandomAccess, JsonSerializable
+{
+    static final PersistentList EMPTY =
+        new PersistentList(0, 5, new Object[32], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+    private int deepHash;
+
+    private PersistentList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    private int tailOffset() {
+        return (size < 32) ? 0 : ((size - 1) >>> 5) << 5;
+    }
+
+    private Object[] arrayFor(int idx) {
+        if (idx >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            node = (Object[])node[(idx >>> level) & 31];
+        }
+        return node;
+    }
+
+    @Override
+    public Object get(int idx) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + idx + ", Size: " + size);
+        }
+        return arrayFor(idx)[idx & 31];
+    }
+
+    /**
+     * JsonThing::hashOf for this list, computed on first use and kept, as
+     * the list cannot change. Threads that race here compute the same value.
+     */
+    int deepHash() {
+        int h = deepHash;
+        if (h == 0) {
+            h = JsonThing.hashOfList(this);
+            deepHash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    PersistentList withAdded(Object value) {
+        if (size - tailOffset() < 32) {
+            Object[] nextTail = Arrays.copyOf(tail, tail.length + 1);
+            nextTail[tail.length] = value;
+            return new PersistentList(size + 1, shift, root, nextTail);
+        }
+        Object[] nextRoot;
+        int nextShift = shift;
+        if ((size >>> 5) > (1 << shift)) {
+            nextRoot = new Object[32];
+            nextRoot[0] = root;
+            nextRoot[1] = newPath(shift, tail);
+            nextShift += 5;
+        } else {
+            nextRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentList(
+            size + 1, nextShift, nextRoot, new Object[] {value});
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int sub = ((size - 1) >>> level) & 31;
+        Object[] node = parent.clone();
+        if (level == 5) {
+            node[sub] = tailNode;
+        } else {
+            Object[] child = (Object[])parent[sub];
+            node[sub] = (child != null)
+                ? pushTail(level - 5, child, tailNode)
+                : newPath(level - 5, tailNode);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[32];
+        path[0] = newPath(level - 5, node);
+        return path;
+    }
+
+    PersistentList with(int idx, Object value) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException(
+                "Index: " + idx + ", Size: " + size);
+        }
+        if (idx >= tailOffset()) {
+            Object[] nextTail = tail.clone();
+            nextTail[idx & 31] = value;
+            return new PersistentList(size, shift, root, nextTail);
+        }
+        return new PersistentList(
+            size, shift, with(shift, root, idx, value), tail);
+    }
+
+    private static Object[] with(
+        int level, Object[] node, int idx, Object value)
+    {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[idx & 31] = value;
+        } else {
+            int sub = (idx >>> level) & 31;
+            copy[sub] = with(level - 5, (Object[])node[sub], idx, value);
+        }
+        return copy;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        gen.writeStartArray(this, size);
+        for (int i = 0; i < size; i += 32) {
+            Object[] array = arrayFor(i);
+            for (int j = 0, n = Math.min(32, size - i); j < n; j++) {
+                Object value = array[j];
+                if (value == null) {
+                    gen.writeNull();
+                } else {
+                    provider.defaultSerializeValue(value, gen);
+                }
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,559 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * PersistentMap
+ *
+ * An immutable Map from String to value, stored as a hash array mapped trie.
+ * with() and without() return a new map that shares all but the path to the
+ * changed member with this one, so each update copies O(log32 n) small
+ * arrays rather than the whole map. The Map mutators throw
+ * UnsupportedOperationException.
+ *
+ * Like the HashMap of newMap(), members are not kept in any particular
+ * order.
+ *
+ * @author Jin
+ */
+final class PersistentMap extends AbstractMap<String,Object>
+    implements JsonSerializable
+{
+    static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+    private static final Object NOT_FOUND = new Object();
+
+    private final Node root;
+    private final int size;
+    private int deepHash;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    PersistentMap with(String key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        boolean[] added = new boolean[1];
+        Node node = (root == null) ? BitmapNode.EMPTY : root;
+        Node next = node.with(0, hash(key), key, value, added);
+        if (next == root) {
+            return this;
+        }
+        return new PersistentMap(next, added[0] ? size + 1 : size);
+    }
+
+    PersistentMap without(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node next = root.without(0, hash(key), key);
+        if (next == root) {
+            return this;
+        }
+        return (next == null) ? EMPTY : new PersistentMap(next, size - 1);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = find(key);
+        return (value == NOT_FOUND) ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != NOT_FOUND;
+    }
+
+    private Object find(Object key) {
+        if (root == null || key == null) {
+            return NOT_FOUND;
+        }
+        return root.find(0, hash(key), key);
+    }
+
+    /**
+     * Receives the members that differ between two maps, from diff().
+     */
+    interface Changes {
+        void removed(String key);
+
+        void added(String key, Object value);
+
+        /**
+         * key is in both maps, with values that are not the same object.
+         */
+        void changed(String key, Object from, Object to);
+    }
+
+    /**
+     * Tells changes about each member that differs between from and to.
+     * The two tries are walked together, and a subtree that both share is
+     * skipped without being looked at, so two versions of a map are
+     * compared in time proportional to the number of changed members, not
+     * to the size of the map.
+     */
+    static void diff(PersistentMap from, PersistentMap to, Changes changes) {
+        diff(from.root, to.root, 0, changes);
+    }
+
+    private static void diff(Node a, Node b, int shift, Changes changes) {
+        if (a == b) {
+            return;
+        }
+        if (!(a instanceof BitmapNode && b instanceof BitmapNode)
+            || shift >= 32)
+        {
+            diffMembers(a, b, shift, changes);
+            return;
+        }
+        BitmapNode x = (BitmapNode)a;
+        BitmapNode y = (BitmapNode)b;
+        int bits = x.bitmap | y.bitmap;
+        while (bits != 0) {
+            int bit = Integer.lowestOneBit(bits);
+            bits ^= bit;
+            Node p = null;
+            Node q = null;
+            if ((x.bitmap & bit) != 0) {
+                int i = x.index(bit);
+                Object k = x.array[i];
+                Object v = x.array[i + 1];
+                if ((y.bitmap & bit) != 0) {
+                    int j = y.index(bit);
+                    Object l = y.array[j];
+                    Object w = y.array[j + 1];
+                    if (k != null && l != null) {
+                        // Two members, which may have the same full hash,
+                        // so are compared here rather than pushed down.
+                        if (k.equals(l)) {
+                            if (v != w) {
+                                changes.changed((String)k, v, w);
+                            }
+                        } else {
+                            changes.removed((String)k);
+                            changes.added((String)l, w);
+                        }
+                        continue;
+                    }
+                    q = slot(shift + 5, l, w);
+                }
+                p = slot(shift + 5, k, v);
+            } else {
+                int j = y.index(bit);
+                q = slot(shift + 5, y.array[j], y.array[j + 1]);
+            }
+            diff(p, q, shift + 5, changes);
+        }
+    }
+
+    /**
+     * The slot of a bitmap node as a node at shift: its child, or a node
+     * holding just its member.
+     */
+    private static Node slot(int shift, Object key, Object value) {
+        if (key == null) {
+            return (Node)value;
+        }
+        return BitmapNode.EMPTY.with(
+            shift, hash(key), (String)key, value, new boolean[1]);
+    }
+
+    /**
+     * diff() for nodes that cannot be walked together, by looking each
+     * member of one up in the other. Either may be null.
+     */
+    private static void diffMembers(
+        Node a, Node b, int shift, Changes changes)
+    {
+        EntryIterator it = new EntryIterator(a);
+        while (it.advance()) {
+            Object value = (b == null)
+                ? NOT_FOUND
+                : b.find(shift, hash(it.key), it.key);
+            if (value == NOT_FOUND) {
+                changes.removed(it.key);
+            } else if (value != it.value) {
+                changes.changed(it.key, it.value, value);
+            }
+        }
+        it = new EntryIterator(b);
+        while (it.advance()) {
+            if (a == null || a.find(shift, hash(it.key), it.key) == NOT_FOUND) {
+                changes.added(it.key, it.value);
+            }
+        }
+    }
+
+    /**
+     * JsonThing::hashOf for this map, computed on first use and kept, as
+     * the map cannot change. Threads that race here compute the same value.
+     */
+    int deepHash() {
+        int h = deepHash;
+        if (h == 0) {
+            h = JsonThing.hashOfMap(this);
+            deepHash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                return new EntryIterator(root);
+            }
+        };
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        gen.writeStartObject(this, size);
+        EntryIterator it = new EntryIterator(root);
+        while (it.advance()) {
+            gen.writeFieldName(it.key);
+            if (it.value == null) {
+                gen.writeNull();
+            } else {
+                provider.defaultSerializeValue(it.value, gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+
+    /**
+     * A trie node. Its array holds key/value pairs; a null key means the
+     * value is a child node.
+     */
+    private abstract static class Node {
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node with(
+            int shift, int hash, String key, Object value, boolean[] added);
+
+        /**
+         * Returns this if key is absent, or null if the node would be left
+         * empty.
+         */
+        abstract Node without(int shift, int hash, Object key);
+
+        abstract Object[] array();
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int idx = index(bit);
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                return ((Node)v).find(shift + 5, hash, key);
+            }
+            return (k == key || k.equals(key)) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node with(
+            int shift, int hash, String key, Object value, boolean[] added)
+        {
+            int bit = bit(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] next = new Object[array.length + 2];
+                System.arraycopy(array, 0, next, 0, idx);
+                next[idx] = key;
+                next[idx + 1] = value;
+                System.arraycopy(
+                    array, idx, next, idx + 2, array.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, next);
+            }
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                Node child = ((Node)v).with(shift + 5, hash, key, value, added);
+                return (child == v) ? this : copyWith(idx, null, child);
+            }
+            if (k.equals(key)) {
+                return (v == value) ? this : copyWith(idx, k, value);
+            }
+            added[0] = true;
+            return copyWith(
+                idx, null, pair(shift + 5, (String)k, v, hash, key, value));
+        }
+
+        private BitmapNode copyWith(int idx, Object key, Object value) {
+            Object[] next = array.clone();
+            next[idx] = key;
+            next[idx + 1] = value;
+            return new BitmapNode(bitmap, next);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object k = array[idx];
+            Object v = array[idx + 1];
+            if (k == null) {
+                Node child = ((Node)v).without(shift + 5, hash, key);
+                if (child == v) {
+                    return this;
+                }
+                if (child != null) {
+                    return copyWith(idx, null, child);
+                }
+            } else if (!k.equals(key)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] next = new Object[array.length - 2];
+            System.arraycopy(array, 0, next, 0, idx);
+            System.arraycopy(
+                array, idx + 2, next, idx, array.length - idx - 2);
+            return new BitmapNode(bitmap ^ bit, next);
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+    }
+
+    /**
+     * Holds members whose keys have the same full hash.
+     */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            if (hash != this.hash) {
+                return NOT_FOUND;
+            }
+            int idx = indexOf(key);
+            return (idx < 0) ? NOT_FOUND : array[idx + 1];
+        }
+
+        @Override
+        Node with(
+            int shift, int hash, String key, Object value, boolean[] added)
+        {
+            if (hash != this.hash) {
+                return new BitmapNode(
+                    BitmapNode.bit(this.hash, shift), new Object[] {null, this})
+                    .with(shift, hash, key, value, added);
+            }
+            int idx = indexOf(key);
+            if (idx >= 0) {
+                if (array[idx + 1] == value) {
+                    return this;
+                }
+                Object[] next = array.clone();
+                next[idx + 1] = value;
+                return new CollisionNode(hash, next);
+            }
+            Object[] next = Arrays.copyOf(array, array.length + 2);
+            next[array.length] = key;
+            next[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, next);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int idx = (hash == this.hash) ? indexOf(key) : -1;
+            if (idx < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] next = new Object[array.length - 2];
+            System.arraycopy(array, 0, next, 0, idx);
+            System.arraycopy(
+                array, idx + 2, next, idx, array.length - idx - 2);
+            return new CollisionNode(hash, next);
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+    }
+
+    /**
+     * A node holding two members whose keys differ.
+     */
+    private static Node pair(
+        int shift,
+        String key1,
+        Object value1,
+        int hash2,
+        String key2,
+        Object value2)
+    {
+        int hash1 = hash(key1);
+        if (hash1 == hash2) {
+            return new CollisionNode(
+                hash1, new Object[] {key1, value1, key2, value2});
+        }
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY
+            .with(shift, hash1, key1, value1, added)
+            .with(shift, hash2, key2, value2, added);
+    }
+
+    /**
+     * Walks the trie depth first. A trie is at most seven bitmap nodes deep,
+     * plus a collision node.
+     */
+    private static final class EntryIterator
+        implements Iterator<Map.Entry<String,Object>>
+    {
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private boolean ready;
+
+        String key;
+        Object value;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root.array());
+            }
+        }
+
+        private void push(Object[] array) {
+            depth += 1;
+            arrays[depth] = array;
+            positions[depth] = 0;
+        }
+
+        /**
+         * Moves to the next member, returning false if there is none.
+         */
+        boolean advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int pos = positions[depth];
+                if (pos >= array.length) {
+                    arrays[depth] = null;
+                    depth -= 1;
+                    continue;
+                }
+                positions[depth] = pos + 2;
+                if (array[pos] == null) {
+                    push(((Node)array[pos + 1]).array());
+                } else {
+                    key = (String)array[pos];
+                    value = array[pos + 1];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                ready = advance();
+            }
+            return ready;
+        }
+
+        @Override
+        public Map.Entry<String,Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        }
+    }
+}
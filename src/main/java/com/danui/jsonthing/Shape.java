@@ -0,0 +1,150 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shape
+ *
+ * The ordered key set of a ShapedMap. Shapes are shared by every map with
+ * the same keys in the same order, and form a tree: each shape knows the
+ * shapes reached by adding one more key, so a map's shape can be found one
+ * key at a time as it is parsed or built.
+ *
+ * A key's slot is its position in the shape, which is also the index of its
+ * value in the map's value array.
+ *
+ * @author Jin
+ */
+final class Shape {
+
+    private final JsonShapes owner;
+    private final Shape parent;
+    private final String[] keys;
+    private final SerializedString[] names;
+
+    // Open addressed table from key to slot.
+    private final String[] table;
+    private final int[] slots;
+
+    private final ConcurrentHashMap<String,Shape> transitions =
+        new ConcurrentHashMap<>();
+
+    Shape(JsonShapes owner) {
+        this(owner, null, new String[0]);
+    }
+
+    private Shape(JsonShapes owner, Shape parent, String[] keys) {
+        this.owner = owner;
+        this.parent = parent;
+        this.keys = keys;
+        this.names = new SerializedString[keys.length];
+        int shared = 0;
+        if (parent != null) {
+            shared = parent.names.length;
+            System.arraycopy(parent.names, 0, names, 0, shared);
+        }
+        for (int i = shared; i < keys.length; i++) {
+            names[i] = new SerializedString(keys[i]);
+        }
+        int capacity = Integer.highestOneBit(Math.max(4, keys.length * 2)) * 2;
+        this.table = new String[capacity];
+        this.slots = new int[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            int idx = hash(keys[i]) & (capacity - 1);
+            while (table[idx] != null) {
+                idx = (idx + 1) & (capacity - 1);
+            }
+            table[idx] = keys[i];
+            slots[idx] = i;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String key(int slot) {
+        return keys[slot];
+    }
+
+    SerializedString name(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the slot of key, or -1 if the shape does not have it.
+     */
+    int slot(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int mask = table.length - 1;
+        int idx = hash(key) & mask;
+        String k;
+        while ((k = table[idx]) != null) {
+            if (k == key || k.equals(key)) {
+                return slots[idx];
+            }
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the shape with key added at the end, or null if the owner has
+     * run out of room for new shapes or this shape has MAX_KEYS keys.
+     */
+    Shape with(String key) {
+        return with(key, false);
+    }
+
+    private Shape with(String key, boolean force) {
+        Shape next = transitions.get(key);
+        if (next != null) {
+            return next;
+        }
+        if (keys.length >= JsonShapes.MAX_KEYS && !force) {
+            return null;
+        }
+        // Runs at most once per key, so threads racing to add the same
+        // shape reserve room for it once.
+        return transitions.computeIfAbsent(key.intern(), k -> {
+            if (!owner.reserve() && !force) {
+                return null;
+            }
+            String[] nextKeys = Arrays.copyOf(keys, keys.length + 1);
+            nextKeys[keys.length] = k;
+            return new Shape(owner, this, nextKeys);
+        });
+    }
+
+    /**
+     * Returns the shape with the key in slot removed. Removing keys is
+     * allowed to go past the owner's limit on shapes, so never fails.
+     */
+    Shape without(int slot) {
+        Shape shape = this;
+        for (int i = keys.length - 1; i >= slot; i--) {
+            shape = shape.parent;
+        }
+        for (int i = slot + 1; i < keys.length; i++) {
+            shape = shape.with(keys[i], true);
+        }
+        return shape;
+    }
+
+    Shape root() {
+        Shape shape = this;
+        while (shape.parent != null) {
+            shape = shape.parent;
+        }
+        return shape;
+    }
+}
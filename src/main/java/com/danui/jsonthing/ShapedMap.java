@@ -0,0 +1,286 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * ShapedMap
+ *
+ * A Map made of a shared Shape, which holds the keys, and an array of
+ * values indexed by slot. Maps with the same keys share one Shape, so each
+ * map costs little more than its value array. Members keep the order in
+ * which they were added, as with a LinkedHashMap.
+ *
+ * If its JsonShapes runs out of room for new shapes, the map moves over to a
+ * LinkedHashMap for good.
+ *
+ * @author Jin
+ */
+final class ShapedMap extends AbstractMap<String,Object>
+    implements JsonSerializable
+{
+    private Shape shape;
+    private Object[] values;
+    private LinkedHashMap<String,Object> spilled;
+    private int modCount;
+
+    ShapedMap(Shape shape, Object[] values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    boolean isShaped() {
+        return spilled == null;
+    }
+
+    /**
+     * Drops any spare room in the value array.
+     */
+    void trim() {
+        if (spilled == null && values.length > shape.size()) {
+            values = Arrays.copyOf(values, shape.size());
+        }
+    }
+
+    private void spill() {
+        LinkedHashMap<String,Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < shape.size(); i++) {
+            map.put(shape.key(i), values[i]);
+        }
+        spilled = map;
+        shape = null;
+        values = null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (spilled != null) {
+            return spilled.get(key);
+        }
+        int slot = shape.slot(key);
+        return (slot < 0) ? null : values[slot];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (spilled != null) {
+            return spilled.containsKey(key);
+        }
+        return shape.slot(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return (spilled != null) ? spilled.size() : shape.size();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (spilled == null) {
+            int slot = shape.slot(key);
+            if (slot >= 0) {
+                Object old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            Shape next = shape.with(key);
+            if (next != null) {
+                int n = shape.size();
+                if (values.length == n) {
+                    values = Arrays.copyOf(values, Math.max(4, n * 2));
+                }
+                values[n] = value;
+                shape = next;
+                modCount += 1;
+                return null;
+            }
+            spill();
+        }
+        modCount += 1;
+        return spilled.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (spilled == null) {
+            int slot = shape.slot(key);
+            if (slot < 0) {
+                return null;
+            }
+            Object old = values[slot];
+            int n = shape.size();
+            System.arraycopy(values, slot + 1, values, slot, n - slot - 1);
+            values[n - 1] = null;
+            shape = shape.without(slot);
+            modCount += 1;
+            return old;
+        }
+        modCount += 1;
+        return spilled.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        if (spilled != null) {
+            spilled.clear();
+        } else {
+            shape = shape.root();
+            values = new Object[0];
+        }
+        modCount += 1;
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String,Object>>() {
+            @Override
+            public int size() {
+                return ShapedMap.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator() {
+                if (spilled != null) {
+                    return spilled.entrySet().iterator();
+                }
+                return new EntryIterator();
+            }
+        };
+    }
+
+    private final class EntryIterator
+        implements Iterator<Map.Entry<String,Object>>
+    {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size();
+        }
+
+        @Override
+        public Map.Entry<String,Object> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= shape.size()) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new Entry(shape, last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            ShapedMap.this.remove(shape.key(last));
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class Entry implements Map.Entry<String,Object> {
+        private final Shape entryShape;
+        private final int slot;
+
+        Entry(Shape entryShape, int slot) {
+            this.entryShape = entryShape;
+            this.slot = slot;
+        }
+
+        @Override
+        public String getKey() {
+            return entryShape.key(slot);
+        }
+
+        @Override
+        public Object getValue() {
+            return (shape == entryShape) ? values[slot] : get(getKey());
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            if (shape == entryShape) {
+                Object old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            return put(getKey(), value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Object value = getValue();
+            return getKey().equals(e.getKey())
+                && (value == null
+                    ? e.getValue() == null
+                    : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider)
+        throws IOException
+    {
+        if (spilled != null) {
+            provider.defaultSerializeValue(spilled, gen);
+            return;
+        }
+        gen.writeStartObject(this);
+        for (int i = 0, n = shape.size(); i < n; i++) {
+            gen.writeFieldName(shape.name(i));
+            Object value = values[i];
+            if (value == null) {
+                gen.writeNull();
+            } else {
+                provider.defaultSerializeValue(value, gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(
+        JsonGenerator gen,
+        SerializerProvider provider,
+        TypeSerializer typeSer)
+        throws IOException
+    {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,153 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.deser.std.UntypedObjectDeserializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * ThingDeserializer
+ *
+ * Deserializes untyped JSON the way Jackson does by default, except that
+ * arrays made up entirely of integers, or entirely of floating point numbers,
+ * become a LongList or DoubleList instead of an ArrayList of boxed numbers,
+ * unless compactNumbers is off. When given JsonShapes, objects become
+ * ShapedMaps of those shapes.
+ *
+ * @author Jin
+ */
+final class ThingDeserializer extends UntypedObjectDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient JsonShapes shapes;
+    private final boolean compactNumbers;
+
+    ThingDeserializer(JsonShapes shapes, boolean compactNumbers) {
+        super(null, null);
+        this.shapes = shapes;
+        this.compactNumbers = compactNumbers;
+    }
+
+    @Override
+    protected Object mapObject(JsonParser p, DeserializationContext ctxt)
+        throws IOException
+    {
+        if (shapes == null) {
+            return super.mapObject(p, ctxt);
+        }
+        JsonToken t = p.currentToken();
+        String key;
+        if (t == JsonToken.START_OBJECT) {
+            key = p.nextFieldName();
+        } else if (t == JsonToken.FIELD_NAME) {
+            key = p.getCurrentName();
+        } else {
+            key = null;
+        }
+        Shape shape = shapes.root();
+        Object[] values = new Object[8];
+        while (key != null) {
+            p.nextToken();
+            Object value = deserialize(p, ctxt);
+            int slot = shape.slot(key);
+            if (slot < 0) {
+                Shape next = shape.with(key);
+                if (next == null) {
+                    ShapedMap map = new ShapedMap(shape, values);
+                    map.put(key, value);
+                    while ((key = p.nextFieldName()) != null) {
+                        p.nextToken();
+                        map.put(key, deserialize(p, ctxt));
+                    }
+                    return map;
+                }
+                slot = shape.size();
+                shape = next;
+                if (slot == values.length) {
+                    values = Arrays.copyOf(values, slot * 2);
+                }
+            }
+            values[slot] = value;
+            key = p.nextFieldName();
+        }
+        int n = shape.size();
+        return new ShapedMap(
+            shape, (values.length == n) ? values : Arrays.copyOf(values, n));
+    }
+
+    @Override
+    protected Object mapArray(JsonParser p, DeserializationContext ctxt)
+        throws IOException
+    {
+        if (!compactNumbers
+            || ctxt.hasSomeOfFeatures(F_MASK_INT_COERCIONS)
+            || ctxt.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+        {
+            return super.mapArray(p, ctxt);
+        }
+        JsonToken t = p.nextToken();
+        if (isLong(p, t)) {
+            long[] values = new long[8];
+            int n = 0;
+            do {
+                if (n == values.length) {
+                    values = Arrays.copyOf(values, n * 2);
+                }
+                values[n++] = p.getLongValue();
+                t = p.nextToken();
+            } while (isLong(p, t));
+            if (t == JsonToken.END_ARRAY) {
+                return new LongList(values, n);
+            }
+            ArrayList<Object> list = new ArrayList<>(n + 8);
+            for (int i = 0; i < n; i++) {
+                list.add(LongList.box(values[i]));
+            }
+            return mapRest(p, ctxt, t, list);
+        }
+        if (t == JsonToken.VALUE_NUMBER_FLOAT) {
+            double[] values = new double[8];
+            int n = 0;
+            do {
+                if (n == values.length) {
+                    values = Arrays.copyOf(values, n * 2);
+                }
+                values[n++] = p.getDoubleValue();
+                t = p.nextToken();
+            } while (t == JsonToken.VALUE_NUMBER_FLOAT);
+            if (t == JsonToken.END_ARRAY) {
+                return new DoubleList(values, n);
+            }
+            ArrayList<Object> list = new ArrayList<>(n + 8);
+            for (int i = 0; i < n; i++) {
+                list.add(values[i]);
+            }
+            return mapRest(p, ctxt, t, list);
+        }
+        return mapRest(p, ctxt, t, new ArrayList<>());
+    }
+
+    private static boolean isLong(JsonParser p, JsonToken t) throws IOException {
+        return (t == JsonToken.VALUE_NUMBER_INT)
+            && (p.getNumberType() != JsonParser.NumberType.BIG_INTEGER);
+    }
+
+    private Object mapRest(
+        JsonParser p,
+        DeserializationContext ctxt,
+        JsonToken t,
+        ArrayList<Object> list)
+        throws IOException
+    {
+        while (t != JsonToken.END_ARRAY) {
+            list.add(deserialize(p, ctxt));
+            t = p.nextToken();
+        }
+        return list;
+    }
+}
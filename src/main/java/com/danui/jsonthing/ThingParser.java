@@ -0,0 +1,442 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonTokenId;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * ThingParser
+ *
+ * Builds JsonThing's values straight from a JsonParser's tokens, without
+ * going through databind. It produces exactly what ThingDeserializer does:
+ * LinkedHashMaps (or ShapedMaps), ArrayLists, LongLists and DoubleLists,
+ * Strings, Integers, Longs, BigIntegers, Doubles (or BigDecimals),
+ * Booleans and nulls.
+ *
+ * The members of a container are collected on a stack shared by the whole
+ * parse, and only put into a collection once the container ends, so every
+ * collection is created at its final size. Small integers are boxed from a
+ * cache.
+ *
+ * @author Jin
+ */
+final class ThingParser {
+
+    private static final int INT_CACHE_LOW = -128;
+    private static final int INT_CACHE_HIGH = 1023;
+    private static final Integer[] INTS =
+        new Integer[INT_CACHE_HIGH - INT_CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < INTS.length; i++) {
+            INTS[i] = Integer.valueOf(INT_CACHE_LOW + i);
+        }
+    }
+
+    static Integer box(int value) {
+        if (value >= INT_CACHE_LOW && value <= INT_CACHE_HIGH) {
+            return INTS[value - INT_CACHE_LOW];
+        }
+        return value;
+    }
+
+    private final JsonShapes shapes;
+    private final boolean compactNumbers;
+    private final boolean bigDecimals;
+
+    ThingParser(JsonShapes shapes, boolean compactNumbers, boolean bigDecimals) {
+        this.shapes = shapes;
+        // As in ThingDeserializer, exact decimals turn compaction off.
+        this.compactNumbers = compactNumbers && !bigDecimals;
+        this.bigDecimals = bigDecimals;
+    }
+
+    /**
+     * Reads the first value of the input. Like databind, fails on empty
+     * input and ignores anything after the value.
+     */
+    Object readRoot(JsonParser p) throws IOException {
+        return new Reader(p).root();
+    }
+
+    /**
+     * Reads the value that starts at the parser's current token.
+     */
+    Object read(JsonParser p) throws IOException {
+        return new Reader(p).value(p.currentToken());
+    }
+
+    Reader reader(JsonParser p) {
+        return new Reader(p);
+    }
+
+    Assembler assembler() {
+        return new Assembler();
+    }
+
+    /**
+     * Reads the scalar value of token t.
+     */
+    private Object scalar(JsonParser p, JsonToken t) throws IOException {
+        switch (t.id()) {
+        case JsonTokenId.ID_STRING:
+            return p.getText();
+        case JsonTokenId.ID_NUMBER_INT:
+            switch (p.getNumberType()) {
+            case INT:
+                return box(p.getIntValue());
+            case LONG:
+                return p.getLongValue();
+            default:
+                return p.getBigIntegerValue();
+            }
+        case JsonTokenId.ID_NUMBER_FLOAT:
+            if (bigDecimals) {
+                return p.getDecimalValue();
+            }
+            return p.getDoubleValue();
+        case JsonTokenId.ID_TRUE:
+            return Boolean.TRUE;
+        case JsonTokenId.ID_FALSE:
+            return Boolean.FALSE;
+        case JsonTokenId.ID_NULL:
+            return null;
+        case JsonTokenId.ID_EMBEDDED_OBJECT:
+            return p.getEmbeddedObject();
+        default:
+            throw MismatchedInputException.from(
+                p, Object.class, "Unexpected token " + t);
+        }
+    }
+
+    /**
+     * A LinkedHashMap of the key value pairs in stack from base to top.
+     */
+    private static Object map(Object[] stack, int base, int top) {
+        int n = (top - base) / 2;
+        LinkedHashMap<String,Object> map =
+            new LinkedHashMap<>((n < 3) ? n + 1 : (int)(n / 0.75f) + 1);
+        for (int i = base; i < top; i += 2) {
+            map.put((String)stack[i], stack[i + 1]);
+        }
+        return map;
+    }
+
+    /**
+     * Reads one value. Keeps track of how deeply nested it was.
+     */
+    final class Reader {
+        private final JsonParser p;
+        private Object[] stack = new Object[32];
+        private int top;
+        private int depth;
+        private int maxDepth;
+
+        private Reader(JsonParser p) {
+            this.p = p;
+        }
+
+        /**
+         * The deepest nesting of containers read so far: 0 for a scalar, 1
+         * for a map or list of scalars, and so on.
+         */
+        int maxDepth() {
+            return maxDepth;
+        }
+
+        Object root() throws IOException {
+            JsonToken t = p.nextToken();
+            if (t == null) {
+                throw MismatchedInputException.from(
+                    p, Object.class, "No content to map due to end-of-input");
+            }
+            return value(t);
+        }
+
+        private void push(Object value) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = value;
+        }
+
+        Object value(JsonToken t) throws IOException {
+            switch (t.id()) {
+            case JsonTokenId.ID_START_OBJECT:
+            case JsonTokenId.ID_START_ARRAY:
+                if (++depth > maxDepth) {
+                    maxDepth = depth;
+                }
+                Object container = (t == JsonToken.START_ARRAY)
+                    ? array()
+                    : (shapes != null) ? shapedObject() : object();
+                depth -= 1;
+                return container;
+            default:
+                return scalar(p, t);
+            }
+        }
+
+        private boolean isLong(JsonToken t) throws IOException {
+            return (t == JsonToken.VALUE_NUMBER_INT)
+                && (p.getNumberType() != JsonParser.NumberType.BIG_INTEGER);
+        }
+
+        private Object object() throws IOException {
+            int base = top;
+            String key;
+            while ((key = p.nextFieldName()) != null) {
+                push(key);
+                push(value(p.nextToken()));
+            }
+            Object map = map(stack, base, top);
+            top = base;
+            return map;
+        }
+
+        private Object shapedObject() throws IOException {
+            Shape shape = shapes.root();
+            int base = top;
+            String key;
+            while ((key = p.nextFieldName()) != null) {
+                Object value = value(p.nextToken());
+                int slot = shape.slot(key);
+                if (slot >= 0) {
+                    stack[base + slot] = value;
+                    continue;
+                }
+                Shape next = shape.with(key);
+                if (next == null) {
+                    ShapedMap map = new ShapedMap(
+                        shape, Arrays.copyOfRange(stack, base, top));
+                    top = base;
+                    map.put(key, value);
+                    while ((key = p.nextFieldName()) != null) {
+                        map.put(key, value(p.nextToken()));
+                    }
+                    return map;
+                }
+                shape = next;
+                push(value);
+            }
+            ShapedMap map =
+                new ShapedMap(shape, Arrays.copyOfRange(stack, base, top));
+            top = base;
+            return map;
+        }
+
+        private Object array() throws IOException {
+            JsonToken t = p.nextToken();
+            int base = top;
+            if (compactNumbers && isLong(t)) {
+                long[] values = new long[8];
+                int n = 0;
+                do {
+                    if (n == values.length) {
+                        values = Arrays.copyOf(values, n * 2);
+                    }
+                    values[n++] = p.getLongValue();
+                    t = p.nextToken();
+                } while (isLong(t));
+                if (t == JsonToken.END_ARRAY) {
+                    return new LongList(values, n);
+                }
+                for (int i = 0; i < n; i++) {
+                    long value = values[i];
+                    push((value == (int)value) ? box((int)value) : (Object)value);
+                }
+            } else if (compactNumbers && t == JsonToken.VALUE_NUMBER_FLOAT) {
+                double[] values = new double[8];
+                int n = 0;
+                do {
+                    if (n == values.length) {
+                        values = Arrays.copyOf(values, n * 2);
+                    }
+                    values[n++] = p.getDoubleValue();
+                    t = p.nextToken();
+                } while (t == JsonToken.VALUE_NUMBER_FLOAT);
+                if (t == JsonToken.END_ARRAY) {
+                    return new DoubleList(values, n);
+                }
+                for (int i = 0; i < n; i++) {
+                    push(values[i]);
+                }
+            }
+            while (t != JsonToken.END_ARRAY) {
+                push(value(t));
+                t = p.nextToken();
+            }
+            ArrayList<Object> list = new ArrayList<>(top - base);
+            for (int i = base; i < top; i++) {
+                list.add(stack[i]);
+            }
+            top = base;
+            return list;
+        }
+    }
+
+    /**
+     * Builds values from tokens pushed to it one at a time, as they become
+     * available from a non-blocking parser. Produces the same values as
+     * Reader does.
+     */
+    final class Assembler {
+        private Object[] stack = new Object[32];
+        private int top;
+        private int[] bases = new int[16];
+        private int depth;
+        private int maxDepth;
+        private Object value;
+
+        private void push(Object value) {
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = value;
+        }
+
+        /**
+         * True if a value has been started but not finished.
+         */
+        boolean isPartial() {
+            return depth > 0;
+        }
+
+        /**
+         * Adds the token p is on. Returns true if it finished a value,
+         * which take() then returns.
+         */
+        boolean token(JsonParser p, JsonToken t) throws IOException {
+            switch (t.id()) {
+            case JsonTokenId.ID_START_OBJECT:
+            case JsonTokenId.ID_START_ARRAY:
+                if (depth == bases.length) {
+                    bases = Arrays.copyOf(bases, depth * 2);
+                }
+                bases[depth++] = top;
+                if (depth > maxDepth) {
+                    maxDepth = depth;
+                }
+                return false;
+            case JsonTokenId.ID_FIELD_NAME:
+                push(p.getCurrentName());
+                return false;
+            case JsonTokenId.ID_END_OBJECT: {
+                int base = bases[--depth];
+                Object map = (shapes != null)
+                    ? shaped(base)
+                    : map(stack, base, top);
+                Arrays.fill(stack, base, top, null);
+                top = base;
+                return add(map);
+            }
+            case JsonTokenId.ID_END_ARRAY: {
+                int base = bases[--depth];
+                Object list = list(base);
+                Arrays.fill(stack, base, top, null);
+                top = base;
+                return add(list);
+            }
+            default:
+                return add(scalar(p, t));
+            }
+        }
+
+        private boolean add(Object value) {
+            if (depth > 0) {
+                push(value);
+                return false;
+            }
+            this.value = value;
+            return true;
+        }
+
+        /**
+         * The value just finished.
+         */
+        Object take() {
+            Object taken = value;
+            value = null;
+            return taken;
+        }
+
+        /**
+         * The deepest nesting of the value just finished, as
+         * Reader::maxDepth. Starts again from 0.
+         */
+        int takeMaxDepth() {
+            int taken = maxDepth;
+            maxDepth = 0;
+            return taken;
+        }
+
+        private Object list(int base) {
+            int n = top - base;
+            if (compactNumbers && n > 0) {
+                boolean longs = true;
+                boolean doubles = true;
+                for (int i = base; i < top && (longs || doubles); i++) {
+                    Object x = stack[i];
+                    longs &= (x instanceof Integer) || (x instanceof Long);
+                    doubles &= (x instanceof Double);
+                }
+                if (longs) {
+                    long[] values = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        values[i] = ((Number)stack[base + i]).longValue();
+                    }
+                    return new LongList(values, n);
+                }
+                if (doubles) {
+                    double[] values = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        values[i] = (Double)stack[base + i];
+                    }
+                    return new DoubleList(values, n);
+                }
+            }
+            ArrayList<Object> list = new ArrayList<>(n);
+            for (int i = base; i < top; i++) {
+                list.add(stack[i]);
+            }
+            return list;
+        }
+
+        private Object shaped(int base) {
+            Shape shape = shapes.root();
+            Object[] values = new Object[(top - base) / 2];
+            int n = 0;
+            ShapedMap spilled = null;
+            for (int i = base; i < top; i += 2) {
+                String key = (String)stack[i];
+                Object value = stack[i + 1];
+                if (spilled != null) {
+                    spilled.put(key, value);
+                    continue;
+                }
+                int slot = shape.slot(key);
+                if (slot >= 0) {
+                    values[slot] = value;
+                    continue;
+                }
+                Shape next = shape.with(key);
+                if (next == null) {
+                    spilled = new ShapedMap(shape, Arrays.copyOf(values, n));
+                    spilled.put(key, value);
+                    continue;
+                }
+                shape = next;
+                values[n++] = value;
+            }
+            if (spilled != null) {
+                return spilled;
+            }
+            return new ShapedMap(shape, Arrays.copyOf(values, n));
+        }
+    }
+}
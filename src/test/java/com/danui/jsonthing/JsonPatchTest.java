@@ -0,0 +1,412 @@
+package com.danui.jsonthing;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonPatchTest
+ *
+ * R10xx JSON Patch
+ *
+ * - R1001 JsonThing::apply with the result of JsonThing::diff turns one
+ *   thing into the other.
+ *
+ * - R1002 JsonThing::diff gives one operation per changed value, with keys
+ *   escaped as per RFC 6901, and one per element inserted into or removed
+ *   from a list.
+ *
+ * - R1003 JsonThing::diff does not look inside parts that both things
+ *   share.
+ *
+ * - R1004 JsonThing::apply supports add, remove, replace, move, copy and
+ *   test, and throws IllegalArgumentException for operations that cannot
+ *   be applied.
+ *
+ * - R1005 JsonThing::apply copies values out of the patch.
+ *
+ * - R1006 JsonThing::diff and JsonThing::mergeDiff of two versions of a
+ *   frozen map give the same patch as for the same maps unfrozen.
+ *
+ * R20xx JSON Merge Patch
+ *
+ * - R2001 JsonThing::merge applies merge patches as per RFC 7396.
+ *
+ * - R2002 JsonThing::merge with the result of JsonThing::mergeDiff turns
+ *   one thing into the other.
+ *
+ * @author Jin
+ */
+public class JsonPatchTest {
+
+    private static JsonThing json(String json) throws Exception {
+        return JsonThing.parse(json.replace('\'', '"'));
+    }
+
+    private static Object randomValue(Random r, int depth) {
+        switch (r.nextInt(depth > 3 ? 4 : 6)) {
+        case 0:
+            return r.nextInt(5);
+        case 1:
+            return "s" + r.nextInt(3);
+        case 2:
+            return r.nextBoolean() ? null : 1.5;
+        case 3:
+            return (long)Integer.MAX_VALUE + r.nextInt(3);
+        case 4: {
+            JsonThing map = JsonThing.newMap();
+            for (int i = 0, n = r.nextInt(5); i < n; i++) {
+                map.put("k" + r.nextInt(6), randomValue(r, depth + 1));
+            }
+            return map.asObject();
+        }
+        default: {
+            JsonThing list = JsonThing.newList();
+            for (int i = 0, n = r.nextInt(5); i < n; i++) {
+                list.add(randomValue(r, depth + 1));
+            }
+            return list.asObject();
+        }
+        }
+    }
+
+    /**
+     * Makes a few random changes somewhere inside value.
+     */
+    private static Object mutate(Random r, Object value, int depth) {
+        if (r.nextInt(4) == 0) {
+            return randomValue(r, depth);
+        }
+        if (value instanceof Map) {
+            Map<String,Object> map = (Map<String,Object>)value;
+            String key = "k" + r.nextInt(6);
+            if (r.nextBoolean()) {
+                map.remove(key);
+            } else {
+                map.put(key, mutate(r, map.get(key), depth + 1));
+            }
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>)value;
+            int i = r.nextInt(list.size() + 1);
+            if (i == list.size() || r.nextInt(3) == 0) {
+                list.add(i, randomValue(r, depth + 1));
+            } else if (r.nextBoolean()) {
+                list.remove(i);
+            } else {
+                list.set(i, mutate(r, list.get(i), depth + 1));
+            }
+        }
+        return value;
+    }
+
+    // - R1001 JsonThing::apply with the result of JsonThing::diff turns one
+    //   thing into the other.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        Random r = new Random(6902);
+        for (int i = 0; i < 2000; i++) {
+            JsonThing from = JsonThing.wrap(randomValue(r, 0));
+            JsonThing to = JsonThing.parse(from.toJson());
+            for (int j = 0, n = 1 + r.nextInt(3); j < n; j++) {
+                to = JsonThing.wrap(mutate(r, to.asObject(), 0));
+            }
+            String expected = to.toJson();
+            JsonThing patch = JsonThing.diff(from, to);
+            JsonThing patched = from.apply(JsonThing.parse(patch.toJson()));
+            assertEquals(patch.toJson(),
+                JsonThing.parse(expected).asObject(),
+                JsonThing.parse(patched.toJson()).asObject());
+            assertEquals(0, JsonThing.diff(patched, to).asList().size());
+        }
+        JsonThing frozen = json("{'a':{'b':[1,2]},'c':1}").freeze();
+        JsonThing changed = frozen.with("c", 2);
+        assertEquals("[{\"op\":\"replace\",\"path\":\"/c\",\"value\":2}]",
+            JsonThing.diff(frozen, changed).toJson());
+        assertEquals("[]", JsonThing.diff(frozen, frozen).toJson());
+        assertEquals("[]",
+            JsonThing.diff(json("[1,2]"), JsonThing.newLongList(1, 2))
+                .toJson());
+    }
+
+    // - R1002 JsonThing::diff gives one operation per changed value, with
+    //   keys escaped as per RFC 6901, and one per element inserted into or
+    //   removed from a list.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        assertEquals(
+            json("[{'op':'replace','path':'/a~1b/c~0d','value':2}]").asObject(),
+            JsonThing.diff(
+                json("{'a/b':{'c~d':1,'e':[1]}}"),
+                json("{'a/b':{'c~d':2,'e':[1]}}")).asObject());
+        assertEquals(
+            json("[{'op':'add','path':'/0','value':{'x':0}}]").asObject(),
+            JsonThing.diff(
+                json("[{'x':1},{'x':2},{'x':3}]"),
+                json("[{'x':0},{'x':1},{'x':2},{'x':3}]")).asObject());
+        assertEquals(
+            json("[{'op':'remove','path':'/1'},{'op':'remove','path':'/1'}]")
+                .asObject(),
+            JsonThing.diff(json("[1,2,3,4]"), json("[1,4]")).asObject());
+        assertEquals(
+            json("[{'op':'remove','path':'/a'},"
+                + "{'op':'add','path':'/b','value':null}]").asObject(),
+            JsonThing.diff(json("{'a':1}"), json("{'b':null}")).asObject());
+        assertEquals(
+            json("[{'op':'replace','path':'','value':[1]}]").asObject(),
+            JsonThing.diff(json("{'a':1}"), json("[1]")).asObject());
+        assertEquals(
+            json("[{'op':'replace','path':'/a','value':1.5}]").asObject(),
+            JsonThing.diff(json("{'a':1}"), json("{'a':1.5}")).asObject());
+        assertEquals("[]",
+            JsonThing.diff(json("{'a':1}"), json("{'a':1.0}")).toJson());
+    }
+
+    /**
+     * A map that fails if anything but its size is read.
+     */
+    private static final class Untouchable extends AbstractMap<String,Object> {
+        @Override
+        public Set<Map.Entry<String,Object>> entrySet() {
+            throw new AssertionError("looked inside a shared part");
+        }
+    }
+
+    // - R1003 JsonThing::diff does not look inside parts that both things
+    //   share.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        Untouchable shared = new Untouchable();
+        JsonThing from = JsonThing.newMap()
+            .put("shared", shared)
+            .put("list", JsonThing.newList().add(shared).add(1))
+            .put("n", 1);
+        JsonThing to = JsonThing.newMap()
+            .put("shared", shared)
+            .put("list", JsonThing.newList().add(shared).add(2))
+            .put("n", 1);
+        assertEquals(
+            json("[{'op':'replace','path':'/list/1','value':2}]").asObject(),
+            JsonThing.diff(from, to).asObject());
+        JsonThing merge = JsonThing.mergeDiff(from, to);
+        assertEquals(1, merge.asMap().size());
+        assertSame(to.getObject("list"), merge.getObject("list"));
+    }
+
+    // - R1004 JsonThing::apply supports add, remove, replace, move, copy and
+    //   test, and throws IllegalArgumentException for operations that cannot
+    //   be applied.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        JsonThing thing = json("{'a':{'b':[1,2]},'c':'d'}");
+        JsonThing result = thing.apply(json("["
+            + "{'op':'test','path':'/a/b/1','value':2},"
+            + "{'op':'add','path':'/a/b/-','value':3},"
+            + "{'op':'add','path':'/a/b/0','value':0},"
+            + "{'op':'remove','path':'/a/b/1'},"
+            + "{'op':'replace','path':'/c','value':{'e':null}},"
+            + "{'op':'move','from':'/c','path':'/a/f'},"
+            + "{'op':'copy','from':'/a/b','path':'/g'},"
+            + "{'op':'add','path':'/h~1i','value':1},"
+            + "{'op':'test','path':'/g','value':[0,2,3]}"
+            + "]"));
+        assertSame(thing, result);
+        assertEquals(
+            json("{'a':{'b':[0,2,3],'f':{'e':null}},'g':[0,2,3],'h/i':1}")
+                .asObject(),
+            thing.asObject());
+        assertNotSame(thing.getObject("a", "b"), thing.getObject("g"));
+
+        assertEquals(json("[1]").asObject(), thing.apply(
+            json("[{'op':'replace','path':'','value':[1]}]")).asObject());
+
+        String[] bad = {
+            "[{'op':'test','path':'/a/b/0','value':1}]",
+            "[{'op':'remove','path':'/nope'}]",
+            "[{'op':'replace','path':'/nope','value':1}]",
+            "[{'op':'add','path':'/a/b/4','value':1}]",
+            "[{'op':'add','path':'/a/b/01','value':1}]",
+            "[{'op':'add','path':'/a/nope/x','value':1}]",
+            "[{'op':'add','path':'a','value':1}]",
+            "[{'op':'add','path':'/x'}]",
+            "[{'op':'move','from':'/a','path':'/a/x'}]",
+            "[{'op':'jump','path':'/a'}]",
+            "[{'path':'/a'}]",
+            "[1]",
+            "[{'op':'remove','path':''}]",
+        };
+        for (String patch : bad) {
+            JsonThing target = json("{'a':{'b':[0,2,3]}}");
+            try {
+                target.apply(json(patch));
+                fail("Expected IllegalArgumentException for " + patch);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(),
+                    e.getMessage().startsWith("JSON patch operation 0"));
+            }
+            assertEquals(patch, json("{'a':{'b':[0,2,3]}}").asObject(),
+                target.asObject());
+        }
+    }
+
+    // - R1005 JsonThing::apply copies values out of the patch.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonThing thing = JsonThing.newMap();
+        JsonThing patch = json("[{'op':'add','path':'/a','value':{'b':[1]}}]");
+        thing.apply(patch);
+        patch.get(0).get("value").get("b").add(2);
+        assertEquals("{\"a\":{\"b\":[1]}}", thing.toJson());
+        thing.get("a").get("b").add(3);
+        assertEquals("{\"a\":{\"b\":[1,3]}}", thing.toJson());
+    }
+
+    // - R1006 JsonThing::diff and JsonThing::mergeDiff of two versions of a
+    //   frozen map give the same patch as for the same maps unfrozen.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        JsonThing plain = JsonThing.newMap()
+            .put("nested", json("{'a':1,'b':[1]}"));
+        for (int i = 0; i < 3000; i++) {
+            plain.put("k" + i, i);
+        }
+        // "Aa" and "BB" have the same hash, so these keys all collide.
+        String[] halves = {"Aa", "BB"};
+        String[] colliding = new String[8];
+        for (int i = 0; i < colliding.length; i++) {
+            colliding[i] =
+                halves[i & 1] + halves[(i >> 1) & 1] + halves[(i >> 2) & 1];
+            plain.put(colliding[i], i);
+        }
+        JsonThing frozen = plain.freeze();
+        Random r = new Random(1006);
+        for (int round = 0; round < 300; round++) {
+            JsonThing to = frozen;
+            JsonThing expected = plain.deepCopy();
+            for (int c = 0, n = 1 + r.nextInt(4); c < n; c++) {
+                String key;
+                switch (r.nextInt(4)) {
+                case 0:
+                    key = colliding[r.nextInt(colliding.length)];
+                    break;
+                case 1:
+                    key = "nested";
+                    break;
+                default:
+                    key = "k" + r.nextInt(3500);
+                    break;
+                }
+                if (key.equals("nested") && to.asMap().containsKey(key)) {
+                    Object value = r.nextInt(3);
+                    to = to.with(key, to.get(key).with("a", value));
+                    expected.get(key).put("a", value);
+                } else if (r.nextInt(3) == 0) {
+                    to = to.without(key);
+                    expected.asMap().remove(key);
+                } else {
+                    Object value = r.nextBoolean()
+                        ? r.nextInt(3)
+                        : JsonThing.newMap().put("v", r.nextInt(3));
+                    to = to.with(key, value);
+                    expected.put(key, value);
+                }
+            }
+            List<Object> ops = JsonThing.diff(frozen, to).asList();
+            assertEquals(
+                new HashSet<>(JsonThing.diff(plain, expected).asList()),
+                new HashSet<>(ops));
+            assertEquals(expected, plain.deepCopy().apply(JsonThing.wrap(ops)));
+            assertEquals(
+                JsonThing.mergeDiff(plain, expected),
+                JsonThing.mergeDiff(frozen, to));
+        }
+
+        // Different keys with the same hash, alone and next to a member
+        // or a collision node in the other map.
+        String[][][] pairs = {
+            {{"Aa"}, {"BB"}},
+            {{"Aa", "BBBB"}, {"BB"}},
+            {{"Aa"}, {"BB", "AaAa", "AaBB"}},
+            {{"AaAa", "BBBB"}, {"AaBB", "BBAa"}},
+        };
+        for (String[][] pair : pairs) {
+            JsonThing a = JsonThing.newMap();
+            JsonThing b = JsonThing.newMap();
+            for (String key : pair[0]) {
+                a.put(key, 1);
+            }
+            for (String key : pair[1]) {
+                b.put(key, 1);
+            }
+            assertEquals(
+                new HashSet<>(JsonThing.diff(a, b).asList()),
+                new HashSet<>(JsonThing.diff(a.freeze(), b.freeze()).asList()));
+            assertEquals(
+                JsonThing.mergeDiff(a, b),
+                JsonThing.mergeDiff(a.freeze(), b.freeze()));
+        }
+    }
+
+    // - R2001 JsonThing::merge applies merge patches as per RFC 7396.
+    //
+    @Test
+    public void test_R2001() throws Exception {
+        String[][] cases = {
+            {"{'a':'b'}", "{'a':'c'}", "{'a':'c'}"},
+            {"{'a':'b'}", "{'b':'c'}", "{'a':'b','b':'c'}"},
+            {"{'a':'b'}", "{'a':null}", "{}"},
+            {"{'a':'b','b':'c'}", "{'a':null}", "{'b':'c'}"},
+            {"{'a':['b']}", "{'a':'c'}", "{'a':'c'}"},
+            {"{'a':'c'}", "{'a':['b']}", "{'a':['b']}"},
+            {"{'a':{'b':'c'}}", "{'a':{'b':'d','c':null}}", "{'a':{'b':'d'}}"},
+            {"{'a':[{'b':'c'}]}", "{'a':[1]}", "{'a':[1]}"},
+            {"['a','b']", "['c','d']", "['c','d']"},
+            {"{'a':'b'}", "['c']", "['c']"},
+            {"{'a':'foo'}", "null", "null"},
+            {"{'a':'foo'}", "'bar'", "'bar'"},
+            {"{'e':null}", "{'a':1}", "{'e':null,'a':1}"},
+            {"[1,2]", "{'a':'b','c':null}", "{'a':'b'}"},
+            {"{}", "{'a':{'bb':{'ccc':null}}}", "{'a':{'bb':{}}}"},
+        };
+        for (String[] c : cases) {
+            JsonThing target = json(c[0]);
+            JsonThing result = target.merge(json(c[1]));
+            assertEquals(c[0] + " + " + c[1],
+                json(c[2]).asObject(), result.asObject());
+            if (target.asObject() instanceof Map
+                && json(c[1]).asObject() instanceof Map)
+            {
+                assertSame(target, result);
+            }
+        }
+    }
+
+    // - R2002 JsonThing::merge with the result of JsonThing::mergeDiff turns
+    //   one thing into the other.
+    //
+    @Test
+    public void test_R2002() throws Exception {
+        JsonThing from = json(
+            "{'a':{'b':1,'c':[1,2]},'d':'e','f':{'g':1},'h':1,'i':{'j':1}}");
+        JsonThing to = json(
+            "{'a':{'b':2,'c':[1,2]},'d':'e','f':[1],'k':{'l':1},'i':{'j':1}}");
+        JsonThing patch = JsonThing.mergeDiff(from, to);
+        assertEquals(
+            json("{'a':{'b':2},'f':[1],'h':null,'k':{'l':1}}").asObject(),
+            patch.asObject());
+        assertEquals(to.asObject(), from.merge(patch).asObject());
+        assertEquals("{}", JsonThing.mergeDiff(from, from).toJson());
+        assertEquals("[1]",
+            JsonThing.mergeDiff(json("{'a':1}"), json("[1]")).toJson());
+    }
+}
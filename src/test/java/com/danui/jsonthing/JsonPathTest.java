@@ -0,0 +1,198 @@
+package com.danui.jsonthing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonPathTest
+ *
+ * R10xx Compiling
+ *
+ * - R1001 compile() accepts the empty pointer and pointers starting with '/',
+ *   and throws IllegalArgumentException otherwise.
+ *
+ * - R1002 of() returns the same compiled path for the same expression.
+ *
+ * - R1003 compile(), of() and JsonThing::at read pointers as per RFC 6901
+ *   only, so "*" and "{a,b}" segments are keys. compilePattern() reads them
+ *   as wildcard and multi-select segments.
+ *
+ * R20xx Single values
+ *
+ * - R2001 get() navigates maps by key and lists by index.
+ *
+ * - R2002 get() wraps null if the pointer leads nowhere.
+ *
+ * - R2003 "~1" and "~0" in a pointer stand for '/' and '~'.
+ *
+ * - R2004 get() throws IllegalStateException if the pattern has wildcard or
+ *   multi-select segments.
+ *
+ * - R2005 JsonThing::at evaluates a pointer against the thing.
+ *
+ * R30xx Selecting multiple values
+ *
+ * - R3001 select() with a "*" segment matches every element of a list or
+ *   every member of a map.
+ *
+ * - R3002 select() with a "{a,b}" segment matches each listed key or index.
+ *
+ * - R3003 select() appends to the caller's list and returns the number of
+ *   values appended; present nulls count as matches.
+ *
+ * @author Jin
+ */
+public class JsonPathTest {
+
+    private JsonThing contacts() {
+        return JsonThing.newMap()
+            .put("contacts", JsonThing.newList()
+                .add(JsonThing.newMap()
+                    .put("name", "Alice")
+                    .put("pin", 9001))
+                .add(JsonThing.newMap()
+                    .put("name", "Bob")
+                    .put("pin", 9002))
+                .add(JsonThing.newMap()
+                    .put("name", "Liz")
+                    .put("pin", 5678)))
+            .put("leader", 5678)
+            .put("a/b", JsonThing.newMap().put("c~d", "escaped"))
+            .put("nothing", null);
+    }
+
+    // - R1001 compile() accepts the empty pointer and pointers starting with
+    //   '/', and throws IllegalArgumentException otherwise.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        assertEquals("", JsonPath.compile("").toString());
+        assertEquals("/a/0", JsonPath.compile("/a/0").toString());
+        try {
+            JsonPath.compile("a/0");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    // - R1002 of() returns the same compiled path for the same expression.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        assertSame(JsonPath.of("/x/y/1"), JsonPath.of("/x/y/1"));
+    }
+
+    // - R1003 compile(), of() and JsonThing::at read pointers as per RFC 6901
+    //   only, so "*" and "{a,b}" segments are keys. compilePattern() reads
+    //   them as wildcard and multi-select segments.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonThing thing = JsonThing.newMap()
+            .put("*", 1)
+            .put("{a,b}", JsonThing.newMap().put("*", 2))
+            .put("a", 3);
+        assertEquals(1L, thing.at("/*").longValue());
+        assertEquals(2L, thing.at("/{a,b}/*").longValue());
+        assertTrue(JsonPath.of("/*").isSingle());
+        assertEquals(1L, JsonPath.compile("/*").get(thing).longValue());
+        assertFalse(JsonPath.compilePattern("/*").isSingle());
+        List<Object> out = new ArrayList<>();
+        assertEquals(1, JsonPath.compilePattern("/{a,b}").select(thing, out));
+        assertEquals(Arrays.asList(3), out);
+    }
+
+    // - R2001 get() navigates maps by key and lists by index.
+    //
+    @Test
+    public void test_R2001() throws Exception {
+        JsonThing thing = contacts();
+        assertEquals("Bob",
+            JsonPath.compile("/contacts/1/name").get(thing).asString());
+        assertEquals(5678L,
+            JsonPath.compile("/leader").get(thing).longValue());
+        assertSame(thing.asObject(),
+            JsonPath.compile("").getObject(thing));
+    }
+
+    // - R2002 get() wraps null if the pointer leads nowhere.
+    //
+    @Test
+    public void test_R2002() throws Exception {
+        JsonThing thing = contacts();
+        assertNull(JsonPath.compile("/contacts/3/name").getObject(thing));
+        assertNull(JsonPath.compile("/contacts/01").getObject(thing));
+        assertNull(JsonPath.compile("/contacts/-").getObject(thing));
+        assertNull(JsonPath.compile("/leader/x").getObject(thing));
+        assertNull(JsonPath.compile("/no/such/thing").get(thing).asObject());
+    }
+
+    // - R2003 "~1" and "~0" in a pointer stand for '/' and '~'.
+    //
+    @Test
+    public void test_R2003() throws Exception {
+        assertEquals("escaped",
+            JsonPath.compile("/a~1b/c~0d").get(contacts()).asString());
+    }
+
+    // - R2004 get() throws IllegalStateException if the pattern has wildcard
+    //   or multi-select segments.
+    //
+    @Test(expected=IllegalStateException.class)
+    public void test_R2004() throws Exception {
+        JsonPath path = JsonPath.compilePattern("/contacts/*/name");
+        assertFalse(path.isSingle());
+        path.get(contacts());
+    }
+
+    // - R2005 JsonThing::at evaluates a pointer against the thing.
+    //
+    @Test
+    public void test_R2005() throws Exception {
+        assertEquals(9002L, contacts().at("/contacts/1/pin").longValue());
+    }
+
+    // - R3001 select() with a "*" segment matches every element of a list or
+    //   every member of a map.
+    //
+    @Test
+    public void test_R3001() throws Exception {
+        List<Object> out = new ArrayList<>();
+        JsonPath.compilePattern("/contacts/*/name").select(contacts(), out);
+        assertEquals(Arrays.asList("Alice", "Bob", "Liz"), out);
+
+        out.clear();
+        JsonPath.compilePattern("/contacts/0/*").select(contacts(), out);
+        assertEquals(2, out.size());
+        assertTrue(out.contains("Alice"));
+        assertTrue(out.contains(9001));
+    }
+
+    // - R3002 select() with a "{a,b}" segment matches each listed key or
+    //   index.
+    //
+    @Test
+    public void test_R3002() throws Exception {
+        List<Object> out = new ArrayList<>();
+        JsonPath.compilePattern("/contacts/{0,2,7}/{name,pin}")
+            .select(contacts(), out);
+        assertEquals(Arrays.asList("Alice", 9001, "Liz", 5678), out);
+    }
+
+    // - R3003 select() appends to the caller's list and returns the number of
+    //   values appended; present nulls count as matches.
+    //
+    @Test
+    public void test_R3003() throws Exception {
+        List<Object> out = new ArrayList<>();
+        out.add("existing");
+        assertEquals(2,
+            JsonPath.compilePattern("/{nothing,missing,leader}")
+                .select(contacts(), out));
+        assertEquals(Arrays.asList("existing", null, 5678), out);
+    }
+}
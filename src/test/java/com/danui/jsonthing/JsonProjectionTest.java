@@ -0,0 +1,199 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.*;
+import static org.junit.Assert.*;
+import static com.danui.jsonthing.JsonProjection.Type.*;
+
+/**
+ * JsonProjectionTest
+ *
+ * R10xx Projections
+ *
+ * - R1001 project() returns the fields found as a flat map, with the same
+ *   values JsonThing::get would find.
+ *
+ * - R1002 project() fills a reusable record, with unboxed values, and
+ *   marks fields that were not found.
+ *
+ * - R1003 Reading stops once every field is found, so what follows is
+ *   not read.
+ *
+ * - R1004 Values of the wrong type fail with an IOException. So does empty
+ *   input.
+ *
+ * - R1005 Fields must have distinct names and paths that do not overlap.
+ *
+ * - R1006 The codec's listener is told about each projection.
+ *
+ * @author Jin
+ */
+public class JsonProjectionTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"badge_number\":107,\"accuracy\":83.128," +
+        "\"active\":true,\"skip\":{\"a\":[1,{\"b\":2}],\"name\":\"no\"}," +
+        "\"district_ids\":[310,309,308],\"notes\":null," +
+        "\"boss\":{\"name\":\"Bob\",\"tags\":[\"x\",{\"y\":1}]}}";
+
+    private static final JsonProjection PROJECTION = JsonProjection.builder()
+        .field("name", STRING, "name")
+        .field("badge", LONG, "badge_number")
+        .field("accuracy", DOUBLE, "accuracy")
+        .field("active", BOOLEAN, "active")
+        .field("district", LONG, "district_ids", 1)
+        .field("boss_tag", THING, "boss", "tags", 1)
+        .field("boss_name", STRING, "boss", "name")
+        .field("notes", STRING, "notes")
+        .field("missing", DOUBLE, "no", "such", 0)
+        .build();
+
+    // - R1001 project() returns the fields found as a flat map, with the same
+    //   values JsonThing::get would find.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThing obj = JsonThing.parse(JSON);
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        for (JsonThing flat : new JsonThing[] {
+            PROJECTION.project(JSON),
+            PROJECTION.project(bytes),
+            PROJECTION.project(new ByteArrayInputStream(bytes)),
+            JsonThing.parse(JSON, PROJECTION),
+            JsonThing.parse(bytes, PROJECTION),
+        }) {
+            assertEquals(
+                "{\"name\":\"Alice\",\"badge\":107,\"accuracy\":83.128," +
+                "\"active\":true,\"district\":309,\"boss_tag\":{\"y\":1}," +
+                "\"boss_name\":\"Bob\"}",
+                flat.toJson());
+            assertEquals(obj.getString("name"), flat.getString("name"));
+            assertEquals(obj.getLong("badge_number"), flat.getLong("badge"));
+            assertEquals(obj.getDouble("accuracy"), flat.getDouble("accuracy"), 0);
+            assertEquals(obj.getLong("district_ids", 1), flat.getLong("district"));
+            assertEquals(obj.get("boss").get("tags").get(1).asMap(),
+                flat.get("boss_tag").asMap());
+            assertFalse(flat.asMap().containsKey("notes"));
+            assertFalse(flat.asMap().containsKey("missing"));
+        }
+    }
+
+    // - R1002 project() fills a reusable record, with unboxed values, and
+    //   marks fields that were not found.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonProjection.Record record = PROJECTION.newRecord();
+        assertSame(record, PROJECTION.project(JSON, record));
+        assertEquals("Alice", record.getString(PROJECTION.indexOf("name")));
+        assertEquals(107, record.getLong(PROJECTION.indexOf("badge")));
+        assertEquals(83.128, record.getDouble(PROJECTION.indexOf("accuracy")), 0);
+        assertTrue(record.is(PROJECTION.indexOf("active")));
+        assertEquals(1L, record.get(PROJECTION.indexOf("boss_tag")).getLong("y"));
+        assertFalse(record.has(PROJECTION.indexOf("notes")));
+        assertFalse(record.has(PROJECTION.indexOf("missing")));
+        assertEquals(0, record.getDouble(PROJECTION.indexOf("missing")), 0);
+        assertNull(record.get(PROJECTION.indexOf("missing")).asObject());
+        assertEquals(-1, PROJECTION.indexOf("no_such_field"));
+        try {
+            record.getLong(PROJECTION.indexOf("name"));
+            fail();
+        } catch (ClassCastException e) {
+            // expected
+        }
+        PROJECTION.project("{\"badge_number\":5,\"active\":false}", record);
+        assertEquals(5, record.getLong(PROJECTION.indexOf("badge")));
+        assertFalse(record.is(PROJECTION.indexOf("active")));
+        assertTrue(record.has(PROJECTION.indexOf("active")));
+        assertFalse(record.has(PROJECTION.indexOf("name")));
+        assertEquals("{\"badge\":5,\"active\":false}", record.toThing().toJson());
+    }
+
+    // - R1003 Reading stops once every field is found, so what follows is
+    //   not read.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonProjection projection = JsonProjection.builder()
+            .field("a", LONG, "a")
+            .field("b", STRING, "list", 1, "b")
+            .build();
+        assertEquals("{\"a\":1,\"b\":\"x\"}", projection.project(
+            "{\"list\":[{\"b\":\"no\"},{\"b\":\"x\"}],\"a\":1,\"rest\":[[[").toJson());
+        assertEquals("{\"a\":1}", projection.project(
+            "{\"a\":1,\"list\":[{},{},{}]}").toJson());
+        assertEquals("{}", projection.project("[1,2,3]").toJson());
+        assertEquals("{}", projection.project("\"a\"").toJson());
+    }
+
+    // - R1004 Values of the wrong type fail with an IOException. So does empty
+    //   input.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        String[] bad = {
+            "", "{\"name\":1}", "{\"badge_number\":1.5}",
+            "{\"badge_number\":\"1\"}", "{\"active\":1}",
+            "{\"accuracy\":true}", "{\"name\":\"x\",", "{\"boss\":{\"tags\":[1,{",
+        };
+        for (String json : bad) {
+            try {
+                PROJECTION.project(json);
+                fail(json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertEquals(3.0,
+            PROJECTION.project("{\"accuracy\":3}").getDouble("accuracy"), 0);
+    }
+
+    // - R1005 Fields must have distinct names and paths that do not overlap.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        Runnable[] bad = {
+            () -> JsonProjection.builder()
+                .field("a", LONG, "a").field("a", LONG, "b"),
+            () -> JsonProjection.builder()
+                .field("a", THING, "a").field("b", LONG, "a", "b"),
+            () -> JsonProjection.builder()
+                .field("a", LONG, "a", 0).field("b", LONG, "a"),
+            () -> JsonProjection.builder().field("a", LONG),
+            () -> JsonProjection.builder().field("a", LONG, "a", -1),
+            () -> JsonProjection.builder().field("a", LONG, 1.5),
+        };
+        for (Runnable r : bad) {
+            try {
+                r.run();
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        JsonProjection.builder()
+            .field("a", LONG, "a", 0)
+            .field("b", LONG, "a", 1)
+            .field("c", LONG, "ab")
+            .build();
+    }
+
+    // - R1006 The codec's listener is told about each projection.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonProjection projection = JsonProjection.builder()
+            .field("name", STRING, "name")
+            .codec(JsonThingCodec.builder().listener(metrics).build())
+            .build();
+        projection.project(JSON);
+        projection.project("{\"x\":1}");
+        assertEquals(2, metrics.getParseCount());
+        assertEquals(
+            JSON.indexOf("\"Alice\"") + "\"Alice\"".length() + 7,
+            metrics.getBytesIn());
+    }
+}
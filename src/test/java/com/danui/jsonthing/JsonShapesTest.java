@@ -0,0 +1,207 @@
+package com.danui.jsonthing;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonShapesTest
+ *
+ * R10xx Shaped maps
+ *
+ * - R1001 JsonShapes::parse reads JSON into a JsonThing that reads and
+ *   encodes the same as one produced by JsonThing::parse.
+ *
+ * - R1002 Maps with the same keys in the same order share one shape.
+ *
+ * - R1003 Shaped maps support put(), remove() and changes through their
+ *   entry set, and keep members in insertion order.
+ *
+ * - R1004 Once maxShapes shapes exist, maps that need a new shape still
+ *   work, as plain maps.
+ *
+ * - R1005 JsonShapes::compact copies a thing into shaped maps.
+ *
+ * - R1006 A shape that many threads add at once is counted once against
+ *   maxShapes.
+ *
+ * - R1007 Maps with more than MAX_KEYS keys are LinkedHashMaps, so a wide
+ *   map makes at most MAX_KEYS shapes.
+ *
+ * @author Jin
+ */
+public class JsonShapesTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"badge_number\":107,\"active\":false," +
+        "\"district_ids\":[310,309],\"notes\":null," +
+        "\"boss\":{\"name\":\"Bob\"},\"tags\":[{\"k\":1},\"x\"]}";
+
+    // - R1001 JsonShapes::parse reads JSON into a JsonThing that reads and
+    //   encodes the same as one produced by JsonThing::parse.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThing obj = new JsonShapes().parse(JSON);
+        assertTrue(obj.asObject() instanceof ShapedMap);
+        assertEquals("Alice", obj.get("name").asString());
+        assertEquals(107L, obj.getLong("badge_number"));
+        assertFalse(obj.is("active"));
+        assertTrue(obj.asMap().containsKey("notes"));
+        assertFalse(obj.asMap().containsKey("no_such_property"));
+        assertNull(obj.get("no_such_property").asObject());
+        assertEquals("Bob", obj.getString("boss", "name"));
+        assertEquals(1L, obj.getLong("tags", 0, "k"));
+        assertEquals(JsonThing.parse(JSON).asMap(), obj.asMap());
+        assertEquals(obj.asMap(), JsonThing.parse(JSON).asMap());
+        assertEquals(JsonThing.parse(JSON).asMap().hashCode(), obj.asMap().hashCode());
+        assertEquals(JSON, obj.toJson());
+        assertEquals("{}", new JsonShapes().parse("{}").toJson());
+    }
+
+    // - R1002 Maps with the same keys in the same order share one shape.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonShapes shapes = new JsonShapes();
+        for (int i = 0; i < 100; i++) {
+            shapes.parse("{\"a\":" + i + ",\"b\":\"x\"}");
+        }
+        assertEquals(2, shapes.size());
+        shapes.parse("{\"a\":1}");
+        assertEquals(2, shapes.size());
+        shapes.parse("{\"b\":1,\"a\":2}");
+        assertEquals(4, shapes.size());
+    }
+
+    // - R1003 Shaped maps support put(), remove() and changes through their
+    //   entry set, and keep members in insertion order.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonShapes shapes = new JsonShapes();
+        JsonThing obj = shapes.newMap()
+            .put("a", 1)
+            .put("b", 2)
+            .put("c", 3)
+            .put("b", 20);
+        assertEquals("{\"a\":1,\"b\":20,\"c\":3}", obj.toJson());
+        assertEquals(20, obj.asMap().remove("b"));
+        assertEquals("{\"a\":1,\"c\":3}", obj.toJson());
+        obj.put("d", JsonThing.newList().add(4));
+        assertEquals(Arrays.asList("a", "c", "d"),
+            Arrays.asList(obj.asMap().keySet().toArray()));
+        Iterator<Map.Entry<String,Object>> it = obj.asMap().entrySet().iterator();
+        it.next().setValue(10);
+        it.next();
+        it.remove();
+        assertEquals("{\"a\":10,\"d\":[4]}", obj.toJson());
+        obj.asMap().clear();
+        assertEquals(0, obj.asMap().size());
+        assertEquals("{}", obj.toJson());
+    }
+
+    // - R1004 Once maxShapes shapes exist, maps that need a new shape still
+    //   work, as plain maps.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        JsonShapes shapes = new JsonShapes(2);
+        JsonThing small = shapes.parse("{\"a\":1,\"b\":2}");
+        JsonThing big = shapes.parse("{\"a\":1,\"b\":2,\"c\":3,\"d\":4}");
+        assertEquals(2, shapes.size());
+        assertTrue(((ShapedMap)small.asObject()).isShaped());
+        assertFalse(((ShapedMap)big.asObject()).isShaped());
+        assertEquals("{\"a\":1,\"b\":2,\"c\":3,\"d\":4}", big.toJson());
+        small.put("e", 5);
+        assertEquals(5L, small.getLong("e"));
+        assertEquals("{\"a\":1,\"b\":2,\"e\":5}", small.toJson());
+    }
+
+    // - R1005 JsonShapes::compact copies a thing into shaped maps.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonShapes shapes = new JsonShapes();
+        JsonThing obj = JsonThing.parse(JSON);
+        JsonThing compact = shapes.compact(obj);
+        assertTrue(compact.asObject() instanceof ShapedMap);
+        assertTrue(compact.get("boss").asObject() instanceof ShapedMap);
+        assertTrue(compact.get("tags").get(0).asObject() instanceof ShapedMap);
+        assertEquals(obj.asMap(), compact.asMap());
+        assertEquals(JSON, compact.toJson());
+        Map<String,Object> plain = new LinkedHashMap<>();
+        plain.put("x", 1);
+        assertEquals(
+            "{\"x\":1}", shapes.compact(JsonThing.wrap(plain)).toJson());
+    }
+
+    // - R1006 A shape that many threads add at once is counted once against
+    //   maxShapes.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        int keys = JsonShapes.MAX_KEYS;
+        Thread[] threads = new Thread[4];
+        for (int round = 0; round < 50; round++) {
+            JsonShapes shapes = new JsonShapes(keys);
+            CyclicBarrier start = new CyclicBarrier(threads.length);
+            Shape[] last = new Shape[threads.length];
+            for (int t = 0; t < threads.length; t++) {
+                int id = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                    Shape shape = shapes.root();
+                    for (int i = 0; i < keys && shape != null; i++) {
+                        shape = shape.with("k" + i);
+                    }
+                    last[id] = shape;
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(keys, shapes.size());
+            for (Shape shape : last) {
+                assertNotNull(shape);
+                assertSame(last[0], shape);
+            }
+        }
+    }
+
+    // - R1007 Maps with more than MAX_KEYS keys are LinkedHashMaps, so a wide
+    //   map makes at most MAX_KEYS shapes.
+    //
+    @Test
+    public void test_R1007() throws Exception {
+        JsonShapes shapes = new JsonShapes();
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 4000; i++) {
+            sb.append(i == 0 ? "" : ",").append("\"k").append(i).append("\":")
+                .append(i);
+        }
+        String json = sb.append("}").toString();
+        JsonThing wide = shapes.parse(json);
+        assertFalse(((ShapedMap)wide.asObject()).isShaped());
+        assertEquals(JsonShapes.MAX_KEYS, shapes.size());
+        assertEquals(json, wide.toJson());
+        assertEquals(3999L, wide.getLong("k3999"));
+
+        JsonThing built = shapes.newMap();
+        for (int i = 0; i < 4000; i++) {
+            built.put("k" + i, i);
+        }
+        assertFalse(((ShapedMap)built.asObject()).isShaped());
+        assertEquals(JsonShapes.MAX_KEYS, shapes.size());
+        assertEquals(wide, built);
+    }
+}
@@ -0,0 +1,272 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingBatchTest
+ *
+ * R10xx Converting records to columns
+ *
+ * - R1001 JsonThingBatch::convert gives one column per projected field,
+ *   holding each record's value in record order: long[] for LONG, double[]
+ *   for DOUBLE, a BitSet of true records for BOOLEAN, codes into a
+ *   dictionary of first seen strings for STRING and the values for THING.
+ *
+ * - R1002 Records where a field is missing or null are set in nulls() and
+ *   hold 0, false, code -1 or null.
+ *
+ * - R1003 JsonThingBatch::read reads NDJSON into the same columns as
+ *   converting the parsed records, from bytes or a stream, even where the
+ *   projection stops reading a record early.
+ *
+ * - R1004 With parallelism above 1, records and NDJSON are converted in
+ *   chunks, and give the same columns, dictionaries included, as a
+ *   sequential conversion.
+ *
+ * - R1005 Reading a column as the wrong type throws ClassCastException.
+ *   A field of the wrong type in a record throws IOException, whether the
+ *   records are JsonThings or NDJSON, sequential or parallel.
+ *
+ * @author Jin
+ */
+public class JsonThingBatchTest {
+
+    private static final String[] NAMES = {"Alice", "Bob", "Carol", "Dan"};
+
+    private static final JsonProjection PROJECTION = JsonProjection.builder()
+        .field("name", JsonProjection.Type.STRING, "name")
+        .field("badge", JsonProjection.Type.LONG, "badge_number")
+        .field("active", JsonProjection.Type.BOOLEAN, "active")
+        .field("district", JsonProjection.Type.LONG, "district_ids", 0)
+        .field("accuracy", JsonProjection.Type.DOUBLE, "accuracy")
+        .field("extra", JsonProjection.Type.THING, "extra")
+        .build();
+
+    private static final int NAME = PROJECTION.indexOf("name");
+    private static final int BADGE = PROJECTION.indexOf("badge");
+    private static final int ACTIVE = PROJECTION.indexOf("active");
+    private static final int DISTRICT = PROJECTION.indexOf("district");
+    private static final int ACCURACY = PROJECTION.indexOf("accuracy");
+    private static final int EXTRA = PROJECTION.indexOf("extra");
+
+    private static JsonThing record(int i) {
+        JsonThing record = JsonThing.newMap()
+            .put("name", NAMES[(i * 7) % NAMES.length])
+            .put("badge_number", 100 + i)
+            .put("active", i % 3 == 0)
+            .put("district_ids", JsonThing.newList().add(300 + i % 5).add(1))
+            .put("accuracy", i / 8.0);
+        if (i % 10 == 9) {
+            record.put("extra", JsonThing.newList().add(i));
+        }
+        return record;
+    }
+
+    private static List<JsonThing> records(int n) {
+        List<JsonThing> records = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            records.add(record(i));
+        }
+        return records;
+    }
+
+    private static byte[] ndjson(List<JsonThing> records) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (JsonThing record : records) {
+            sb.append(record.toJson()).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void assertSameColumns(
+        JsonThingBatch.Columns expected,
+        JsonThingBatch.Columns actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        assertArrayEquals(expected.codes(NAME), actual.codes(NAME));
+        assertArrayEquals(expected.dictionary(NAME), actual.dictionary(NAME));
+        assertArrayEquals(expected.longs(BADGE), actual.longs(BADGE));
+        assertEquals(expected.booleans(ACTIVE), actual.booleans(ACTIVE));
+        assertArrayEquals(expected.longs(DISTRICT), actual.longs(DISTRICT));
+        assertArrayEquals(
+            expected.doubles(ACCURACY), actual.doubles(ACCURACY), 0.0);
+        assertArrayEquals(expected.objects(EXTRA), actual.objects(EXTRA));
+        for (int i = 0; i < PROJECTION.size(); i++) {
+            assertEquals(expected.nulls(i), actual.nulls(i));
+        }
+    }
+
+    // - R1001 JsonThingBatch::convert gives one column per projected field,
+    //   holding each record's value in record order: long[] for LONG,
+    //   double[] for DOUBLE, a BitSet of true records for BOOLEAN, codes
+    //   into a dictionary of first seen strings for STRING and the values
+    //   for THING.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        List<JsonThing> records = records(100);
+        JsonThingBatch.Columns columns =
+            JsonThingBatch.of(PROJECTION).convert(records);
+        assertEquals(100, columns.size());
+        assertArrayEquals(
+            new String[] {"Alice", "Dan", "Carol", "Bob"},
+            columns.dictionary(NAME));
+        long[] badges = columns.longs(BADGE);
+        long[] districts = columns.longs(DISTRICT);
+        double[] accuracies = columns.doubles(ACCURACY);
+        int[] names = columns.codes(NAME);
+        for (int i = 0; i < 100; i++) {
+            JsonThing record = records.get(i);
+            assertEquals(record.get("name").asString(),
+                columns.dictionary(NAME)[names[i]]);
+            assertEquals(100L + i, badges[i]);
+            assertEquals(i % 3 == 0, columns.booleans(ACTIVE).get(i));
+            assertEquals(300L + i % 5, districts[i]);
+            assertEquals(i / 8.0, accuracies[i], 0.0);
+            assertEquals(record.get("accuracy"), columns.get(i, ACCURACY));
+            assertEquals(record.get("name"), columns.get(i, NAME));
+        }
+        assertEquals(JsonThing.newList().add(9).asObject(),
+            columns.objects(EXTRA)[9]);
+        assertEquals(0, JsonThingBatch.of(PROJECTION)
+            .convert(new ArrayList<JsonThing>()).size());
+    }
+
+    // - R1002 Records where a field is missing or null are set in nulls()
+    //   and hold 0, false, code -1 or null.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        List<JsonThing> records = Arrays.asList(
+            JsonThing.parse("{\"name\":null,\"badge_number\":5}"),
+            JsonThing.parse("{\"district_ids\":[],\"active\":true}"),
+            JsonThing.parse("[1,2,3]"),
+            JsonThing.parse("{\"district_ids\":{\"0\":1},\"name\":\"Eve\"}"));
+        JsonThingBatch.Columns columns =
+            JsonThingBatch.of(PROJECTION).convert(records);
+        assertEquals(4, columns.size());
+        assertArrayEquals(new int[] {-1, -1, -1, 0}, columns.codes(NAME));
+        assertArrayEquals(new String[] {"Eve"}, columns.dictionary(NAME));
+        assertArrayEquals(new long[] {5, 0, 0, 0}, columns.longs(BADGE));
+        assertEquals(bits(1), columns.booleans(ACTIVE));
+        assertEquals(bits(0, 1, 2, 3), columns.nulls(DISTRICT));
+        assertEquals(bits(0, 1, 2), columns.nulls(NAME));
+        assertEquals(bits(1, 2, 3), columns.nulls(BADGE));
+        assertEquals(bits(0, 2, 3), columns.nulls(ACTIVE));
+        assertNull(columns.objects(EXTRA)[0]);
+        assertNull(columns.get(0, NAME).asObject());
+    }
+
+    private static BitSet bits(int... set) {
+        BitSet bits = new BitSet();
+        for (int i : set) {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    // - R1003 JsonThingBatch::read reads NDJSON into the same columns as
+    //   converting the parsed records, from bytes or a stream, even where
+    //   the projection stops reading a record early.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        List<JsonThing> records = records(50);
+        records.get(3).put("trailing", JsonThing.newMap().put("a", 1));
+        records.get(4).put("name", null);
+        JsonThingBatch batch = JsonThingBatch.of(PROJECTION);
+        JsonThingBatch.Columns expected = batch.convert(records);
+        byte[] bytes = ndjson(records);
+        assertSameColumns(expected, batch.read(bytes));
+        assertSameColumns(
+            expected, batch.read(new ByteArrayInputStream(bytes)));
+
+        JsonProjection first = JsonProjection.builder()
+            .field("name", JsonProjection.Type.STRING, "name")
+            .build();
+        JsonThingBatch.Columns names = JsonThingBatch.of(first).read(
+            "{\"name\":\"a\",\"rest\":[{\"name\":\"x\"}]}\n{\"name\":\"b\"}\n"
+            .getBytes(StandardCharsets.UTF_8));
+        assertArrayEquals(new int[] {0, 1}, names.codes(0));
+        assertArrayEquals(new String[] {"a", "b"}, names.dictionary(0));
+    }
+
+    // - R1004 With parallelism above 1, records and NDJSON are converted in
+    //   chunks, and give the same columns, dictionaries included, as a
+    //   sequential conversion.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        List<JsonThing> records = records(1000);
+        records.get(777).put("name", "Zed");
+        records.get(500).asMap().remove("badge_number");
+        JsonThingBatch.Columns expected =
+            JsonThingBatch.of(PROJECTION).convert(records);
+        JsonThingBatch parallel = JsonThingBatch.of(PROJECTION)
+            .parallelism(4)
+            .chunkRecords(37)
+            .chunkBytes(1000);
+        assertSameColumns(expected, parallel.convert(records));
+        assertSameColumns(expected, parallel.read(ndjson(records)));
+        assertEquals(5, expected.dictionary(NAME).length);
+        assertEquals("Zed", expected.dictionary(NAME)[4]);
+    }
+
+    // - R1005 Reading a column as the wrong type throws ClassCastException.
+    //   A field of the wrong type in a record throws IOException, whether
+    //   the records are JsonThings or NDJSON, sequential or parallel.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonThingBatch.Columns columns =
+            JsonThingBatch.of(PROJECTION).convert(records(3));
+        try {
+            columns.doubles(BADGE);
+            fail("Expected ClassCastException");
+        } catch (ClassCastException e) {
+            // expected
+        }
+        String[][] wrong = {
+            {"badge_number", "\"107\""},
+            {"badge_number", "1.5"},
+            {"accuracy", "\"high\""},
+            {"active", "1"},
+            {"name", "[\"Alice\"]"},
+        };
+        JsonThingBatch parallel = JsonThingBatch.of(PROJECTION)
+            .parallelism(2)
+            .chunkRecords(2)
+            .chunkBytes(16);
+        for (String[] field : wrong) {
+            List<JsonThing> bad = records(5);
+            bad.get(3).put(field[0], JsonThing.parse(field[1]));
+            byte[] bytes = ndjson(bad);
+            for (JsonThingBatch batch
+                : Arrays.asList(JsonThingBatch.of(PROJECTION), parallel))
+            {
+                try {
+                    batch.convert(bad);
+                    fail("Expected IOException for " + field[0]);
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(),
+                        e.getMessage().contains("for field"));
+                }
+                try {
+                    batch.read(bytes);
+                    fail("Expected IOException for " + field[0]);
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(),
+                        e.getMessage().contains("for field"));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.danui.jsonthing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingCacheTest
+ *
+ * R10xx Caching parsed documents
+ *
+ * - R1001 JsonThingCache::parse returns a frozen thing that reads the same
+ *   as one produced by JsonThing::parse, and the same thing each time it is
+ *   given the same content.
+ *
+ * - R1002 Different content gives different things, however the content is
+ *   passed in.
+ *
+ * - R1003 The cache never holds more than its budget. Least recently used
+ *   documents are evicted first, and documents larger than the budget are
+ *   not cached.
+ *
+ * - R1004 Documents that are used often are not evicted to make room for
+ *   documents that are used once.
+ *
+ * - R1005 Input that fails to parse throws and is not cached.
+ *
+ * - R1006 Many threads may use a cache at once.
+ *
+ * @author Jin
+ */
+public class JsonThingCacheTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"badge_number\":107,\"district_ids\":[310,309]}";
+
+    private static String doc(int i) {
+        return "{\"id\":" + (100000 + i) + "}";
+    }
+
+    // - R1001 JsonThingCache::parse returns a frozen thing that reads the
+    //   same as one produced by JsonThing::parse, and the same thing each
+    //   time it is given the same content.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThingCache cache = new JsonThingCache(1 << 20);
+        JsonThing obj = cache.parse(JSON);
+        assertTrue(obj.isFrozen());
+        assertEquals(JsonThing.parse(JSON).asMap(), obj.asMap());
+        assertEquals(
+            JsonThing.parse(JSON).asMap(),
+            JsonThing.parse(obj.toJson()).asMap());
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertSame(obj, cache.parse(JSON));
+        assertSame(obj, cache.parse(JSON.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.size());
+        assertEquals(JSON.length(), cache.weight());
+        assertEquals(7L, cache.parse("7").longValue());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+        assertNotSame(obj, cache.parse(JSON));
+    }
+
+    // - R1002 Different content gives different things, however the content
+    //   is passed in.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonThingCache cache = new JsonThingCache(1 << 20);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(100000L + i, cache.parse(doc(i)).getLong("id"));
+        }
+        byte[] bytes =
+            ("xx" + doc(5) + doc(6)).getBytes(StandardCharsets.UTF_8);
+        int n = doc(5).length();
+        JsonThing five = cache.parse(bytes, 2, n);
+        JsonThing six = cache.parse(bytes, 2 + n, n);
+        assertEquals(100005L, five.getLong("id"));
+        assertEquals(100006L, six.getLong("id"));
+        assertSame(five, cache.parse(doc(5)));
+        assertEquals(3, cache.hitCount());
+        assertEquals(100, cache.missCount());
+        bytes[3] = 'X';
+        assertSame(five, cache.parse(doc(5)));
+    }
+
+    // - R1003 The cache never holds more than its budget. Least recently
+    //   used documents are evicted first, and documents larger than the
+    //   budget are not cached.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        int n = doc(0).length();
+        JsonThingCache cache = new JsonThingCache(10 * n);
+        for (int i = 0; i < 10; i++) {
+            cache.parse(doc(i));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(10 * n, cache.weight());
+        for (int round = 0; round < 2; round++) {
+            for (int i = 1; i < 10; i++) {
+                cache.parse(doc(i));
+            }
+        }
+        // doc(10) has been seen as often as doc(0), the least recent.
+        cache.parse(doc(10));
+        cache.parse(doc(10));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(10, cache.size());
+        assertEquals(10 * n, cache.weight());
+        long misses = cache.missCount();
+        for (int i = 1; i <= 10; i++) {
+            cache.parse(doc(i));
+        }
+        assertEquals(misses, cache.missCount());
+        cache.parse(doc(0));
+        assertEquals(misses + 1, cache.missCount());
+
+        StringBuilder big = new StringBuilder("[");
+        for (int i = 0; i < 10 * n; i++) {
+            big.append("0,");
+        }
+        big.append("0]");
+        JsonThing first = cache.parse(big.toString());
+        assertEquals(10 * n + 1, first.asList().size());
+        assertNotSame(first, cache.parse(big.toString()));
+        assertTrue(cache.weight() <= 10 * n);
+
+        JsonThingCache none = new JsonThingCache(0);
+        assertEquals(7L, none.parse("7").longValue());
+        assertEquals(0, none.size());
+    }
+
+    // - R1004 Documents that are used often are not evicted to make room
+    //   for documents that are used once.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        int n = doc(0).length();
+        JsonThingCache cache = new JsonThingCache(10 * n);
+        List<JsonThing> hot = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hot.add(cache.parse(doc(i)));
+            cache.parse(doc(i));
+            cache.parse(doc(i));
+        }
+        for (int i = 10; i < 1000; i++) {
+            cache.parse(doc(i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertSame(hot.get(i), cache.parse(doc(i)));
+        }
+        assertEquals(0, cache.evictionCount());
+        assertEquals(10, cache.size());
+    }
+
+    // - R1005 Input that fails to parse throws and is not cached.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonThingCache cache = new JsonThingCache(1 << 20);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.parse("{\"a\":");
+                fail("Expected IOException");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertEquals(2, cache.missCount());
+        assertEquals(0, cache.size());
+    }
+
+    // - R1006 Many threads may use a cache at once.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        JsonThingCache cache = new JsonThingCache(200 * doc(0).length());
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(pool.submit((Callable<Void>)() -> {
+                    for (int i = 0; i < 20000; i++) {
+                        int k = (i * 31 + seed * 7) % 400;
+                        JsonThing obj = cache.parse(doc(k));
+                        assertEquals(100000L + k, obj.getLong("id"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(160000, cache.hitCount() + cache.missCount());
+        assertTrue(cache.hitCount() > 0);
+        assertTrue(cache.weight() <= 200 * doc(0).length());
+    }
+}
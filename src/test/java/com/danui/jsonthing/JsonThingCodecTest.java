@@ -0,0 +1,318 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingCodecTest
+ *
+ * R10xx Codecs
+ *
+ * - R1001 JsonThingCodec.DEFAULT parses and encodes exactly as JsonThing
+ *   does.
+ *
+ * - R1002 bigDecimalFloats(true) reads floating point numbers as
+ *   BigDecimal.
+ *
+ * - R1003 compactNumberLists(false) reads arrays of numbers into plain
+ *   lists.
+ *
+ * - R1004 shapes(shapes) reads objects into shaped maps.
+ *
+ * - R1005 Turning off internFieldNames and recycleBuffers does not change
+ *   what is parsed or encoded.
+ *
+ * - R1006 writeTo writes JSON to a stream without closing it.
+ *
+ * - R1007 The token parser reads every document into the same types and
+ *   values as databind(true) does, for each combination of options.
+ *
+ * - R1008 The token parser fails on empty and malformed input, as
+ *   databind(true) does.
+ *
+ * @author Jin
+ */
+public class JsonThingCodecTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"badge_number\":107,\"accuracy\":83.128," +
+        "\"district_ids\":[310,309,308],\"scores\":[0.5,1.5]," +
+        "\"boss\":{\"name\":\"Bob\"},\"notes\":null}";
+
+    // - R1001 JsonThingCodec.DEFAULT parses and encodes exactly as JsonThing
+    //   does.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThingCodec codec = JsonThingCodec.DEFAULT;
+        JsonThing obj = codec.parse(JSON);
+        assertEquals(JsonThing.parse(JSON).asMap(), obj.asMap());
+        assertEquals(JSON, codec.toJson(obj));
+        assertEquals(JSON, obj.toJson(codec));
+        assertEquals(JSON,
+            new String(codec.toBytes(obj), StandardCharsets.UTF_8));
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        assertEquals(obj.asMap(), JsonThing.parse(bytes, codec).asMap());
+        assertEquals(obj.asMap(),
+            JsonThing.parse(new ByteArrayInputStream(bytes), codec).asMap());
+        assertEquals(obj.asMap(),
+            JsonThingCodec.builder().build().parse(JSON).asMap());
+    }
+
+    // - R1002 bigDecimalFloats(true) reads floating point numbers as
+    //   BigDecimal.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .bigDecimalFloats(true)
+            .build();
+        JsonThing obj = JsonThing.parse(
+            "{\"a\":0.10000000000000000001,\"b\":[0.5,1.5]}", codec);
+        assertEquals(
+            new BigDecimal("0.10000000000000000001"),
+            obj.get("a").asObject());
+        assertEquals(
+            Arrays.asList(new BigDecimal("0.5"), new BigDecimal("1.5")),
+            obj.get("b").asList());
+        assertEquals(
+            "{\"a\":0.10000000000000000001,\"b\":[0.5,1.5]}",
+            obj.toJson(codec));
+    }
+
+    // - R1003 compactNumberLists(false) reads arrays of numbers into plain
+    //   lists.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .compactNumberLists(false)
+            .build();
+        JsonThing obj = codec.parse(JSON);
+        assertTrue(obj.get("district_ids").asObject() instanceof ArrayList);
+        assertTrue(obj.get("scores").asObject() instanceof ArrayList);
+        assertEquals(JsonThing.parse(JSON).asMap(), obj.asMap());
+    }
+
+    // - R1004 shapes(shapes) reads objects into shaped maps.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        JsonShapes shapes = new JsonShapes();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .shapes(shapes)
+            .build();
+        JsonThing obj = codec.parse(JSON);
+        assertTrue(obj.asObject() instanceof ShapedMap);
+        assertTrue(obj.get("boss").asObject() instanceof ShapedMap);
+        assertTrue(shapes.size() > 0);
+        assertEquals(JSON, obj.toJson(codec));
+    }
+
+    // - R1005 Turning off internFieldNames and recycleBuffers does not
+    //   change what is parsed or encoded.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .internFieldNames(false)
+            .recycleBuffers(false)
+            .build();
+        for (int i = 0; i < 3; i++) {
+            JsonThing obj = codec.parse(JSON);
+            assertEquals(JsonThing.parse(JSON).asMap(), obj.asMap());
+            assertEquals(JSON, codec.toJson(obj));
+        }
+    }
+
+    // - R1006 writeTo writes JSON to a stream without closing it.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        boolean[] closed = {false};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        JsonThing obj = JsonThing.parse(JSON);
+        JsonThingCodec codec = JsonThingCodec.builder().build();
+        obj.writeTo(out, codec);
+        assertFalse(closed[0]);
+        assertEquals(JSON,
+            new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static final String[] DOCUMENTS = {
+        JSON,
+        "{}", "[]", "\"x\"", "true", "false", "null", "0", "-0", "1.5",
+        "-0.0", "1e3", "1E-300", "2147483647", "2147483648", "-2147483648",
+        "-2147483649", "9223372036854775807", "9223372036854775808",
+        "-9223372036854775809", "123456789012345678901234567890",
+        "[1,2,3]", "[1,2147483648,3]", "[1,2,\"x\"]", "[1.5,2.5,\"x\"]",
+        "[1.5,2]", "[1,2.5]", "[1,9223372036854775808]", "[null,1]",
+        "[[],{},[[]],{\"a\":{}}]",
+        "{\"a\":1,\"a\":2,\"b\":3}",
+        "{\"\\u00e7\":\"\\ud83d\\ude00\\n\\\"\"}",
+        "{\"a\":[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,\"x\"]}",
+        "[{\"a\":1,\"b\":2},{\"a\":3,\"b\":4},{\"b\":5,\"a\":6}]",
+        "1 2", "{} []",
+    };
+
+    // - R1007 The token parser reads every document into the same types and
+    //   values as databind(true) does, for each combination of options.
+    //
+    @Test
+    public void test_R1007() throws Exception {
+        List<String> documents = new ArrayList<>(Arrays.asList(DOCUMENTS));
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            deep.append("{\"a\":[");
+        }
+        for (int i = 0; i < 500; i++) {
+            deep.append("]}");
+        }
+        documents.add(deep.toString());
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            documents.add(JsonThing.WRITER.writeValueAsString(
+                randomValue(random, 0)));
+        }
+        for (int options = 0; options < 8; options++) {
+            boolean big = (options & 1) != 0;
+            boolean compact = (options & 2) != 0;
+            boolean shaped = (options & 4) != 0;
+            JsonThingCodec tokens = JsonThingCodec.builder()
+                .bigDecimalFloats(big)
+                .compactNumberLists(compact)
+                .shapes(shaped ? new JsonShapes(4) : null)
+                .build();
+            JsonThingCodec databind = JsonThingCodec.builder()
+                .bigDecimalFloats(big)
+                .compactNumberLists(compact)
+                .shapes(shaped ? new JsonShapes(4) : null)
+                .databind(true)
+                .build();
+            for (String json : documents) {
+                byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                Object expected = databind.parse(json).asObject();
+                assertSame(json, expected, tokens.parse(json).asObject());
+                assertSame(json, expected, tokens.parse(bytes).asObject());
+                assertSame(json, expected, tokens.parse(
+                    new ByteArrayInputStream(bytes)).asObject());
+            }
+        }
+    }
+
+    private static Object randomValue(Random random, int depth) {
+        switch (random.nextInt(depth < 4 ? 9 : 6)) {
+        case 0:
+            return "s" + random.nextInt(100);
+        case 1:
+            return random.nextInt(2000) - 1000;
+        case 2:
+            return random.nextLong();
+        case 3:
+            return random.nextDouble();
+        case 4:
+            return random.nextBoolean();
+        case 5:
+            return null;
+        case 6:
+            List<Object> numbers = new ArrayList<>();
+            for (int i = random.nextInt(20); i > 0; i--) {
+                numbers.add(random.nextInt(3) == 0
+                    ? (Object)random.nextDouble()
+                    : (Object)random.nextLong());
+            }
+            return numbers;
+        case 7:
+            List<Object> list = new ArrayList<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                list.add(randomValue(random, depth + 1));
+            }
+            return list;
+        default:
+            Map<String,Object> map = new LinkedHashMap<>();
+            for (int i = random.nextInt(6); i > 0; i--) {
+                map.put("k" + random.nextInt(8), randomValue(random, depth + 1));
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Checks that two values are equal and made of the same classes all the
+     * way down.
+     */
+    private static void assertSame(String json, Object expected, Object actual) {
+        if (expected == null) {
+            assertNull(json, actual);
+            return;
+        }
+        assertNotNull(json, actual);
+        assertEquals(json, expected.getClass(), actual.getClass());
+        if (expected instanceof Map) {
+            Map<?,?> e = (Map<?,?>)expected;
+            Map<?,?> a = (Map<?,?>)actual;
+            assertEquals(json, new ArrayList<>(e.keySet()),
+                new ArrayList<>(a.keySet()));
+            for (Object key : e.keySet()) {
+                assertSame(json, e.get(key), a.get(key));
+            }
+        } else if (expected instanceof List) {
+            List<?> e = (List<?>)expected;
+            List<?> a = (List<?>)actual;
+            assertEquals(json, e.size(), a.size());
+            for (int i = 0; i < e.size(); i++) {
+                assertSame(json, e.get(i), a.get(i));
+            }
+        } else {
+            assertEquals(json, expected, actual);
+        }
+    }
+
+    // - R1008 The token parser fails on empty and malformed input, as
+    //   databind(true) does.
+    //
+    @Test
+    public void test_R1008() throws Exception {
+        JsonThingCodec tokens = JsonThingCodec.builder().build();
+        JsonThingCodec databind = JsonThingCodec.builder()
+            .databind(true)
+            .build();
+        String[] bad = {
+            "", "   ", "{", "[", "[1,", "{\"a\"", "{\"a\":}", "[1 2]",
+            "{1:2}", "tru", "\"x", "]", "[1.5,", "[1,2,}",
+        };
+        for (String json : bad) {
+            for (JsonThingCodec codec : Arrays.asList(tokens, databind)) {
+                try {
+                    codec.parse(json);
+                    fail(json);
+                } catch (IOException e) {
+                    // expected
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.danui.jsonthing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingFeederTest
+ *
+ * R10xx Feeding chunks
+ *
+ * - R1001 A document fed in chunks of any size parses to the same value
+ *   as JsonThing::parse gives.
+ *
+ * - R1002 values() hands out each top level value as soon as its last
+ *   byte is fed.
+ *
+ * - R1003 elements() hands out each element of top level arrays.
+ *
+ * - R1004 A handler is passed each value as it finishes. Once it returns
+ *   false, values are kept for poll().
+ *
+ * - R1005 Malformed input fails when fed, and input that ends part way
+ *   through a value fails at endOfInput().
+ *
+ * - R1006 Heap and direct ByteBuffers can be fed.
+ *
+ * - R1007 The codec's listener is told about each value.
+ *
+ * @author Jin
+ */
+public class JsonThingFeederTest {
+
+    private static final String JSON =
+        "{\"name\":\"Ali\\u00e7e ç€\",\"badge_number\":107," +
+        "\"accuracy\":83.128,\"big\":123456789012345678901234567890," +
+        "\"district_ids\":[310,309,4294967296],\"scores\":[0.5,1.5]," +
+        "\"mixed\":[1,2.5,\"x\",null,true],\"empty\":{},\"none\":[]," +
+        "\"boss\":{\"name\":\"Bob\",\"tags\":[[1],[[2]]]},\"notes\":null}";
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonThingFeeder feed(
+        JsonThingFeeder feeder, byte[] bytes, int chunk)
+        throws IOException
+    {
+        for (int i = 0; i < bytes.length; i += chunk) {
+            feeder.feed(bytes, i, Math.min(chunk, bytes.length - i));
+        }
+        return feeder;
+    }
+
+    // - R1001 A document fed in chunks of any size parses to the same value
+    //   as JsonThing::parse gives.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        byte[] bytes = utf8(JSON);
+        JsonThing expected = JsonThing.parse(bytes);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            JsonThingFeeder feeder = feed(JsonThingFeeder.values(), bytes, chunk);
+            assertEquals(1, feeder.available());
+            JsonThing obj = feeder.endOfInput().poll();
+            assertTrue(feeder.isDone());
+            assertEquals(expected.asMap(), obj.asMap());
+            assertEquals(expected.toJson(), obj.toJson());
+            assertTrue(obj.get("district_ids").asObject() instanceof LongList);
+            assertTrue(obj.get("scores").asObject() instanceof DoubleList);
+            assertTrue(obj.get("mixed").asObject() instanceof ArrayList);
+            assertEquals(Integer.class, obj.get("badge_number").asObject().getClass());
+        }
+        JsonShapes shapes = new JsonShapes();
+        JsonThingCodec codec = JsonThingCodec.builder().shapes(shapes).build();
+        JsonThing shaped = feed(JsonThingFeeder.values(codec), bytes, 7)
+            .endOfInput()
+            .poll();
+        assertTrue(shaped.asObject() instanceof ShapedMap);
+        assertTrue(shaped.get("boss").asObject() instanceof ShapedMap);
+        assertEquals(expected.toJson(), shaped.toJson());
+        assertEquals("7", JsonThingFeeder.values()
+            .feed(utf8("7")).endOfInput().poll().toJson());
+    }
+
+    // - R1002 values() hands out each top level value as soon as its last
+    //   byte is fed.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonThingFeeder feeder = JsonThingFeeder.values();
+        feeder.feed(utf8("{\"a\":1}\n{\"a\""));
+        assertEquals(1, feeder.available());
+        assertEquals(1L, feeder.poll().getLong("a"));
+        assertNull(feeder.poll());
+        feeder.feed(utf8(":2}"));
+        assertEquals(2L, feeder.poll().getLong("a"));
+        feeder.feed(utf8("\n[3]\n\"x\" 4"));
+        assertEquals("[3]", feeder.poll().toJson());
+        assertEquals("x", feeder.poll().asString());
+        assertNull(feeder.poll());
+        assertFalse(feeder.isDone());
+        feeder.endOfInput();
+        assertEquals(4L, feeder.poll().longValue());
+        assertTrue(feeder.isDone());
+    }
+
+    // - R1003 elements() hands out each element of top level arrays.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonThingFeeder feeder = JsonThingFeeder.elements();
+        feeder.feed(utf8("[{\"a\":[1,2]},2,"));
+        assertEquals("{\"a\":[1,2]}", feeder.poll().toJson());
+        assertEquals(2L, feeder.poll().longValue());
+        feeder.feed(utf8("[3]] [4] []"));
+        feeder.endOfInput();
+        assertEquals("[3]", feeder.poll().toJson());
+        assertEquals(4L, feeder.poll().longValue());
+        assertTrue(feeder.isDone());
+    }
+
+    // - R1004 A handler is passed each value as it finishes. Once it returns
+    //   false, values are kept for poll().
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        List<JsonThing> handled = new ArrayList<>();
+        JsonThingFeeder feeder = JsonThingFeeder.elements().handler(value -> {
+            handled.add(value);
+            return handled.size() < 2;
+        });
+        feed(feeder, utf8("[1,2,3,4]"), 3).endOfInput();
+        assertEquals(2, handled.size());
+        assertEquals(2, feeder.available());
+        assertEquals(3L, feeder.poll().longValue());
+    }
+
+    // - R1005 Malformed input fails when fed, and input that ends part way
+    //   through a value fails at endOfInput().
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        for (String bad : new String[] {"{\"a\":}", "[1 2]", "{1:2}", "]"}) {
+            try {
+                JsonThingFeeder.values().feed(utf8(bad)).endOfInput();
+                fail(bad);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        for (String partial : new String[] {"{\"a\":1", "[1,", "\"abc", "[[]"}) {
+            JsonThingFeeder feeder = JsonThingFeeder.values().feed(utf8(partial));
+            try {
+                feeder.endOfInput();
+                fail(partial);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        try {
+            JsonThingFeeder.elements().feed(utf8("{}"));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            JsonThingFeeder.elements().feed(utf8("[1,2")).endOfInput();
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        JsonThingFeeder feeder = JsonThingFeeder.values().endOfInput();
+        assertTrue(feeder.isDone());
+        try {
+            feeder.feed(utf8("1"));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    // - R1006 Heap and direct ByteBuffers can be fed.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        byte[] bytes = utf8(JSON);
+        ByteBuffer heap = ByteBuffer.allocate(bytes.length + 10);
+        heap.position(5);
+        heap.put(bytes);
+        heap.flip();
+        heap.position(5);
+        ByteBuffer direct = ByteBuffer.allocateDirect(20000);
+        for (int i = 0; i < 20000 / (bytes.length + 1); i++) {
+            direct.put(bytes).put((byte)'\n');
+        }
+        direct.flip();
+        int records = direct.remaining() / (bytes.length + 1);
+        JsonThingFeeder feeder = JsonThingFeeder.values();
+        feeder.feed(heap).feed(direct).endOfInput();
+        assertFalse(heap.hasRemaining());
+        assertFalse(direct.hasRemaining());
+        assertEquals(1 + records, feeder.available());
+        JsonThing obj;
+        while ((obj = feeder.poll()) != null) {
+            assertEquals(JsonThing.parse(JSON).toJson(), obj.toJson());
+        }
+    }
+
+    // - R1007 The codec's listener is told about each value.
+    //
+    @Test
+    public void test_R1007() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        JsonThingFeeder feeder = JsonThingFeeder.elements(codec);
+        feed(feeder, utf8("[{\"a\":[1]}, 22 ,[]]"), 2).endOfInput();
+        assertEquals(3, feeder.available());
+        assertEquals(3, metrics.getParseCount());
+        assertTrue(metrics.getBytesIn() >= 9 + 2 + 2);
+        assertTrue(metrics.getBytesIn() <= 19);
+        assertEquals(2, metrics.getDocumentDepthMax());
+        try {
+            JsonThingFeeder.values(codec).feed(utf8("{]"));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, metrics.getParseFailures());
+    }
+}
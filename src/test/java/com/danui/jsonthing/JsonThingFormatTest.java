@@ -0,0 +1,106 @@
+package com.danui.jsonthing;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingFormatTest
+ *
+ * R10xx Encoding and decoding
+ *
+ * - R1001 JsonThingFormat.JSON encodes a thing as UTF-8 JSON, the same text
+ *   as toJson().
+ *
+ * - R1002 A thing encoded with toBytes(SMILE) and read back with
+ *   parse(bytes, SMILE) has the same values, with numbers in the smallest
+ *   type that fits them.
+ *
+ * - R1003 Lazily parsed things can be encoded in binary formats, whether or
+ *   not they have been read or modified.
+ *
+ * - R1004 JsonThingFormat.of(factory) provides a format for any Jackson
+ *   JsonFactory.
+ *
+ * @author Jin
+ */
+public class JsonThingFormatTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"badge_number\":107," +
+        "\"big\":9000000000,\"accuracy\":83.128,\"active\":false," +
+        "\"notes\":null,\"district_ids\":[310,309,308]," +
+        "\"scores\":[0.5,1.5],\"mixed\":[1,\"x\",2.5,true]," +
+        "\"boss\":{\"name\":\"Bob\",\"tags\":[]}}";
+
+    // - R1001 JsonThingFormat.JSON encodes a thing as UTF-8 JSON, the same
+    //   text as toJson().
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThing obj = JsonThing.parse(JSON);
+        byte[] bytes = obj.toBytes(JsonThingFormat.JSON);
+        assertEquals(obj.toJson(), new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(
+            obj.asMap(),
+            JsonThing.parse(bytes, JsonThingFormat.JSON).asMap());
+    }
+
+    // - R1002 A thing encoded with toBytes(SMILE) and read back with
+    //   parse(bytes, SMILE) has the same values, with numbers in the smallest
+    //   type that fits them.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonThing obj = JsonThing.parse(JSON);
+        byte[] bytes = obj.toBytes(JsonThingFormat.SMILE);
+        JsonThing copy = JsonThing.parse(bytes, JsonThingFormat.SMILE);
+        assertEquals(obj.asMap(), copy.asMap());
+        assertEquals(Integer.class, copy.get("badge_number").asObject().getClass());
+        assertEquals(Long.class, copy.get("big").asObject().getClass());
+        assertEquals(Double.class, copy.get("accuracy").asObject().getClass());
+        assertArrayEquals(
+            new long[] {310, 309, 308}, copy.get("district_ids").asLongArray());
+        assertEquals(Arrays.asList(1, "x", 2.5, true), copy.get("mixed").asList());
+        assertEquals(JSON, copy.toJson());
+        assertNull(JsonThing.parse(
+            JsonThing.wrap(null).toBytes(JsonThingFormat.SMILE),
+            JsonThingFormat.SMILE).asObject());
+        JsonThing small = JsonThing.parse(
+            JsonThing.wrap(5L).toBytes(JsonThingFormat.SMILE),
+            JsonThingFormat.SMILE);
+        assertEquals(Integer.valueOf(5), small.asObject());
+    }
+
+    // - R1003 Lazily parsed things can be encoded in binary formats, whether
+    //   or not they have been read or modified.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonThing lazy = JsonThing.parseLazy(JSON);
+        assertEquals(
+            JSON,
+            JsonThing.parse(
+                lazy.toBytes(JsonThingFormat.SMILE),
+                JsonThingFormat.SMILE).toJson());
+        lazy.get("boss").put("name", "Trent");
+        JsonThing copy = JsonThing.parse(
+            lazy.toBytes(JsonThingFormat.SMILE), JsonThingFormat.SMILE);
+        assertEquals("Trent", copy.get("boss").get("name").asString());
+        assertEquals(JsonThing.parse(lazy.toJson()).asMap(), copy.asMap());
+    }
+
+    // - R1004 JsonThingFormat.of(factory) provides a format for any Jackson
+    //   JsonFactory.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        JsonThingFormat format = JsonThingFormat.of(new SmileFactory());
+        JsonThing obj = JsonThing.parse(JSON);
+        assertEquals(
+            obj.asMap(),
+            JsonThing.parse(obj.toBytes(format), format).asMap());
+    }
+}
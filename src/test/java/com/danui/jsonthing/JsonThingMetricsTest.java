@@ -0,0 +1,273 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingMetricsTest
+ *
+ * R10xx Metrics
+ *
+ * - R1001 A codec with metrics counts each parse, with its length and
+ *   depth.
+ *
+ * - R1002 A codec with metrics counts each encode, with its length, by
+ *   every encoding method.
+ *
+ * - R1003 Failed parses are counted, and the error still reaches the
+ *   caller.
+ *
+ * - R1004 Streams read and written with a codec count each record.
+ *
+ * - R1005 Histograms report percentiles to within 1/32.
+ *
+ * - R1006 Metrics can be registered with and read through JMX.
+ *
+ * - R1007 A listener is told about each call, including with databind.
+ *
+ * - R1008 Lengths are in UTF-8 bytes, whether the JSON is read from or
+ *   written to bytes, Strings, Readers or Writers.
+ *
+ * @author Jin
+ */
+public class JsonThingMetricsTest {
+
+    private static final String JSON =
+        "{\"name\":\"Alice\",\"boss\":{\"ids\":[1,2]},\"n\":1}";
+
+    // - R1001 A codec with metrics counts each parse, with its length and
+    //   depth.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        assertEquals(JsonThing.parse(JSON).asMap(), codec.parse(JSON).asMap());
+        codec.parse(bytes);
+        codec.parse(new ByteArrayInputStream(bytes));
+        codec.parse("7");
+        assertEquals(4, metrics.getParseCount());
+        assertEquals(0, metrics.getParseFailures());
+        assertEquals(3 * JSON.length() + 1, metrics.getBytesIn());
+        assertEquals(JSON.length(), metrics.getDocumentLengthMax());
+        assertEquals(3, metrics.getDocumentDepthMax());
+        assertEquals(0, metrics.documentDepth().percentile(0));
+        assertEquals(4, metrics.parseNanos().count());
+        assertTrue(metrics.parseNanos().max() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.getParseCount());
+        assertEquals(0, metrics.getBytesIn());
+        assertEquals(0, metrics.getDocumentDepthMax());
+    }
+
+    // - R1002 A codec with metrics counts each encode, with its length, by
+    //   every encoding method.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        JsonThing obj = JsonThing.parse(JSON);
+        assertEquals(JSON, codec.toJson(obj));
+        assertEquals(JSON.length(), codec.toBytes(obj).length);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        obj.writeTo(bytes, codec);
+        assertEquals(JSON, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        StringWriter chars = new StringWriter();
+        codec.writeTo(obj, chars);
+        assertEquals(JSON, chars.toString());
+        assertEquals(4, metrics.getEncodeCount());
+        assertEquals(4 * JSON.length(), metrics.getBytesOut());
+        assertEquals(0, metrics.getParseCount());
+    }
+
+    // - R1003 Failed parses are counted, and the error still reaches the
+    //   caller.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        for (String bad : new String[] {"", "{", "[1,}"}) {
+            try {
+                codec.parse(bad);
+                fail(bad);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        assertEquals(3, metrics.getParseFailures());
+        assertEquals(0, metrics.getParseCount());
+    }
+
+    // - R1004 Streams read and written with a codec count each record.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonThingStreamWriter writer = JsonThingStreamWriter.to(out, codec)) {
+            for (int i = 0; i < 3; i++) {
+                writer.write(JsonThing.parse(JSON));
+            }
+        }
+        assertEquals(3, metrics.getEncodeCount());
+        assertEquals(out.size(), metrics.getBytesOut());
+        assertEquals(3 * (JSON.length() + 1), out.size());
+        List<JsonThing> records = new ArrayList<>();
+        try (JsonThingStream in = JsonThingStream.of(
+            new ByteArrayInputStream(out.toByteArray()), codec))
+        {
+            in.forEach(records::add);
+        }
+        assertEquals(3, records.size());
+        assertEquals(JSON, records.get(2).toJson());
+        assertEquals(3, metrics.getParseCount());
+        assertEquals(3 * JSON.length(), metrics.getBytesIn());
+        assertEquals(JSON.length(), metrics.getDocumentLengthMedian());
+        assertEquals(3, metrics.getDocumentDepthMedian());
+    }
+
+    // - R1005 Histograms report percentiles to within 1/32.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        JsonThingMetrics.Histogram histogram = new JsonThingMetrics.Histogram();
+        assertEquals(0, histogram.percentile(50));
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100000, histogram.count());
+        assertEquals(100000, histogram.max());
+        assertEquals(50000.5, histogram.mean(), 0.001);
+        for (double p : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            double expected = p * 1000;
+            long actual = histogram.percentile(p);
+            assertTrue(p + ": " + actual, actual >= expected);
+            assertTrue(p + ": " + actual, actual <= expected * 33 / 32);
+        }
+        for (int i = 0; i < 32; i++) {
+            assertEquals(i, JsonThingMetrics.Histogram.highest(
+                JsonThingMetrics.Histogram.index(i)));
+        }
+        long previous = -1;
+        for (long v = 0; v < 1L << 20; v += 7) {
+            int index = JsonThingMetrics.Histogram.index(v);
+            assertTrue(JsonThingMetrics.Histogram.highest(index) >= v);
+            assertTrue(index >= previous);
+            previous = index;
+        }
+        assertTrue(JsonThingMetrics.Histogram.index(Long.MAX_VALUE) < 64 * 32);
+    }
+
+    // - R1006 Metrics can be registered with and read through JMX.
+    //
+    @Test
+    public void test_R1006() throws Exception {
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        codec.parse(JSON);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("test:R1006");
+        try {
+            assertEquals(1L, server.getAttribute(name, "ParseCount"));
+            assertEquals((long)JSON.length(), server.getAttribute(name, "BytesIn"));
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "ParseCount"));
+        } finally {
+            metrics.unregister("test:R1006");
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    // - R1007 A listener is told about each call, including with databind.
+    //
+    @Test
+    public void test_R1007() throws Exception {
+        List<String> events = new ArrayList<>();
+        JsonThingListener listener = new JsonThingListener() {
+            @Override
+            public void parsed(long nanos, long length, int depth) {
+                events.add("parsed " + length + " " + depth);
+            }
+
+            @Override
+            public void parseFailed(long nanos, Exception error) {
+                events.add("failed");
+            }
+        };
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(listener)
+            .databind(true)
+            .build();
+        assertEquals(JSON, codec.parse(JSON).toJson());
+        assertEquals(JSON, codec.toJson(codec.parse(JSON)));
+        try {
+            codec.parse("");
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(3, events.size());
+        assertEquals("parsed " + JSON.length() + " -1", events.get(0));
+        assertEquals("failed", events.get(2));
+    }
+
+    // - R1008 Lengths are in UTF-8 bytes, whether the JSON is read from or
+    //   written to bytes, Strings, Readers or Writers.
+    //
+    @Test
+    public void test_R1008() throws Exception {
+        String json = "{\"name\":\"Zo\u00eb \u6771\u4eac \ud83d\ude00\"}";
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        assertTrue(utf8.length > json.length());
+        JsonThingMetrics metrics = new JsonThingMetrics();
+        JsonThingCodec codec = JsonThingCodec.builder()
+            .listener(metrics)
+            .build();
+        JsonThing obj = codec.parse(json);
+        codec.parse(utf8);
+        codec.parse(new StringReader(json));
+        codec.parse(new StringReader(json + "   \n"));
+        assertEquals(4 * utf8.length, metrics.getBytesIn());
+        assertEquals(utf8.length, metrics.getDocumentLengthMax());
+        assertEquals(json, codec.toJson(obj));
+        codec.writeTo(obj, new StringWriter());
+        // Jackson escapes the surrogate pair when writing bytes.
+        byte[] bytes = codec.toBytes(obj);
+        assertEquals(2 * utf8.length + bytes.length, metrics.getBytesOut());
+
+        JsonProjection projection = JsonProjection.builder()
+            .field("name", JsonProjection.Type.STRING, "name")
+            .codec(codec)
+            .build();
+        metrics.reset();
+        projection.project(json);
+        projection.project(utf8);
+        // Both stop reading before the closing brace.
+        assertEquals(2 * (utf8.length - 1), metrics.getBytesIn());
+    }
+}
@@ -0,0 +1,190 @@
+package com.danui.jsonthing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingParallelReaderTest
+ *
+ * R10xx NDJSON
+ *
+ * - R1001 ndjson() reads the same records, in the same order, as
+ *   JsonThingStream does, whatever the chunk size and parallelism.
+ *
+ * R20xx Arrays
+ *
+ * - R2001 array() reads the elements of a root array in order, including
+ *   elements containing strings with commas, brackets and escaped quotes.
+ *
+ * - R2002 array() reads nothing from an empty array.
+ *
+ * - R2003 array() throws IOException if the root is not an array.
+ *
+ * - R2004 array() throws IOException if elements are not separated by
+ *   exactly one comma, wherever the chunks are cut.
+ *
+ * R30xx Ordering
+ *
+ * - R3001 With ordered(false) every record is still read exactly once.
+ *
+ * @author Jin
+ */
+public class JsonThingParallelReaderTest {
+
+    private final List<Path> files = new ArrayList<>();
+
+    @After
+    public void cleanUp() throws IOException {
+        for (Path path : files) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private Path file(String contents) throws IOException {
+        Path path = Files.createTempFile("JsonThingParallelReaderTest", ".json");
+        files.add(path);
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private static JsonThing record(int i) {
+        return JsonThing.newMap()
+            .put("pin", i)
+            .put("name", "n, [\"" + i + "\"] {")
+            .put("ids", JsonThing.newList().add(i).add(i + 1));
+    }
+
+    private static String ndjson(int n) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(record(i).toJson()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<Object> objects(List<JsonThing> things) {
+        List<Object> objects = new ArrayList<>();
+        for (JsonThing thing : things) {
+            objects.add(thing.asObject());
+        }
+        return objects;
+    }
+
+    // - R1001 ndjson() reads the same records, in the same order, as
+    //   JsonThingStream does, whatever the chunk size and parallelism.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        Path path = file(ndjson(2000));
+        List<JsonThing> expected = new ArrayList<>();
+        try (JsonThingStream in = JsonThingStream.of(path)) {
+            in.forEach(expected::add);
+        }
+        for (int chunkSize : new int[] {1, 100, 5000, 1 << 20}) {
+            for (int parallelism : new int[] {1, 3}) {
+                List<JsonThing> actual = JsonThingParallelReader.ndjson(path)
+                    .chunkSize(chunkSize)
+                    .parallelism(parallelism)
+                    .readAll();
+                assertEquals("chunkSize=" + chunkSize,
+                    objects(expected), objects(actual));
+            }
+        }
+    }
+
+    // - R2001 array() reads the elements of a root array in order, including
+    //   elements containing strings with commas, brackets and escaped quotes.
+    //
+    @Test
+    public void test_R2001() throws Exception {
+        JsonThing list = JsonThing.newList();
+        for (int i = 0; i < 500; i++) {
+            list.add(record(i));
+        }
+        list.add("tail \\\" , ]").add(7).add(JsonThing.newList());
+        Path path = file(" \n" + list.toJson() + "\n");
+        for (int chunkSize : new int[] {1, 1000, 1 << 20}) {
+            assertEquals("chunkSize=" + chunkSize,
+                list.asList(),
+                objects(JsonThingParallelReader.array(path)
+                    .chunkSize(chunkSize)
+                    .parallelism(4)
+                    .readAll()));
+        }
+    }
+
+    // - R2002 array() reads nothing from an empty array.
+    //
+    @Test
+    public void test_R2002() throws Exception {
+        assertEquals(0,
+            JsonThingParallelReader.array(file("[ ]")).readAll().size());
+    }
+
+    // - R2003 array() throws IOException if the root is not an array.
+    //
+    @Test(expected=IOException.class)
+    public void test_R2003() throws Exception {
+        JsonThingParallelReader.array(file("{\"a\":[1,2]}")).readAll();
+    }
+
+    // - R2004 array() throws IOException if elements are not separated by
+    //   exactly one comma, wherever the chunks are cut.
+    //
+    @Test
+    public void test_R2004() throws Exception {
+        String[] malformed = {
+            "[1 2, 3]",
+            "[1, 2 3]",
+            "[1,,2]",
+            "[1, 2,, 3]",
+            "[,1, 2]",
+            "[1, 2,]",
+            "[,]",
+            "[{\"a\":1} {\"b\":2}]",
+        };
+        for (String json : malformed) {
+            Path path = file(json);
+            for (int chunkSize : new int[] {1, 2, 3, 1 << 20}) {
+                try {
+                    JsonThingParallelReader.array(path)
+                        .chunkSize(chunkSize)
+                        .parallelism(2)
+                        .readAll();
+                    fail("Expected IOException: " + json
+                        + " chunkSize=" + chunkSize);
+                } catch (IOException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    // - R3001 With ordered(false) every record is still read exactly once.
+    //
+    @Test
+    public void test_R3001() throws Exception {
+        Path path = file(ndjson(3000));
+        List<JsonThing> records = JsonThingParallelReader.ndjson(path)
+            .chunkSize(2000)
+            .parallelism(4)
+            .ordered(false)
+            .readAll();
+        List<Long> pins = new ArrayList<>();
+        for (JsonThing record : records) {
+            pins.add(record.get("pin").longValue());
+        }
+        Collections.sort(pins);
+        assertEquals(3000, pins.size());
+        for (int i = 0; i < pins.size(); i++) {
+            assertEquals(i, pins.get(i).longValue());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingStreamTest
+ *
+ * R10xx Reading records
+ *
+ * - R1001 read() returns each record in turn, then null at the end of the
+ *   input.
+ *
+ * - R1002 Records may be separated by newlines or any other whitespace, and
+ *   may be any JSON value.
+ *
+ * - R1003 iterator() and stream() return the records in order.
+ *
+ * - R1004 readEach() pushes records to a Handler until it returns false, and
+ *   returns the number of records pushed.
+ *
+ * - R1005 JsonThingStream::of reads records from a file.
+ *
+ * - R1006 read() throws IOException on a malformed record.
+ *
+ * @author Jin
+ */
+public class JsonThingStreamTest {
+
+    private static final String NDJSON =
+        "{\"name\":\"Alice\",\"pin\":9001}\n" +
+        "{\"name\":\"Bob\",\"pin\":9002}\n" +
+        "\n" +
+        "{\"name\":\"Liz\",\"pin\":5678}\n";
+
+    private static JsonThingStream stream(String s) throws IOException {
+        return JsonThingStream.of(
+            new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // - R1001 read() returns each record in turn, then null at the end of the
+    //   input.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        try (JsonThingStream in = stream(NDJSON)) {
+            assertEquals("Alice", in.read().get("name").asString());
+            assertEquals("Bob", in.read().get("name").asString());
+            assertEquals(5678L, in.read().get("pin").longValue());
+            assertNull(in.read());
+            assertNull(in.read());
+        }
+    }
+
+    // - R1002 Records may be separated by newlines or any other whitespace,
+    //   and may be any JSON value.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        try (JsonThingStream in = stream("[1,2] \"x\"\r\n{}\t3 null")) {
+            assertEquals(Arrays.asList(1, 2), in.read().asList());
+            assertEquals("x", in.read().asString());
+            assertEquals(0, in.read().asMap().size());
+            assertEquals(3L, in.read().longValue());
+            assertNull(in.read().asObject());
+            assertNull(in.read());
+        }
+    }
+
+    // - R1003 iterator() and stream() return the records in order.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        List<String> names = new ArrayList<>();
+        try (JsonThingStream in = stream(NDJSON)) {
+            for (JsonThing record : in) {
+                names.add(record.get("name").asString());
+            }
+        }
+        assertEquals(Arrays.asList("Alice", "Bob", "Liz"), names);
+
+        try (JsonThingStream in = stream(NDJSON)) {
+            Iterator<JsonThing> it = in.iterator();
+            assertTrue(it.hasNext());
+            assertTrue(it.hasNext());
+            assertEquals("Alice", it.next().get("name").asString());
+        }
+
+        assertEquals(
+            Arrays.asList(9001L, 9002L, 5678L),
+            stream(NDJSON).stream()
+                .map(x -> x.get("pin").longValue())
+                .collect(Collectors.toList()));
+    }
+
+    // - R1004 readEach() pushes records to a Handler until it returns false,
+    //   and returns the number of records pushed.
+    //
+    @Test
+    public void test_R1004() throws Exception {
+        List<String> names = new ArrayList<>();
+        try (JsonThingStream in = stream(NDJSON)) {
+            long n = in.readEach(record -> {
+                names.add(record.get("name").asString());
+                return names.size() < 2;
+            });
+            assertEquals(2, n);
+            assertEquals("Liz", in.read().get("name").asString());
+        }
+        assertEquals(Arrays.asList("Alice", "Bob"), names);
+
+        try (JsonThingStream in = stream(NDJSON)) {
+            assertEquals(3, in.readEach(record -> true));
+        }
+    }
+
+    // - R1005 JsonThingStream::of reads records from a file.
+    //
+    @Test
+    public void test_R1005() throws Exception {
+        Path path = Files.createTempFile("JsonThingStreamTest", ".ndjson");
+        try {
+            Files.write(path, NDJSON.getBytes(StandardCharsets.UTF_8));
+            try (JsonThingStream in = JsonThingStream.of(path)) {
+                assertEquals(3, in.readEach(record -> true));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    // - R1006 read() throws IOException on a malformed record.
+    //
+    @Test(expected=IOException.class)
+    public void test_R1006() throws Exception {
+        try (JsonThingStream in = stream("{\"a\":1}\n{\"a\":\n")) {
+            in.read();
+            in.read();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingStreamWriterTest
+ *
+ * R10xx Writing records
+ *
+ * - R1001 write() writes each record as JSON on a line of its own.
+ *
+ * - R1002 What JsonThingStreamWriter writes, JsonThingStream reads back.
+ *
+ * @author Jin
+ */
+public class JsonThingStreamWriterTest {
+
+    // - R1001 write() writes each record as JSON on a line of its own.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonThingStreamWriter w = JsonThingStreamWriter.to(out)) {
+            w.write(JsonThing.newMap().put("a", 1))
+                .write(JsonThing.newList().add("b"))
+                .write(JsonThing.wrap(null));
+        }
+        assertEquals("{\"a\":1}\n[\"b\"]\nnull\n",
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    // - R1002 What JsonThingStreamWriter writes, JsonThingStream reads back.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        Path path = Files.createTempFile("JsonThingStreamWriterTest", ".ndjson");
+        try {
+            try (JsonThingStreamWriter w = JsonThingStreamWriter.to(path)) {
+                for (int i = 0; i < 1000; i++) {
+                    w.write(JsonThing.newMap()
+                        .put("pin", i)
+                        .put("name", "n\n" + i));
+                }
+            }
+            try (JsonThingStream in = JsonThingStream.of(path)) {
+                long[] next = {0};
+                assertEquals(1000, in.readEach(record -> {
+                    assertEquals(next[0], record.get("pin").longValue());
+                    assertEquals("n\n" + next[0], record.get("name").asString());
+                    next[0] += 1;
+                    return true;
+                }));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package com.danui.jsonthing;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -44,6 +58,23 @@ import static org.junit.Assert.*;
  *   Float, Long, or Integer.
  * - R1109 booleanValue throws ClassCastException if the thing is not a Boolean.
  *
+ * R12xx equals(), hashCode() and deepCopy()
+ *
+ * - R1201 equals() compares JSON values: maps by their members in any order,
+ *   lists by their elements, and numbers by value, whatever kind of map,
+ *   list or number holds them.
+ *
+ * - R1202 hashCode() is consistent with equals(), including for frozen
+ *   things, whose hash is kept.
+ *
+ * - R1203 deepCopy() returns an equal thing that can be changed without
+ *   changing the original. Ordered maps stay ordered, lists of numbers stay
+ *   primitive and frozen parts are shared.
+ *
+ * - R1204 Numbers are equal, and hash the same, if they have the same value,
+ *   including BigDecimals and BigIntegers as parsed by a codec with
+ *   bigDecimalFloats, whatever their scale.
+ *
  * R20xx Navigation using gets.
  *
  * - R2001 get(key: String) navigates a Map and returns a JsonThing that wraps
@@ -56,6 +87,18 @@ import static org.junit.Assert.*;
  *
  * - R2004 get(idx: int) can work with list values of mixed types.
  *
+ * - R2005 getObject(path...), getString(path...), getLong(path...),
+ *   getDouble(path...) and getBoolean(path...) navigate through Maps (String
+ *   path elements) and Lists (Integer path elements) and return the value at
+ *   the end of the path.
+ *
+ * - R2006 The path accessors return null, or throw NullPointerException for
+ *   primitive results, if the path leads to a missing value, or to a value
+ *   that is not the Map or List the path needs.
+ *
+ * - R2007 asListOfThings() returns a view of the list that wraps each
+ *   element, and shows later changes to the list.
+ *
  * R30xx is()
  *
  * - R3001 is(key: String) returns true if the thing is a map with a true
@@ -80,6 +123,117 @@ import static org.junit.Assert.*;
  *
  * - R5003 JsonThing::toString is not the same as toJson.
  *
+ * - R5004 JsonThing::parse parses JSON from an InputStream.
+ *
+ * - R5005 JsonThing::parse parses JSON from a Reader.
+ *
+ * - R5006 JsonThing::parse parses JSON from a region of a byte array.
+ *
+ * - R5007 JsonThing::parse parses JSON between the position and limit of a
+ *   ByteBuffer, without moving its position.
+ *
+ * - R5008 JsonThing::writeTo writes the same JSON as toJson to an
+ *   OutputStream or a Writer, without closing it.
+ *
+ * - R5009 JsonThing::writeTo writes UTF-8 JSON into a ByteBuffer, advancing
+ *   its position.
+ *
+ * - R5010 JsonThing::parse and JsonThing::parseLazy accept any JSON value at
+ *   the root: object, array, string, number, boolean or null.
+ *
+ * R51xx Cached encodings
+ *
+ * - R5101 newCachedMap(), newCachedList() and cached() make things that read
+ *   and encode like newMap() and newList().
+ *
+ * - R5102 toJson() on a cached thing reflects every change made since the
+ *   last encode, however deep and however made: put(), add(), remove(),
+ *   set(), clear(), iterators and map entries.
+ *
+ * - R5103 A cached list or map that is a member of two cached things passes
+ *   its changes to both.
+ *
+ * - R5104 Cached things holding plain maps or lists, frozen things or lazily
+ *   parsed things encode correctly, including after the plain members
+ *   change.
+ *
+ * - R5105 Cached things encode correctly with a pretty printer and to SMILE.
+ *
+ * R60xx Lazy parsing
+ *
+ * - R6001 JsonThing::parseLazy parses JSON into a JsonThing that reads the
+ *   same as one produced by JsonThing::parse.
+ *
+ * - R6002 JsonThing::toJson on an unmodified lazily parsed thing returns the
+ *   original JSON text if it has no whitespace outside of strings, and
+ *   otherwise the same JSON as JsonThing::parse would give.
+ *
+ * - R6003 A lazily parsed thing can be modified with put() and add(), and
+ *   toJson reflects the modifications.
+ *
+ * - R6004 JsonThing::parseLazy throws IOException on malformed JSON, and on
+ *   anything but whitespace after the root value.
+ *
+ * - R6005 JsonThing::map reads a file into a JsonThing that reads the same as
+ *   one produced by JsonThing::parse, and encodes to the file's contents.
+ *
+ * - R6006 A JsonThing read by JsonThing::map is read-only: put(), add() and
+ *   changes through asMap() or asList() throw UnsupportedOperationException.
+ *
+ * - R6007 JsonThing::map throws IOException on malformed JSON, and on
+ *   anything but whitespace after the root value.
+ *
+ * - R6008 Unmodified things read by JsonThing::parseLazy or JsonThing::map
+ *   can be read from many threads at once, and a member reads as the same
+ *   object in every thread.
+ *
+ * R70xx Lists of numbers
+ *
+ * - R7001 JsonThing::parse stores arrays made up only of integers, or only of
+ *   floating point numbers, in primitive arrays. They read and encode exactly
+ *   as other lists do.
+ *
+ * - R7002 asLongArray() and asDoubleArray() return the numbers in a list as a
+ *   primitive array.
+ *
+ * - R7003 longAt(idx: int) and doubleAt(idx: int) return the idx'th number
+ *   in a list as a primitive.
+ *
+ * - R7004 Lists of numbers accept values of any type through add() and put().
+ *
+ * - R7005 newLongList(values...) and newDoubleList(values...) create lists of
+ *   numbers.
+ *
+ * R80xx Frozen things
+ *
+ * - R8001 freeze() returns an immutable copy that reads and encodes the same
+ *   as the original. put() and add() on it throw
+ *   UnsupportedOperationException.
+ *
+ * - R8002 with(), without() and withAdded() on a frozen thing return an
+ *   updated copy, leave the original unchanged, and share the parts that
+ *   were not updated.
+ *
+ * - R8003 Frozen maps and lists read the same as a HashMap and an ArrayList
+ *   given the same updates.
+ *
+ * - R8004 with(), without() and withAdded() throw ClassCastException on a
+ *   thing that is not frozen.
+ *
+ * R90xx Concurrent things
+ *
+ * - R9001 newConcurrentMap() and newConcurrentList() read, update and encode
+ *   like newMap() and newList().
+ *
+ * - R9002 increment(key) and increment(key, delta) add to a number, and are
+ *   atomic on a concurrent map.
+ *
+ * - R9003 putIfAbsent(key, value) and compute(key, fn) update a map, and are
+ *   atomic on a concurrent map.
+ *
+ * - R9004 toJson() on a concurrent map that is being updated encodes a
+ *   consistent snapshot.
+ *
  * @author Jin
  */
 public class JsonThingTest {
@@ -339,6 +493,189 @@ public class JsonThingTest {
         JsonThing.wrap("true").booleanValue();
     }
 
+    // - R1201 equals() compares JSON values: maps by their members in any
+    //   order, lists by their elements, and numbers by value, whatever kind
+    //   of map, list or number holds them.
+    //
+    @Test
+    public void test_R1201() throws Exception {
+        String json = "{\"a\":[1,2,3],\"b\":{\"c\":1.5,\"d\":null},"
+            + "\"e\":\"f\",\"g\":[{\"h\":true}],\"i\":4}";
+        JsonThing plain = JsonThing.parse(json);
+        JsonThing[] same = {
+            JsonThing.parse(json),
+            JsonThing.parseLazy(json),
+            plain.freeze(),
+            plain.cached(),
+            new JsonShapes().parse(json),
+            JsonThing.parse(
+                "{\"i\":4.0,\"g\":[{\"h\":true}],\"e\":\"f\","
+                + "\"b\":{\"d\":null,\"c\":1.5},\"a\":[1,2.0,3]}"),
+            JsonThing.newMap()
+                .put("a", JsonThing.newList().add(1L).add(2).add(3.0f))
+                .put("b", JsonThing.newMap().put("c", 1.5f).put("d", null))
+                .put("e", "f")
+                .put("g", JsonThing.newList().add(
+                    JsonThing.newMap().put("h", true)))
+                .put("i", 4L),
+        };
+        for (JsonThing other : same) {
+            assertEquals(plain, other);
+            assertEquals(other, plain);
+        }
+        assertEquals(JsonThing.newLongList(1, 2), JsonThing.parse("[1,2]"));
+        assertEquals(JsonThing.newDoubleList(1, 2.5),
+            JsonThing.parse("[1,2.5]"));
+        assertEquals(JsonThing.wrap(null), JsonThing.wrap(null));
+        assertEquals(JsonThing.wrap(Long.MAX_VALUE),
+            JsonThing.wrap(Long.MAX_VALUE));
+
+        JsonThing[] different = {
+            JsonThing.parse("{\"a\":[1,2,3]}"),
+            JsonThing.parse(json.replace("1.5", "1.25")),
+            JsonThing.parse(json.replace("null", "0")),
+            JsonThing.parse(json.replace("[1,2,3]", "[1,3,2]")),
+            JsonThing.parse(json.replace("\"d\"", "\"D\"")),
+            plain.freeze().with("i", 5),
+            JsonThing.parse("[1,2,3]"),
+            JsonThing.wrap(null),
+            JsonThing.wrap("x"),
+        };
+        for (JsonThing other : different) {
+            assertFalse(other.toJson(), plain.equals(other));
+            assertFalse(other.toJson(), other.equals(plain));
+        }
+        assertFalse(plain.equals(plain.asObject()));
+        assertFalse(JsonThing.wrap(1).equals(JsonThing.wrap(1.5)));
+        assertFalse(JsonThing.wrap(1).equals(JsonThing.wrap("1")));
+        assertFalse(JsonThing.wrap(Long.MAX_VALUE)
+            .equals(JsonThing.wrap((double)Long.MAX_VALUE)));
+        assertFalse(JsonThing.newLongList(1, 2)
+            .equals(JsonThing.newLongList(1, 3)));
+    }
+
+    // - R1202 hashCode() is consistent with equals(), including for frozen
+    //   things, whose hash is kept.
+    //
+    @Test
+    public void test_R1202() throws Exception {
+        String json = "{\"a\":[1,2,3],\"b\":{\"c\":1.5,\"d\":null},"
+            + "\"e\":\"f\",\"i\":4}";
+        JsonThing plain = JsonThing.parse(json);
+        JsonThing frozen = plain.freeze();
+        int hash = plain.hashCode();
+        assertEquals(hash, frozen.hashCode());
+        assertEquals(hash, frozen.hashCode());
+        assertEquals(hash, plain.cached().hashCode());
+        assertEquals(hash, JsonThing.parseLazy(json).hashCode());
+        assertEquals(hash, JsonThing.parse(
+            "{\"i\":4.0,\"e\":\"f\",\"b\":{\"d\":null,\"c\":1.5},"
+            + "\"a\":[1.0,2,3]}").hashCode());
+        assertEquals(JsonThing.wrap(3).hashCode(),
+            JsonThing.wrap(3.0).hashCode());
+        assertEquals(JsonThing.wrap(0).hashCode(),
+            JsonThing.wrap(-0.0).hashCode());
+        assertEquals(JsonThing.newLongList(1, 2).hashCode(),
+            JsonThing.parse("[1.0,2]").hashCode());
+
+        HashSet<JsonThing> set = new HashSet<>();
+        set.add(plain);
+        set.add(frozen);
+        set.add(JsonThing.parse(json));
+        set.add(frozen.with("i", 5));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(JsonThing.parseLazy(json)));
+    }
+
+    // - R1203 deepCopy() returns an equal thing that can be changed without
+    //   changing the original. Ordered maps stay ordered, lists of numbers
+    //   stay primitive and frozen parts are shared.
+    //
+    @Test
+    public void test_R1203() throws Exception {
+        JsonThing frozen = JsonThing.newMap().put("f", 1).freeze();
+        JsonThing thing = JsonThing.parse(
+            "{\"a\":{\"b\":[1,{\"c\":2}]},\"d\":[1,2,3],\"e\":[1.5]}")
+            .put("frozen", frozen)
+            .put("ordered", JsonThing.newCachedMap().put("z", 1).put("y", 2));
+        JsonThing copy = thing.deepCopy();
+        assertEquals(thing, copy);
+        assertNotSame(thing.asObject(), copy.asObject());
+        assertSame(frozen.asObject(), copy.getObject("frozen"));
+        assertTrue(copy.getObject("d") instanceof LongList);
+        assertTrue(copy.getObject("e") instanceof DoubleList);
+        assertEquals("{\"z\":1,\"y\":2}", copy.get("ordered").toJson());
+        String before = thing.toJson();
+        copy.get("a").get("b").get(1).put("c", 3);
+        copy.get("d").add(4);
+        copy.get("ordered").put("x", 3);
+        copy.put("g", 1);
+        assertEquals(before, thing.toJson());
+        assertNotEquals(thing, copy);
+        assertEquals(JsonThing.wrap("x"), JsonThing.wrap("x").deepCopy());
+        assertSame(frozen.asObject(), frozen.deepCopy().asObject());
+    }
+
+    // - R1204 Numbers are equal, and hash the same, if they have the same
+    //   value, including BigDecimals and BigIntegers as parsed by a codec
+    //   with bigDecimalFloats, whatever their scale.
+    //
+    @Test
+    public void test_R1204() throws Exception {
+        JsonThingCodec exact = JsonThingCodec.builder()
+            .bigDecimalFloats(true)
+            .build();
+        String[][] same = {
+            {"{\"v\":1.0}", "{\"v\":1.0}"},
+            {"{\"v\":1.0}", "{\"v\":1.00}"},
+            {"{\"v\":1.0}", "{\"v\":1}"},
+            {"[83.128, 0.1, -2.50]", "[83.128, 0.1, -2.5]"},
+            {"[1e20]", "[100000000000000000000]"},
+        };
+        for (String[] pair : same) {
+            for (JsonThing a : Arrays.asList(
+                     JsonThing.parse(pair[0]), JsonThing.parse(pair[0], exact)))
+            {
+                for (JsonThing b : Arrays.asList(
+                         JsonThing.parse(pair[1]),
+                         JsonThing.parse(pair[1], exact)))
+                {
+                    String m = pair[0] + " vs " + pair[1];
+                    assertEquals(m, a, b);
+                    assertEquals(m, b, a);
+                    assertEquals(m, a.hashCode(), b.hashCode());
+                }
+            }
+        }
+        assertNotEquals(
+            JsonThing.parse("{\"v\":1.0}", exact),
+            JsonThing.parse("{\"v\":1.01}"));
+        JsonThing big = JsonThing.parse("[12345678901234567890123]");
+        JsonThing bigDecimal =
+            JsonThing.parse("[12345678901234567890123.000]", exact);
+        assertEquals(big, bigDecimal);
+        assertEquals(big.hashCode(), bigDecimal.hashCode());
+        assertNotEquals(big, JsonThing.parse("[12345678901234567890123.0]"));
+        assertNotEquals(
+            JsonThing.parse("[9223372036854775808]"),
+            JsonThing.parse("[9223372036854775807]"));
+        assertEquals(
+            JsonThing.wrap(new java.math.BigDecimal("0.000")),
+            JsonThing.wrap(0));
+        assertEquals(
+            JsonThing.wrap(new java.math.BigDecimal("0.000")).hashCode(),
+            JsonThing.wrap(0).hashCode());
+
+        // JSON Patch tests compare the same way.
+        JsonThing doc = JsonThing.parse("{\"v\":1.00,\"w\":2}", exact);
+        doc.apply(JsonThing.parse(
+            "[{\"op\":\"test\",\"path\":\"/v\",\"value\":1}," +
+            "{\"op\":\"test\",\"path\":\"/w\",\"value\":2.0}]"));
+        assertEquals(0, JsonThing.diff(
+            JsonThing.parse("{\"v\":1.5}"),
+            JsonThing.parse("{\"v\":1.50}", exact)).asList().size());
+    }
+
     // - R2001 get(key: String) navigates a Map and returns a JsonThing that
     //   wraps the thing at 'key'.
     //
@@ -398,6 +735,89 @@ public class JsonThingTest {
         assertEquals(3.14d, thing.get(3).doubleValue(), 0.0);
     }
 
+    // - R2005 getObject(path...), getString(path...), getLong(path...),
+    //   getDouble(path...) and getBoolean(path...) navigate through Maps
+    //   (String path elements) and Lists (Integer path elements) and return
+    //   the value at the end of the path.
+    //
+    @Test
+    public void test_R2005() throws Exception {
+        JsonThing thing = JsonThing.newMap()
+            .put("a", JsonThing.newMap()
+                .put("b", JsonThing.newList()
+                    .add("zero")
+                    .add(1)
+                    .add(2.5)
+                    .add(true)
+                    .add(Long.MAX_VALUE)));
+        assertEquals("zero", thing.getString("a", "b", 0));
+        assertEquals(1L, thing.getLong("a", "b", 1));
+        assertEquals(Long.MAX_VALUE, thing.getLong("a", "b", 4));
+        assertEquals(1.0d, thing.getDouble("a", "b", 1), 0.0);
+        assertEquals(2.5d, thing.getDouble("a", "b", 2), 0.0);
+        assertTrue(thing.getBoolean("a", "b", 3));
+        assertSame(thing.get("a").asObject(), thing.getObject("a"));
+        assertSame(thing.asObject(), thing.getObject());
+    }
+
+    // - R2006 The path accessors return null, or throw NullPointerException
+    //   for primitive results, if the path leads to a missing value, or to a
+    //   value that is not the Map or List the path needs.
+    //
+    @Test
+    public void test_R2006() throws Exception {
+        JsonThing thing = JsonThing.newMap()
+            .put("a", JsonThing.newMap().put("b", 1));
+        assertNull(thing.getString("x"));
+        assertNull(thing.getObject("x", "y", 0));
+        assertNull(thing.getObject("a", 0));
+        assertNull(thing.getObject("a", "b", "c"));
+        thing.put("l", JsonThing.newList().add("z"));
+        assertNull(thing.getObject("l", "z"));
+        assertNull(thing.getString("l", 1));
+        assertNull(thing.getString("l", -1));
+        thing.put("ids", JsonThing.parse("[310,309]"));
+        thing.put("xs", JsonThing.parse("[1.5]"));
+        Object[][] missing = {
+            {"a", "c"},
+            {"ids", 2},
+            {"ids", -1},
+            {"xs", 1},
+            {"l", 5},
+            {"a", 0},
+        };
+        for (Object[] path : missing) {
+            try {
+                thing.getLong(path);
+                fail("expected NullPointerException");
+            } catch (NullPointerException e) {
+                // Expected.
+            }
+            try {
+                thing.getDouble(path);
+                fail("expected NullPointerException");
+            } catch (NullPointerException e) {
+                // Expected.
+            }
+        }
+        assertEquals(309L, thing.getLong("ids", 1));
+        assertEquals(1.5, thing.getDouble("xs", 0), 0.0);
+    }
+
+    // - R2007 asListOfThings() returns a view of the list that wraps each
+    //   element, and shows later changes to the list.
+    //
+    @Test
+    public void test_R2007() throws Exception {
+        JsonThing list = JsonThing.newList().add("a").add("b");
+        List<JsonThing> things = list.asListOfThings();
+        assertEquals(2, things.size());
+        assertEquals("b", things.get(1).asString());
+        list.add("c");
+        assertEquals(3, things.size());
+        assertEquals("c", things.get(2).asString());
+    }
+
     // - R3001 is(key: String) returns true if the thing is a map with a true
     //   boolean at key. is(key: String) should return false otherwise.
     //
@@ -577,4 +997,840 @@ public class JsonThingTest {
         // System.out.println(obj.toJson());
    }
 
-}
\ No newline at end of file
+    // - R5004 JsonThing::parse parses JSON from an InputStream.
+    //
+    @Test
+    public void test_R5004() throws Exception {
+        byte[] bytes = "{\"key1\":\"value1\",\"key2\":[1,2]}"
+            .getBytes(StandardCharsets.UTF_8);
+        JsonThing obj = JsonThing.parse(new ByteArrayInputStream(bytes));
+        assertEquals("value1", obj.get("key1").asString());
+        assertEquals(2L, obj.get("key2").get(1).longValue());
+    }
+
+    // - R5005 JsonThing::parse parses JSON from a Reader.
+    //
+    @Test
+    public void test_R5005() throws Exception {
+        JsonThing obj = JsonThing.parse(
+            new StringReader("{\"key1\":\"value1\"}"));
+        assertEquals("value1", obj.get("key1").asString());
+    }
+
+    // - R5006 JsonThing::parse parses JSON from a region of a byte array.
+    //
+    @Test
+    public void test_R5006() throws Exception {
+        byte[] bytes = "garbage{\"key1\":12345}garbage"
+            .getBytes(StandardCharsets.UTF_8);
+        JsonThing obj = JsonThing.parse(bytes, 7, 15);
+        assertEquals(12345L, obj.get("key1").longValue());
+    }
+
+    // - R5007 JsonThing::parse parses JSON between the position and limit of
+    //   a ByteBuffer, without moving its position.
+    //
+    //   a) heap buffer
+    //   b) direct buffer
+    //
+    @Test
+    public void test_R5007a() throws Exception {
+        byte[] bytes = "xx{\"key1\":true}xx".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2).limit(bytes.length - 2);
+        ByteBuffer slice = buffer.slice();
+        assertTrue(JsonThing.parse(buffer).is("key1"));
+        assertTrue(JsonThing.parse(slice).is("key1"));
+        assertEquals(2, buffer.position());
+    }
+    @Test
+    public void test_R5007b() throws Exception {
+        byte[] bytes = "{\"key1\":12.345}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        assertEquals(12.345d,
+            JsonThing.parse(buffer).get("key1").doubleValue(), 0.0001);
+        assertEquals(0, buffer.position());
+    }
+
+    // - R5008 JsonThing::writeTo writes the same JSON as toJson to an
+    //   OutputStream or a Writer, without closing it.
+    //
+    @Test
+    public void test_R5008() throws Exception {
+        JsonThing obj = JsonThing.newMap()
+            .put("name", "Zoë")
+            .put("ids", JsonThing.newList().add(1).add(2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("stream should not be closed");
+            }
+        };
+        obj.writeTo(bytes);
+        assertEquals(obj.toJson(),
+            new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        StringWriter chars = new StringWriter();
+        obj.writeTo(chars);
+        assertEquals(obj.toJson(), chars.toString());
+    }
+
+    // - R5009 JsonThing::writeTo writes UTF-8 JSON into a ByteBuffer,
+    //   advancing its position.
+    //
+    @Test
+    public void test_R5009() throws Exception {
+        JsonThing obj = JsonThing.newMap().put("key1", "value1");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte)'x');
+        obj.writeTo(buffer);
+        assertEquals(1 + obj.toJson().length(), buffer.position());
+        buffer.flip().position(1);
+        assertEquals("value1", JsonThing.parse(buffer).get("key1").asString());
+    }
+
+    // - R5010 JsonThing::parse and JsonThing::parseLazy accept any JSON value
+    //   at the root: object, array, string, number, boolean or null.
+    //
+    @Test
+    public void test_R5010() throws Exception {
+        for (boolean lazy : new boolean[] {false, true}) {
+            String m = lazy ? "parseLazy " : "parse ";
+            assertEquals(m + "array",
+                Arrays.asList("a", 1, JsonThing.newMap().put("b", 2).asMap()),
+                parse(lazy, " [\"a\", 1, {\"b\": 2}] ").asList());
+            assertEquals(m + "array of numbers",
+                2L,
+                parse(lazy, "[1,2,3]").get(1).longValue());
+            assertEquals(m + "string",
+                "text",
+                parse(lazy, "\"text\"").asString());
+            assertEquals(m + "integer",
+                42L,
+                parse(lazy, "42").longValue());
+            assertEquals(m + "floating point",
+                -1.5d,
+                parse(lazy, "-1.5e0").doubleValue(),
+                0.0);
+            assertTrue(m + "boolean",
+                parse(lazy, "true").booleanValue());
+            assertNull(m + "null",
+                parse(lazy, "null").asObject());
+        }
+        assertEquals("[1,\"x\"]", JsonThing.parse("[1,\"x\"]").toJson());
+    }
+
+    private static JsonThing parse(boolean lazy, String json) throws Exception {
+        return lazy ? JsonThing.parseLazy(json) : JsonThing.parse(json);
+    }
+
+    // - R5101 newCachedMap(), newCachedList() and cached() make things that
+    //   read and encode like newMap() and newList().
+    //
+    @Test
+    public void test_R5101() throws Exception {
+        JsonThing thing = JsonThing.newCachedMap()
+            .put("a", 1)
+            .put("b", JsonThing.newCachedList().add("x").add(2.5).add(null))
+            .put("c", true);
+        assertTrue(thing.isCached());
+        assertTrue(thing.get("b").isCached());
+        assertEquals("{\"a\":1,\"b\":[\"x\",2.5,null],\"c\":true}",
+            thing.toJson());
+        assertEquals("again", thing.toJson(), thing.toJson());
+        assertEquals("x", thing.get("b").get(0).asString());
+        assertEquals(3, thing.get("b").asList().size());
+
+        JsonThing parsed = JsonThing.parse(
+            "{\"k\":[1,{\"m\":[]}],\"n\":{\"o\":\"p\"}}");
+        JsonThing cached = parsed.cached();
+        assertTrue(cached.isCached());
+        assertTrue(cached.get("k").get(1).isCached());
+        assertFalse(parsed.isCached());
+        assertEquals(parsed.asMap(), cached.asMap());
+        assertEquals(parsed.toJson(), cached.toJson());
+        assertSame(cached, cached.cached());
+    }
+
+    // - R5102 toJson() on a cached thing reflects every change made since the
+    //   last encode, however deep and however made: put(), add(), remove(),
+    //   set(), clear(), iterators and map entries.
+    //
+    @Test
+    public void test_R5102() throws Exception {
+        JsonThing thing = JsonThing.parse(
+            "{\"a\":{\"b\":{\"c\":[1,2,3]}},\"d\":[{\"e\":1}]}").cached();
+        JsonThing plain = JsonThing.parse(thing.toJson());
+        List<Runnable> changes = Arrays.asList(
+            () -> thing.get("a").get("b").get("c").add(4),
+            () -> thing.get("a").get("b").get("c").asList().set(0, "one"),
+            () -> thing.get("a").get("b").get("c").asList().remove(1),
+            () -> thing.get("a").get("b").put("f", "g"),
+            () -> thing.get("a").get("b").asMap().remove("f"),
+            () -> thing.get("d").get(0).put("e", 2),
+            () -> thing.get("d").add(JsonThing.newCachedMap().put("h", 1)),
+            () -> thing.get("d").get(1).put("h", 2),
+            () -> {
+                Iterator<Object> it = thing.get("d").asList().iterator();
+                it.next();
+                it.remove();
+            },
+            () -> thing.get("d").get(0).asMap().entrySet().iterator().next()
+                .setValue(3),
+            () -> {
+                Iterator<Map.Entry<String,Object>> it =
+                    thing.get("a").asMap().entrySet().iterator();
+                it.next();
+                it.remove();
+            },
+            () -> thing.put("a", JsonThing.newCachedList().add(1)),
+            () -> thing.get("a").asList().clear(),
+            () -> thing.get("d").asList().subList(0, 1).clear(),
+            () -> thing.asMap().clear());
+        List<Runnable> same = Arrays.asList(
+            () -> plain.get("a").get("b").get("c").add(4),
+            () -> plain.get("a").get("b").get("c").asList().set(0, "one"),
+            () -> plain.get("a").get("b").get("c").asList().remove(1),
+            () -> plain.get("a").get("b").put("f", "g"),
+            () -> plain.get("a").get("b").asMap().remove("f"),
+            () -> plain.get("d").get(0).put("e", 2),
+            () -> plain.get("d").add(JsonThing.newMap().put("h", 1)),
+            () -> plain.get("d").get(1).put("h", 2),
+            () -> plain.get("d").asList().remove(0),
+            () -> plain.get("d").get(0).put("h", 3),
+            () -> plain.asMap().put("a", JsonThing.newMap().asMap()),
+            () -> plain.put("a", JsonThing.newList().add(1)),
+            () -> plain.get("a").asList().clear(),
+            () -> plain.get("d").asList().clear(),
+            () -> plain.asMap().clear());
+        for (int i = 0; i < changes.size(); i++) {
+            thing.toJson();
+            changes.get(i).run();
+            same.get(i).run();
+            assertEquals("change " + i,
+                plain.asObject(), JsonThing.parse(thing.toJson()).asObject());
+        }
+        assertEquals("{}", thing.toJson());
+    }
+
+    // - R5103 A cached list or map that is a member of two cached things
+    //   passes its changes to both.
+    //
+    @Test
+    public void test_R5103() throws Exception {
+        JsonThing shared = JsonThing.newCachedList().add(1);
+        JsonThing a = JsonThing.newCachedMap().put("s", shared);
+        JsonThing b = JsonThing.newCachedList().add(shared).add(shared);
+        assertEquals("{\"s\":[1]}", a.toJson());
+        assertEquals("[[1],[1]]", b.toJson());
+        shared.add(2);
+        assertEquals("{\"s\":[1,2]}", a.toJson());
+        assertEquals("[[1,2],[1,2]]", b.toJson());
+        b.asList().remove(0);
+        a.asMap().remove("s");
+        shared.add(3);
+        assertEquals("{}", a.toJson());
+        assertEquals("[[1,2,3]]", b.toJson());
+    }
+
+    // - R5104 Cached things holding plain maps or lists, frozen things or
+    //   lazily parsed things encode correctly, including after the plain
+    //   members change.
+    //
+    @Test
+    public void test_R5104() throws Exception {
+        JsonThing plain = JsonThing.newList().add(1);
+        JsonThing frozen = JsonThing.newMap().put("f", 1).freeze();
+        JsonThing lazy = JsonThing.parseLazy("{\"l\":[1,2]}");
+        JsonThing thing = JsonThing.newCachedMap()
+            .put("p", JsonThing.newCachedMap().put("plain", plain))
+            .put("f", frozen)
+            .put("l", lazy);
+        assertEquals(
+            "{\"p\":{\"plain\":[1]},\"f\":{\"f\":1},\"l\":{\"l\":[1,2]}}",
+            thing.toJson());
+        plain.add(2);
+        lazy.get("l").add(3);
+        assertEquals(
+            "{\"p\":{\"plain\":[1,2]},\"f\":{\"f\":1},\"l\":{\"l\":[1,2,3]}}",
+            thing.toJson());
+        thing.put("f", frozen.with("f", 2));
+        assertEquals(
+            "{\"p\":{\"plain\":[1,2]},\"f\":{\"f\":2},\"l\":{\"l\":[1,2,3]}}",
+            thing.toJson());
+    }
+
+    // - R5105 Cached things encode correctly with a pretty printer and to
+    //   SMILE.
+    //
+    @Test
+    public void test_R5105() throws Exception {
+        JsonThing plain = JsonThing.parse("{\"a\":[1,{\"b\":\"c\"}],\"d\":2}");
+        JsonThing thing = plain.cached();
+        thing.toJson();
+        assertEquals(
+            JsonThing.MAPPER.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(plain.asObject()),
+            JsonThing.MAPPER.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(thing.asObject()));
+        byte[] smile = thing.toBytes(JsonThingFormat.SMILE);
+        assertEquals(plain.asObject(),
+            JsonThing.parse(smile, JsonThingFormat.SMILE).asObject());
+        assertEquals(plain.toJson(), thing.toJson());
+    }
+
+    // - R6001 JsonThing::parseLazy parses JSON into a JsonThing that reads
+    //   the same as one produced by JsonThing::parse.
+    //
+    @Test
+    public void test_R6001() throws Exception {
+        String json =
+            "{\"name\": \"Alice\", \"badge_number\": 107, " +
+            "\"active\": false, \"district_ids\": [310, 309, 308], " +
+            "\"accuracy\": 83.128, \"boss\": {\"name\": \"Bob\"}, " +
+            "\"notes\": null}";
+        JsonThing obj = JsonThing.parseLazy(json);
+        assertEquals("Alice", obj.get("name").asString());
+        assertEquals(107L, obj.get("badge_number").longValue());
+        assertFalse(obj.is("active"));
+        assertEquals(310L, obj.get("district_ids").get(0).longValue());
+        assertEquals(308L, obj.get("district_ids").get(2).longValue());
+        assertEquals(83.128d, obj.get("accuracy").doubleValue(), 0.00001);
+        assertEquals("Bob", obj.get("boss").get("name").asString());
+        assertNull(obj.get("notes").asObject());
+        assertNull(obj.get("no_such_property").asObject());
+        assertEquals(JsonThing.parse(json).asMap(), obj.asMap());
+    }
+
+    // - R6002 JsonThing::toJson on an unmodified lazily parsed thing returns
+    //   the original JSON text if it has no whitespace outside of strings,
+    //   and otherwise the same JSON as JsonThing::parse would give.
+    //
+    @Test
+    public void test_R6002() throws Exception {
+        String compact = "{\"a\":[1,2,{\"b\":\"c d\"}],\"d\":12.50}";
+        JsonThing obj = JsonThing.parseLazy(compact);
+        assertEquals(compact, obj.toJson());
+        obj.get("a").get(2).get("b");
+        assertEquals(compact, obj.toJson());
+
+        String spaced = "{\"a\": [1, 2,  {\"b\" : \"c d\"}],\n \"d\":12.50}";
+        String expected = JsonThing.parse(spaced).toJson();
+        obj = JsonThing.parseLazy(spaced);
+        assertEquals(expected, obj.toJson());
+        obj.get("a").get(2).get("b");
+        assertEquals(expected, obj.toJson());
+        // Once modified, unchanged members are still copied as written.
+        obj.put("e", 1);
+        assertEquals(
+            "{\"a\":[1,2,{\"b\":\"c d\"}],\"d\":12.50,\"e\":1}",
+            obj.toJson());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonThingStreamWriter w = JsonThingStreamWriter.to(out)) {
+            w.write(JsonThing.parseLazy("{\n  \"a\": [\n    1\n  ]\n}"));
+            w.write(JsonThing.parseLazy("[\n  {\"b\": 2}\n]"));
+        }
+        assertEquals("{\"a\":[1]}\n[{\"b\":2}]\n", out.toString("UTF-8"));
+    }
+
+    // - R6003 A lazily parsed thing can be modified with put() and add(), and
+    //   toJson reflects the modifications.
+    //
+    @Test
+    public void test_R6003() throws Exception {
+        JsonThing obj = JsonThing.parseLazy(
+            "{\"a\": [1, 2], \"b\": {\"c\": \"d\"}, \"e\": true, " +
+            "\"h\": {\"i\": [4, 5]}}");
+        obj.get("a").add(3);
+        obj.get("b").put("c", "x");
+        obj.put("f", JsonThing.newList().add("g"));
+        obj.asMap().remove("e");
+        assertEquals(
+            JsonThing.parse(
+                "{\"a\":[1,2,3],\"b\":{\"c\":\"x\"},\"f\":[\"g\"]," +
+                "\"h\":{\"i\":[4,5]}}").asMap(),
+            JsonThing.parse(obj.toJson()).asMap());
+    }
+
+    private static final String[] MALFORMED = {
+        "{\"a\": [1, 2}",
+        "{\"a\":1} garbage",
+        "42 43",
+        "[1] [2]",
+        "{\"a\":1},",
+        "\"s\",",
+        "",
+    };
+
+    // - R6004 JsonThing::parseLazy throws IOException on malformed JSON, and
+    //   on anything but whitespace after the root value.
+    //
+    @Test
+    public void test_R6004() throws Exception {
+        for (String json : MALFORMED) {
+            try {
+                JsonThing.parseLazy(json);
+                fail("Expected IOException: " + json);
+            } catch (java.io.IOException e) {
+                // expected
+            }
+        }
+        assertEquals("{\"a\":1}",
+            JsonThing.parseLazy(" {\"a\":1} \n\t").toJson());
+        assertEquals(42L, JsonThing.parseLazy("42 \n").longValue());
+        assertEquals("s", JsonThing.parseLazy(" \"s\" ").asString());
+    }
+
+    private static JsonThing map(String json) throws Exception {
+        Path path = Files.createTempFile("JsonThingTest", ".json");
+        try {
+            Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+            return JsonThing.map(path);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    // - R6005 JsonThing::map reads a file into a JsonThing that reads the
+    //   same as one produced by JsonThing::parse, and encodes to the file's
+    //   contents.
+    //
+    @Test
+    public void test_R6005() throws Exception {
+        String json =
+            "{\"name\": \"Ali\u00e7e\", \"badge_number\": 107, " +
+            "\"district_ids\": [310, 309, 9000000000], " +
+            "\"accuracy\": 83.128, \"boss\": {\"name\": \"Bob\"}}\n";
+        JsonThing obj = map(json);
+        assertEquals("Ali\u00e7e", obj.get("name").asString());
+        assertEquals(107L, obj.get("badge_number").longValue());
+        assertEquals(9000000000L, obj.get("district_ids").get(2).longValue());
+        assertEquals(83.128d, obj.get("accuracy").doubleValue(), 0.00001);
+        assertEquals("Bob", obj.get("boss").get("name").asString());
+        assertNull(obj.get("no_such_property").asObject());
+        assertEquals(JsonThing.parse(json).asMap(), obj.asMap());
+        assertEquals(JsonThing.parse(json).toJson(), obj.toJson());
+        assertEquals(42L, map(" 42 ").longValue());
+    }
+
+    // - R6006 A JsonThing read by JsonThing::map is read-only: put(), add()
+    //   and changes through asMap() or asList() throw
+    //   UnsupportedOperationException.
+    //
+    @Test
+    public void test_R6006() throws Exception {
+        JsonThing obj = map("{\"a\": [1, 2], \"b\": {\"c\": \"d\"}}");
+        try {
+            obj.put("e", 1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            obj.get("a").add(3);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            obj.get("b").asMap().remove("c");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        assertEquals("{\"a\":[1,2],\"b\":{\"c\":\"d\"}}", obj.toJson());
+    }
+
+    // - R6007 JsonThing::map throws IOException on malformed JSON, and on
+    //   anything but whitespace after the root value.
+    //
+    @Test
+    public void test_R6007() throws Exception {
+        for (String json : MALFORMED) {
+            try {
+                map(json);
+                fail("Expected IOException: " + json);
+            } catch (java.io.IOException e) {
+                // expected
+            }
+        }
+        assertEquals("[1,2]", map("[1,2]\n\n").toJson());
+    }
+
+    // - R6008 Unmodified things read by JsonThing::parseLazy or
+    //   JsonThing::map can be read from many threads at once, and a member
+    //   reads as the same object in every thread.
+    //
+    @Test
+    public void test_R6008() throws Exception {
+        JsonThing doc = JsonThing.newMap();
+        for (int i = 0; i < 500; i++) {
+            doc.put("k" + i, JsonThing.newMap()
+                .put("id", i)
+                .put("tags", JsonThing.newList().add("t" + i).add(i)));
+        }
+        String json = doc.toJson();
+        for (JsonThing lazy : Arrays.asList(
+                 JsonThing.parseLazy(json), map(json)))
+        {
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<List<Object>>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int seed = t;
+                    futures.add(pool.submit((Callable<List<Object>>)() -> {
+                        List<Object> seen = new ArrayList<>();
+                        for (int i = 0; i < 500; i++) {
+                            int k = (i * 7 + seed * 131) % 500;
+                            JsonThing member = lazy.get("k" + k);
+                            assertEquals(
+                                (long)k, member.get("tags").getLong(1));
+                            assertEquals(json, lazy.toJson());
+                        }
+                        for (int i = 0; i < 500; i++) {
+                            seen.add(lazy.get("k" + i).get("tags").asObject());
+                        }
+                        return seen;
+                    }));
+                }
+                List<Object> first = futures.get(0).get();
+                for (Future<List<Object>> f : futures) {
+                    List<Object> seen = f.get();
+                    for (int i = 0; i < 500; i++) {
+                        assertSame(first.get(i), seen.get(i));
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(doc, lazy);
+        }
+    }
+
+    // - R7001 JsonThing::parse stores arrays made up only of integers, or
+    //   only of floating point numbers, in primitive arrays. They read and
+    //   encode exactly as other lists do.
+    //
+    @Test
+    public void test_R7001() throws Exception {
+        String json =
+            "{\"ints\":[310,309,9000000000],\"doubles\":[1.5,-2.25]," +
+            "\"mixed\":[1,2.5,\"x\"],\"empty\":[]}";
+        JsonThing obj = JsonThing.parse(json);
+        assertTrue(obj.get("ints").asObject() instanceof LongList);
+        assertTrue(obj.get("doubles").asObject() instanceof DoubleList);
+        assertEquals(
+            Arrays.asList(310, 309, 9000000000L),
+            obj.get("ints").asList());
+        assertEquals(
+            Arrays.asList(1.5, -2.25),
+            obj.get("doubles").asList());
+        assertEquals(
+            Arrays.asList(1, 2.5, "x"),
+            obj.get("mixed").asList());
+        assertEquals(0, obj.get("empty").asList().size());
+        assertEquals(json, obj.toJson());
+    }
+
+    // - R7002 asLongArray() and asDoubleArray() return the numbers in a list
+    //   as a primitive array.
+    //
+    @Test
+    public void test_R7002() throws Exception {
+        JsonThing obj = JsonThing.parse(
+            "{\"ints\":[3,2,1],\"doubles\":[0.5,1.5],\"mixed\":[1,0.5]}");
+        assertArrayEquals(
+            new long[] {3, 2, 1}, obj.get("ints").asLongArray());
+        assertArrayEquals(
+            new double[] {3, 2, 1}, obj.get("ints").asDoubleArray(), 0.0);
+        assertArrayEquals(
+            new double[] {0.5, 1.5}, obj.get("doubles").asDoubleArray(), 0.0);
+        assertArrayEquals(
+            new double[] {1, 0.5}, obj.get("mixed").asDoubleArray(), 0.0);
+        assertArrayEquals(
+            new long[] {7, 8},
+            JsonThing.newList().add(7).add(8L).asLongArray());
+    }
+
+    // - R7003 longAt(idx: int) and doubleAt(idx: int) return the idx'th
+    //   number in a list as a primitive.
+    //
+    @Test
+    public void test_R7003() throws Exception {
+        JsonThing obj = JsonThing.parse(
+            "{\"ints\":[3,2,1],\"doubles\":[0.5,1.5]}");
+        assertEquals(2L, obj.get("ints").longAt(1));
+        assertEquals(2.0d, obj.get("ints").doubleAt(1), 0.0);
+        assertEquals(1.5d, obj.get("doubles").doubleAt(1), 0.0);
+        assertEquals(1L, obj.getLong("ints", 2));
+        assertEquals(0.5d, obj.getDouble("doubles", 0), 0.0);
+        assertEquals(5L, JsonThing.newList().add(5).longAt(0));
+    }
+
+    // - R7004 Lists of numbers accept values of any type through add() and
+    //   put().
+    //
+    @Test
+    public void test_R7004() throws Exception {
+        JsonThing obj = JsonThing.parse("{\"ints\":[1,2],\"doubles\":[0.5]}");
+        obj.get("ints").add(3).add("four");
+        obj.get("doubles").add(1.5).add(2);
+        assertEquals(Arrays.asList(1, 2, 3, "four"), obj.get("ints").asList());
+        assertEquals(Arrays.asList(0.5, 1.5, 2), obj.get("doubles").asList());
+        assertEquals(
+            "{\"ints\":[1,2,3,\"four\"],\"doubles\":[0.5,1.5,2]}",
+            obj.toJson());
+    }
+
+    // - R7005 newLongList(values...) and newDoubleList(values...) create
+    //   lists of numbers.
+    //
+    @Test
+    public void test_R7005() throws Exception {
+        JsonThing obj = JsonThing.newMap()
+            .put("district_ids", JsonThing.newLongList(310, 309, 308))
+            .put("scores", JsonThing.newDoubleList(0.25, 0.5));
+        assertEquals(309L, obj.get("district_ids").longAt(1));
+        assertEquals(0.5d, obj.get("scores").doubleAt(1), 0.0);
+        obj.get("district_ids").add(307);
+        assertEquals(
+            JsonThing.parse(
+                "{\"district_ids\":[310,309,308,307],\"scores\":[0.25,0.5]}")
+                .asMap(),
+            JsonThing.parse(obj.toJson()).asMap());
+    }
+
+    // - R8001 freeze() returns an immutable copy that reads and encodes the
+    //   same as the original. put() and add() on it throw
+    //   UnsupportedOperationException.
+    //
+    @Test
+    public void test_R8001() throws Exception {
+        JsonThing obj = JsonThing.parse(
+            "{\"name\":\"Alice\",\"district_ids\":[310,309]," +
+            "\"boss\":{\"name\":\"Bob\",\"tags\":[]},\"notes\":null}");
+        JsonThing frozen = obj.freeze();
+        assertTrue(frozen.isFrozen());
+        assertFalse(obj.isFrozen());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(obj.asMap(), frozen.asMap());
+        assertEquals(310L, frozen.getLong("district_ids", 0));
+        assertEquals("Bob", frozen.getString("boss", "name"));
+        assertTrue(frozen.asMap().containsKey("notes"));
+        assertEquals(obj.asMap(), JsonThing.parse(frozen.toJson()).asMap());
+        obj.put("name", "Trent");
+        assertEquals("Alice", frozen.get("name").asString());
+        try {
+            frozen.put("name", "Trent");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            frozen.get("district_ids").add(1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+
+    // - R8002 with(), without() and withAdded() on a frozen thing return an
+    //   updated copy, leave the original unchanged, and share the parts that
+    //   were not updated.
+    //
+    @Test
+    public void test_R8002() throws Exception {
+        JsonThing template = JsonThing.newMap()
+            .put("status", "ok")
+            .put("items", JsonThing.newList().add(1).add(2))
+            .put("meta", JsonThing.newMap().put("v", 1))
+            .freeze();
+        JsonThing updated = template
+            .with("status", "error")
+            .with("items", template.get("items").withAdded(3))
+            .with("extra", JsonThing.newMap().put("x", true))
+            .without("meta");
+        assertEquals("ok", template.get("status").asString());
+        assertEquals(2, template.get("items").asList().size());
+        assertTrue(template.asMap().containsKey("meta"));
+        assertEquals(
+            JsonThing.parse(
+                "{\"status\":\"error\",\"items\":[1,2,3]," +
+                "\"extra\":{\"x\":true}}").asMap(),
+            updated.asMap());
+        assertTrue(updated.get("extra").isFrozen());
+        JsonThing renamed = template.with("status", "renamed");
+        assertSame(
+            template.get("meta").asObject(), renamed.get("meta").asObject());
+        assertSame(
+            template.get("items").asObject(), renamed.get("items").asObject());
+        assertEquals(
+            Arrays.asList(1, 20),
+            template.get("items").with(1, 20).asList());
+    }
+
+    // - R8003 Frozen maps and lists read the same as a HashMap and an
+    //   ArrayList given the same updates.
+    //
+    @Test
+    public void test_R8003() throws Exception {
+        Random r = new Random(14);
+        // "Aa" and "BB" have the same hash code.
+        String[] keys = new String[200];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (i % 2 == 0 ? "Aa" : "BB") + (i / 2);
+        }
+        Map<String,Object> expected = new HashMap<>();
+        JsonThing map = JsonThing.newMap().freeze();
+        List<Object> expectedList = new ArrayList<>();
+        JsonThing list = JsonThing.newList().freeze();
+        for (int i = 0; i < 5000; i++) {
+            String key = keys[r.nextInt(keys.length)];
+            if (r.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+            if (expectedList.isEmpty() || r.nextBoolean()) {
+                expectedList.add(i);
+                list = list.withAdded(i);
+            } else {
+                int idx = r.nextInt(expectedList.size());
+                expectedList.set(idx, -i);
+                list = list.with(idx, -i);
+            }
+        }
+        assertEquals(expected, map.asMap());
+        assertEquals(expected.size(), map.asMap().size());
+        for (String key : keys) {
+            assertEquals(expected.get(key), map.get(key).asObject());
+        }
+        assertEquals(expectedList, list.asList());
+        assertEquals(
+            JsonThing.wrap(expectedList).toJson(), list.toJson());
+    }
+
+    // - R8004 with(), without() and withAdded() throw ClassCastException on a
+    //   thing that is not frozen.
+    //
+    @Test(expected=ClassCastException.class)
+    public void test_R8004() throws Exception {
+        JsonThing.newMap().with("a", 1);
+    }
+
+    // - R9001 newConcurrentMap() and newConcurrentList() read, update and
+    //   encode like newMap() and newList().
+    //
+    @Test
+    public void test_R9001() throws Exception {
+        JsonThing map = JsonThing.newConcurrentMap()
+            .put("name", "Alice")
+            .put("notes", null)
+            .put("ids", JsonThing.newConcurrentList().add(310).add(309));
+        assertEquals("Alice", map.get("name").asString());
+        assertTrue(map.asMap().containsKey("notes"));
+        assertEquals(309L, map.getLong("ids", 1));
+        assertEquals(
+            JsonThing.parse("{\"name\":\"Alice\",\"notes\":null," +
+                "\"ids\":[310,309]}").asMap(),
+            map.asMap());
+        assertEquals(map.asMap(), JsonThing.parse(map.toJson()).asMap());
+        assertEquals("Alice", map.asMap().remove("name"));
+        Iterator<Map.Entry<String,Object>> it = map.asMap().entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey().equals("notes")) {
+                it.remove();
+            }
+        }
+        assertEquals("{\"ids\":[310,309]}", map.toJson());
+    }
+
+    // - R9002 increment(key) and increment(key, delta) add to a number, and
+    //   are atomic on a concurrent map.
+    //
+    @Test
+    public void test_R9002() throws Exception {
+        assertEquals(6L, JsonThing.parse("{\"n\":5}").increment("n"));
+        assertEquals(-2L, JsonThing.newMap().increment("n", -2));
+        JsonThing counts = JsonThing.newConcurrentMap();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    counts.increment("total");
+                    counts.increment("k" + (i % 10), 2);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000L, counts.getLong("total"));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(8000L, counts.getLong("k" + i));
+        }
+    }
+
+    // - R9003 putIfAbsent(key, value) and compute(key, fn) update a map, and
+    //   are atomic on a concurrent map.
+    //
+    @Test
+    public void test_R9003() throws Exception {
+        JsonThing map = JsonThing.newConcurrentMap();
+        assertNull(map.putIfAbsent("a", 1).asObject());
+        assertEquals(1, map.putIfAbsent("a", 2).asObject());
+        assertEquals("x1", map.compute("b",
+            (k, v) -> (v.asObject() == null) ? "x1" : v.asString() + "1")
+            .asString());
+        assertEquals("x11", map.compute("b",
+            (k, v) -> (v.asObject() == null) ? "x1" : v.asString() + "1")
+            .asString());
+        map.compute("a", (k, v) -> null);
+        assertFalse(map.asMap().containsKey("a"));
+        JsonThing list = JsonThing.newConcurrentList();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    map.compute("sum", (k, v) ->
+                        (v.asObject() == null) ? 1L : v.longValue() + 1);
+                    if (map.putIfAbsent("winner", id).asObject() == null) {
+                        list.add(id);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000L, map.getLong("sum"));
+        assertEquals(1, list.asList().size());
+        assertEquals(list.get(0).asObject(), map.get("winner").asObject());
+    }
+
+    // - R9004 toJson() on a concurrent map that is being updated encodes a
+    //   consistent snapshot.
+    //
+    @Test
+    public void test_R9004() throws Exception {
+        JsonThing map = JsonThing.newConcurrentMap();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                map.put("k" + i, i);
+            }
+        });
+        writer.start();
+        int size = 0;
+        while (size < 2000) {
+            Map<String,Object> snapshot = JsonThing.parse(map.toJson()).asMap();
+            assertTrue(snapshot.size() >= size);
+            size = snapshot.size();
+            for (int i = 0; i < size; i++) {
+                assertEquals(i, snapshot.get("k" + i));
+            }
+        }
+        writer.join();
+    }
+
+}
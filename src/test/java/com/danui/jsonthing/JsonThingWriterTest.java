@@ -0,0 +1,99 @@
+package com.danui.jsonthing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JsonThingWriterTest
+ *
+ * R10xx Writing
+ *
+ * - R1001 newMap(), newList(), put(), add() and end() write JSON in the same
+ *   shape as the equivalent JsonThing.
+ *
+ * - R1002 put() and add() accept JsonThings, writing the thing they wrap.
+ *
+ * - R1003 close() ends open maps and lists and leaves the underlying stream
+ *   open.
+ *
+ * - R1004 Writing that does not fit the structure so far throws IOException.
+ *
+ * @author Jin
+ */
+public class JsonThingWriterTest {
+
+    // - R1001 newMap(), newList(), put(), add() and end() write JSON in the
+    //   same shape as the equivalent JsonThing.
+    //
+    @Test
+    public void test_R1001() throws Exception {
+        StringWriter out = new StringWriter();
+        JsonThingWriter.to(out)
+            .newMap()
+                .put("name", "Alice")
+                .put("badge_number", 107)
+                .put("active", false)
+                .newList("district_ids")
+                    .add(310)
+                    .add(309L)
+                    .newMap()
+                        .put("x", null)
+                    .end()
+                .end()
+                .put("accuracy", 83.128)
+            .end()
+            .close();
+        assertEquals(
+            "{\"name\":\"Alice\",\"badge_number\":107,\"active\":false," +
+            "\"district_ids\":[310,309,{\"x\":null}],\"accuracy\":83.128}",
+            out.toString());
+    }
+
+    // - R1002 put() and add() accept JsonThings, writing the thing they wrap.
+    //
+    @Test
+    public void test_R1002() throws Exception {
+        StringWriter out = new StringWriter();
+        JsonThingWriter.to(out)
+            .newList()
+                .add(JsonThing.newMap().put("a", JsonThing.newLongList(1, 2)))
+                .add(JsonThing.wrap("b"))
+            .end()
+            .close();
+        assertEquals("[{\"a\":[1,2]},\"b\"]", out.toString());
+    }
+
+    // - R1003 close() ends open maps and lists and leaves the underlying
+    //   stream open.
+    //
+    @Test
+    public void test_R1003() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                fail("stream should not be closed");
+            }
+        };
+        JsonThingWriter.to(out)
+            .newMap()
+                .newList("a")
+                    .add(1)
+            .close();
+        assertEquals("{\"a\":[1]}",
+            new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    // - R1004 Writing that does not fit the structure so far throws
+    //   IOException.
+    //
+    @Test(expected=IOException.class)
+    public void test_R1004() throws Exception {
+        JsonThingWriter.to(new StringWriter())
+            .newList()
+                .put("a", 1);
+    }
+}